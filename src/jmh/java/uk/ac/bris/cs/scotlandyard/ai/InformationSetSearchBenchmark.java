@@ -0,0 +1,82 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.collect.ImmutableList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.MoveBuffer;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24MOVES;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.generateDetectiveLocations;
+
+/**
+ * Benchmarks the determinizations per second of {@link InformationSetSearch} on one thread, from
+ * the detectives' first turn on the standard map with MrX on any free node. The tree starts
+ * afresh every iteration, as it would for every move.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InformationSetSearchBenchmark {
+
+	private final InformationSetSearch search =
+			new InformationSetSearch(MonteCarloTreeSearch.EXPLORATION);
+	private final InformationSetSearch.Scratch scratch = new InformationSetSearch.Scratch();
+	private final SplittableRandom random = new SplittableRandom(42);
+	private SearchState state;
+	private int[] nodes;
+	private InformationSetSearch.Node tree;
+
+	@Setup public void setUp() throws IOException {
+		GameSetup setup = new GameSetup(ScotlandYard.standardGraph(), STANDARD24MOVES);
+		var pieces = ScotlandYard.DETECTIVES.asList();
+		var locations = generateDetectiveLocations(42, pieces.size());
+		var detectives = ImmutableList.<Player>builder();
+		for (int i = 0; i < pieces.size(); i++)
+			detectives.add(new Player(pieces.get(i), defaultDetectiveTickets(), locations.get(i)));
+		state = SearchState.of(setup, new Player(Piece.MrX.MRX, defaultMrXTickets(), 106),
+				detectives.build());
+		var moves = new MoveBuffer();
+		state.availableMoves(moves);
+		state.apply(moves.get(0));
+		// a copy has no moves to undo, the detectives' turn is the root of every iteration
+		state = state.copy();
+		nodes = IntStream.range(0, setup.transportGraph().nodeBound())
+				.filter(node -> setup.transportGraph().hasEdges(node) && !state.isOccupied(node))
+				.toArray();
+	}
+
+	@Setup(Level.Iteration) public void newTree() { tree = new InformationSetSearch.Node(0, true); }
+
+	@Benchmark public InformationSetSearch.Node determinization() {
+		state.placeMrX(nodes[random.nextInt(nodes.length)]);
+		search.iterate(tree, state, scratch, random);
+		return tree;
+	}
+
+}
@@ -0,0 +1,66 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24MOVES;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.generateDetectiveLocations;
+
+/**
+ * The fixed positions shared by the benchmarks, so results stay comparable between runs
+ */
+final class BenchmarkStates {
+
+	private BenchmarkStates() {}
+
+	/**
+	 * MrX starts here with all his tickets, including DOUBLE and SECRET
+	 */
+	static final int MRX_LOCATION = 106;
+	static final int SEED = 42;
+
+	static GameSetup standardSetup() throws IOException {
+		return new GameSetup(ScotlandYard.standardGraph(), STANDARD24MOVES);
+	}
+
+	static Player mrX() { return new Player(Piece.MrX.MRX, defaultMrXTickets(), MRX_LOCATION); }
+
+	static ImmutableList<Player> detectives() {
+		var pieces = ScotlandYard.DETECTIVES.asList();
+		var locations = generateDetectiveLocations(SEED, pieces.size());
+		var builder = ImmutableList.<Player>builder();
+		for (int i = 0; i < pieces.size(); i++)
+			builder.add(new Player(pieces.get(i), defaultDetectiveTickets(), locations.get(i)));
+		return builder.build();
+	}
+
+	/**
+	 * @return the move of the state that is first in string order, independent of set ordering
+	 */
+	static Move firstMove(GameState state) {
+		return state.getAvailableMoves().stream()
+				.min(Comparator.comparing(Move::toString))
+				.orElseThrow();
+	}
+
+	/**
+	 * @param state the state to play from
+	 * @param random the source of the moves
+	 * @return the state after the game is played out with uniformly random moves
+	 */
+	static GameState playout(GameState state, SplittableRandom random) {
+		while (state.getWinner().isEmpty()) {
+			var moves = state.getAvailableMoves().asList();
+			state = state.advance(moves.get(random.nextInt(moves.size())));
+		}
+		return state;
+	}
+
+}
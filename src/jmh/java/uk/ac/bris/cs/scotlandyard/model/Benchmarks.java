@@ -0,0 +1,28 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar, same as JMH's own but with the {@link GCProfiler} always on
+ * so every result comes with its allocation rate per operation.
+ * <br>
+ * Takes the usual JMH arguments, e.g. {@code java -jar target/benchmarks.jar Playout -rf json}
+ */
+public final class Benchmarks {
+
+	private Benchmarks() {}
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		var options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+
+}
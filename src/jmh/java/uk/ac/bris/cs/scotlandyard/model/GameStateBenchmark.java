@@ -0,0 +1,84 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+
+/**
+ * Benchmarks the {@link MyGameStateFactory} operations a search performs on every node.
+ * <br>
+ * Moves and the winner are memoised by the state, so the benchmarks that query them start from a
+ * fresh state; compare them against {@link #build()} and {@link #advance()} for the cost of the
+ * query alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameStateBenchmark {
+
+	private final MyGameStateFactory factory = new MyGameStateFactory();
+	private GameSetup setup;
+	private Player mrX;
+	private ImmutableList<Player> detectives;
+	private GameState mrXTurn;
+	private Move mrXMove;
+	private GameState midGame;
+	private Move midGameMove;
+
+	@Setup public void setUp() throws IOException {
+		setup = BenchmarkStates.standardSetup();
+		mrX = BenchmarkStates.mrX();
+		detectives = BenchmarkStates.detectives();
+		mrXTurn = factory.build(setup, mrX, detectives);
+		mrXMove = BenchmarkStates.firstMove(mrXTurn);
+		// a few rounds in, with tickets spent and the detectives spread out
+		var random = new SplittableRandom(BenchmarkStates.SEED);
+		midGame = mrXTurn;
+		while (midGame.getMrXTravelLog().size() < 6) {
+			var moves = midGame.getAvailableMoves().asList();
+			var next = midGame.advance(moves.get(random.nextInt(moves.size())));
+			if (!next.getWinner().isEmpty()) continue;
+			midGame = next;
+		}
+		midGameMove = BenchmarkStates.firstMove(midGame);
+	}
+
+	@Benchmark public GameState build() { return factory.build(setup, mrX, detectives); }
+
+	/**
+	 * MrX's moves at the start, with singles, DOUBLE and SECRET moves
+	 */
+	@Benchmark public ImmutableSet<Move> mrXAvailableMoves() {
+		return factory.build(setup, mrX, detectives).getAvailableMoves();
+	}
+
+	@Benchmark public GameState advance() { return mrXTurn.advance(mrXMove); }
+
+	@Benchmark public ImmutableSet<Move> detectiveAvailableMoves() {
+		return mrXTurn.advance(mrXMove).getAvailableMoves();
+	}
+
+	@Benchmark public ImmutableSet<Piece> winner() {
+		return midGame.advance(midGameMove).getWinner();
+	}
+
+}
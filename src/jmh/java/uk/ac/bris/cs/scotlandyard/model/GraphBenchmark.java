@@ -0,0 +1,51 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+import com.google.common.io.Resources;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+/**
+ * Benchmarks loading the standard map, paid once per game setup
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmark {
+
+	private String content;
+	private ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph;
+
+	@Setup public void setUp() throws IOException {
+		content = Resources.toString(Resources.getResource("graph.txt"), StandardCharsets.UTF_8);
+		graph = ScotlandYard.readGraph(content);
+	}
+
+	@Benchmark public ImmutableValueGraph<Integer, ImmutableSet<Transport>> readGraph() {
+		return ScotlandYard.readGraph(content);
+	}
+
+	@Benchmark public TransportGraph compileTransportGraph() {
+		return TransportGraph.compile(graph);
+	}
+
+}
@@ -0,0 +1,54 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+
+/**
+ * Benchmarks whole games of uniformly random moves on the standard map, from building the state
+ * to the winner. The random source is seeded, so every fork plays the same sequence of games.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayoutBenchmark {
+
+	@Param({"MyGameState", "Bitboard"}) public String factory;
+
+	private ScotlandYard.Factory<GameState> gameStateFactory;
+	private GameSetup setup;
+	private SplittableRandom random;
+
+	@Setup public void setUp() throws IOException {
+		gameStateFactory = factory.equals("Bitboard") ?
+				new BitboardGameStateFactory() : new MyGameStateFactory();
+		setup = BenchmarkStates.standardSetup();
+		random = new SplittableRandom(BenchmarkStates.SEED);
+	}
+
+	@Benchmark public ImmutableSet<Piece> randomPlayout() {
+		var state = gameStateFactory.build(setup,
+				BenchmarkStates.mrX(), BenchmarkStates.detectives());
+		return BenchmarkStates.playout(state, random).getWinner();
+	}
+
+}
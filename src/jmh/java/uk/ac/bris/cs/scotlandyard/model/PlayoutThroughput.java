@@ -0,0 +1,184 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.sim.GameRunner;
+import uk.ac.bris.cs.scotlandyard.sim.TimingStats;
+
+/**
+ * Throughput gate for the game state: plays random games from seeded start positions through
+ * {@link GameState} and fails if it got slower than a stored baseline.
+ * <br>
+ * Reports playouts per second, bytes allocated per playout and the p99 latency of
+ * {@link GameState#advance(Move)}. Run by {@code mvn -Pjmh verify}, see the profile in pom.xml for
+ * the properties. The baseline only holds for the machine it was recorded on, record a new one
+ * with {@code -Dplayout.update=true} when moving to another machine or after a deliberate
+ * trade-off.
+ */
+public final class PlayoutThroughput {
+
+	static final String PLAYOUTS_PER_SECOND = "playoutsPerSecond";
+	static final String BYTES_PER_PLAYOUT = "bytesPerPlayout";
+	static final String ADVANCE_P99_NANOS = "advanceP99Nanos";
+
+	private static final int START_POSITIONS = 64;
+
+	private PlayoutThroughput() {}
+
+	/**
+	 * Measured throughput of one run
+	 */
+	static final class Result {
+		final double playoutsPerSecond;
+		final long bytesPerPlayout;
+		final long advanceP99Nanos;
+
+		Result(double playoutsPerSecond, long bytesPerPlayout, long advanceP99Nanos) {
+			this.playoutsPerSecond = playoutsPerSecond;
+			this.bytesPerPlayout = bytesPerPlayout;
+			this.advanceP99Nanos = advanceP99Nanos;
+		}
+
+		@Override public String toString() {
+			return String.format("%.1f playouts/s, %d B/playout, advance p99 %d ns",
+					playoutsPerSecond, bytesPerPlayout, advanceP99Nanos);
+		}
+	}
+
+	/**
+	 * Usage: {@code PlayoutThroughput <baseline file> <seconds> <tolerance> <update> [factory]},
+	 * where tolerance is the fraction each metric may regress by and factory is
+	 * {@code MyGameState} (default) or {@code Bitboard}. Exits with 1 on a regression.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 4) {
+			System.err.println("Usage: PlayoutThroughput <baseline file> <seconds> " +
+					"<tolerance> <update> [MyGameState|Bitboard]");
+			System.exit(2);
+		}
+		Path baseline = Path.of(args[0]);
+		long seconds = Long.parseLong(args[1]);
+		double tolerance = Double.parseDouble(args[2]);
+		boolean update = Boolean.parseBoolean(args[3]);
+		String factoryName = args.length > 4 ? args[4] : "MyGameState";
+		ScotlandYard.Factory<GameState> factory = factoryName.equals("Bitboard") ?
+				new BitboardGameStateFactory() : new MyGameStateFactory();
+
+		var setup = BenchmarkStates.standardSetup();
+		System.out.printf("Warming up %s for %ds%n", factoryName, seconds);
+		measure(factory, setup, TimeUnit.SECONDS.toNanos(seconds));
+		var result = measure(factory, setup, TimeUnit.SECONDS.toNanos(seconds));
+		System.out.println("Measured: " + result);
+
+		Result expected = Files.exists(baseline) ? load(baseline, factoryName) : null;
+		if (update || expected == null) {
+			store(baseline, factoryName, result);
+			System.out.println("Baseline written to " + baseline);
+			return;
+		}
+		var failures = compare(expected, result, tolerance);
+		if (failures.isEmpty()) {
+			System.out.printf("Within %.0f%% of the baseline%n", tolerance * 100);
+			return;
+		}
+		failures.forEach(System.err::println);
+		System.exit(1);
+	}
+
+	static Result measure(ScotlandYard.Factory<GameState> factory, GameSetup setup, long nanos) {
+		var mrXs = new ArrayList<Player>();
+		var detectives = new ArrayList<ImmutableList<Player>>();
+		for (int seed = 0; seed < START_POSITIONS; seed++) {
+			mrXs.add(GameRunner.mrX(seed));
+			detectives.add(GameRunner.detectives(seed, ScotlandYard.DETECTIVES.size()));
+		}
+		var random = new SplittableRandom(BenchmarkStates.SEED);
+		var advance = new TimingStats();
+		var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long playouts = 0;
+		long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			int position = (int) (playouts % START_POSITIONS);
+			GameState state = factory.build(setup, mrXs.get(position), detectives.get(position));
+			while (state.getWinner().isEmpty()) {
+				ImmutableList<Move> moves = state.getAvailableMoves().asList();
+				Move move = moves.get(random.nextInt(moves.size()));
+				long before = System.nanoTime();
+				state = state.advance(move);
+				advance.record(System.nanoTime() - before);
+			}
+			playouts++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < nanos);
+		long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+		return new Result(playouts * (double) TimeUnit.SECONDS.toNanos(1) / elapsed,
+				allocated / playouts, advance.quantileNanos(0.99));
+	}
+
+	/**
+	 * @return a message for every metric that regressed by more than the tolerance
+	 */
+	static List<String> compare(Result baseline, Result actual, double tolerance) {
+		var failures = new ArrayList<String>();
+		if (actual.playoutsPerSecond < baseline.playoutsPerSecond * (1 - tolerance))
+			failures.add(String.format("Throughput regressed: %.1f playouts/s, baseline %.1f",
+					actual.playoutsPerSecond, baseline.playoutsPerSecond));
+		if (actual.bytesPerPlayout > baseline.bytesPerPlayout * (1 + tolerance))
+			failures.add(String.format("Allocation regressed: %d B/playout, baseline %d",
+					actual.bytesPerPlayout, baseline.bytesPerPlayout));
+		if (actual.advanceP99Nanos > baseline.advanceP99Nanos * (1 + tolerance))
+			failures.add(String.format("advance() p99 regressed: %d ns, baseline %d",
+					actual.advanceP99Nanos, baseline.advanceP99Nanos));
+		return failures;
+	}
+
+	@Nullable private static Result load(Path file, String factory) throws IOException {
+		var properties = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			properties.load(in);
+		}
+		String prefix = factory + ".";
+		if (properties.getProperty(prefix + PLAYOUTS_PER_SECOND) == null) return null;
+		return new Result(
+				Double.parseDouble(properties.getProperty(prefix + PLAYOUTS_PER_SECOND)),
+				Long.parseLong(properties.getProperty(prefix + BYTES_PER_PLAYOUT)),
+				Long.parseLong(properties.getProperty(prefix + ADVANCE_P99_NANOS)));
+	}
+
+	private static void store(Path file, String factory, Result result) throws IOException {
+		var properties = new Properties();
+		if (Files.exists(file)) {
+			try (InputStream in = Files.newInputStream(file)) {
+				properties.load(in);
+			}
+		}
+		String prefix = factory + ".";
+		properties.setProperty(prefix + PLAYOUTS_PER_SECOND,
+				String.format(Locale.ROOT, "%.1f", result.playoutsPerSecond));
+		properties.setProperty(prefix + BYTES_PER_PLAYOUT, String.valueOf(result.bytesPerPlayout));
+		properties.setProperty(prefix + ADVANCE_P99_NANOS, String.valueOf(result.advanceP99Nanos));
+		try (OutputStream out = Files.newOutputStream(file)) {
+			properties.store(out, "Random playout baseline, see PlayoutThroughput");
+		}
+	}
+
+}
@@ -6,7 +6,9 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.graph.ImmutableValueGraph;
 
 import java.io.IOException;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.stream.Stream;
@@ -88,6 +90,33 @@ public final class ResourceManager {
 		}
 	}
 
+	/**
+	 * @param cls the Ai's class
+	 * @param threads the number of search threads the Ai may use
+	 * @return a new instance, given the threads if the Ai has a public constructor taking them
+	 * alone, otherwise built with its no argument constructor
+	 */
+	public static Ai instantiateAi(Class<Ai> cls, int threads) {
+		Constructor<Ai> constructor;
+		try {
+			constructor = cls.getConstructor(int.class);
+		} catch (NoSuchMethodException e) {
+			return instantiateAi(cls);
+		}
+		try {
+			return constructor.newInstance(threads);
+		} catch (InstantiationException
+				| IllegalAccessException
+				| InvocationTargetException e) {
+			throw new RuntimeException("Unable to create Ai instance of class " + cls, e);
+		}
+	}
+
+	/**
+	 * @return an instance of every Ai on the classpath that can be created; interfaces extending
+	 * {@link Ai}, abstract classes and classes that aren't public, anonymous ones included, are
+	 * skipped
+	 */
 	@SuppressWarnings("unchecked") public static ImmutableList<Ai> scanAis() {
 		var found = new FastClasspathScanner()
 				.enableAllInfo()
@@ -99,9 +128,17 @@ public final class ResourceManager {
 				Class<Ai> clazz = (Class<Ai>) c.loadClass();
 				if (!Ai.class.isAssignableFrom(clazz))
 					throw new IllegalArgumentException(c + " does not implement " + Ai.class);
-				return instantiateAi(clazz);
+				return clazz;
 			} catch (Exception e) { throw new RuntimeException(e); }
-		}).collect(ImmutableList.toImmutableList());
+		}).filter(ResourceManager::isInstantiable)
+				.map(ResourceManager::instantiateAi)
+				.collect(ImmutableList.toImmutableList());
+	}
+
+	private static boolean isInstantiable(Class<?> clazz) {
+		int modifiers = clazz.getModifiers();
+		return !clazz.isInterface() && !Modifier.isAbstract(modifiers)
+				&& Modifier.isPublic(modifiers) && !clazz.isAnonymousClass();
 	}
 
 }
@@ -0,0 +1,171 @@
+package uk.ac.bris.cs.scotlandyard;
+
+import io.atlassian.fugue.Pair;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import uk.ac.bris.cs.scotlandyard.ai.MctsAi;
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+import uk.ac.bris.cs.scotlandyard.model.EngineMetrics;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.sim.BatchSimulator;
+import uk.ac.bris.cs.scotlandyard.sim.GameRunner;
+import uk.ac.bris.cs.scotlandyard.sim.Tournament;
+import uk.ac.bris.cs.scotlandyard.sim.Tournament.Entrant;
+
+/**
+ * Headless entry point, plays a batch of games between two Ais and prints the win rates and
+ * move timings, or a round robin {@link Tournament} between several Ais.
+ * <br>
+ * Run with {@code mvn exec:java -Dexec.mainClass=uk.ac.bris.cs.scotlandyard.Simulator
+ * -Dexec.args="--mrx MCTS --detectives Alpha-Beta --games 1000"}
+ * <br>
+ * Ais that search on several threads, like {@link MctsAi}, are built with {@code --ai-threads}
+ * each, by default the cores shared out between the games played at once. Games in parallel
+ * finish a batch sooner, whereas fewer games with more search threads each play closer to how
+ * the Ais play alone; the two multiplied shouldn't exceed the cores.
+ */
+public final class Simulator {
+
+	private static final String USAGE = String.join(System.lineSeparator(),
+			"Usage: Simulator --mrx <ai> --detectives <ai> [options]",
+			"       Simulator --tournament <ai>,<ai>[,<ai>...] [--checkpoint <file>] [options]",
+			"  <ai> is the Ai's name() or class name",
+			"  --games <n>            number of games, per pairing in a tournament (default 100)",
+			"  --threads <n>          games played at once (default: available processors)",
+			"  --ai-threads <n>       search threads of each Ai (default: processors / threads)",
+			"  --timeout <ms>         time per move given to the Ais (default 1000)",
+			"  --seed <n>             seed of the first game (default 0)",
+			"  --detective-count <n>  detectives per game, 1-5 (default 5)",
+			"  --supervised           enforce the timeout, playing a fallback move for late Ais",
+			"  --verbose              print every game result");
+
+	private Simulator() {}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Map<String, String> options;
+		try {
+			options = parseOptions(args, Set.of("verbose", "supervised"));
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+			return;
+		}
+		boolean tournament = options.containsKey("tournament");
+		boolean match = options.containsKey("mrx") && options.containsKey("detectives");
+		if (tournament == match) {
+			System.err.println(USAGE);
+			System.exit(2);
+			return;
+		}
+		int games = Integer.parseInt(options.getOrDefault("games", "100"));
+		int cores = Runtime.getRuntime().availableProcessors();
+		int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(cores)));
+		int aiThreads = Integer.parseInt(options.getOrDefault("ai-threads",
+				String.valueOf(Math.max(1, cores / Math.max(1, threads)))));
+		long timeout = Long.parseLong(options.getOrDefault("timeout", "1000"));
+		int seed = Integer.parseInt(options.getOrDefault("seed", "0"));
+		int detectiveCount = Integer.parseInt(options.getOrDefault("detective-count", "5"));
+		boolean verbose = options.containsKey("verbose");
+		boolean supervised = options.containsKey("supervised");
+
+		var setup = new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24MOVES);
+		var runner = new GameRunner(setup, detectiveCount,
+				new Pair<>(timeout, TimeUnit.MILLISECONDS), supervised);
+		if (tournament) {
+			var entrants = new ArrayList<Entrant>();
+			for (String name : options.get("tournament").split(","))
+				entrants.add(new Entrant(name, aiSupplier(name, aiThreads)));
+			var checkpoint = options.containsKey("checkpoint") ?
+					Path.of(options.get("checkpoint")) : null;
+			int total = games * entrants.size() * (entrants.size() - 1);
+			int step = Math.max(1, total / 20);
+			var report = new Tournament(runner, entrants).run(games, seed, threads, checkpoint,
+					(result, standings) -> {
+						if (verbose) System.out.println(result);
+						if ((standings.games() - standings.resumed()) % step != 0) return;
+						System.err.printf("%d/%d games%n%s%n", standings.games(), total,
+								standings.ratings());
+					});
+			System.out.println(report);
+			printEngineMetrics();
+			return;
+		}
+		Supplier<Ai> mrX = aiSupplier(options.get("mrx"), aiThreads);
+		Supplier<Ai> detectives = aiSupplier(options.get("detectives"), aiThreads);
+		int step = Math.max(1, games / 10);
+		int[] finished = {0};
+		var report = new BatchSimulator(runner, mrX, detectives).run(games, seed, threads,
+				result -> {
+					if (verbose) System.out.println(result);
+					if (++finished[0] % step == 0)
+						System.err.printf("%d/%d games%n", finished[0], games);
+				});
+		System.out.println(report);
+		printEngineMetrics();
+	}
+
+	// with -Dscotlandyard.metrics=true, shows how much of the move time the engine took
+	private static void printEngineMetrics() {
+		if (!EngineMetrics.ENABLED) return;
+		System.out.println("Engine metrics:");
+		EngineMetrics.snapshot().forEach((name, value) ->
+				System.out.printf("  %-22s %d%n", name, value));
+	}
+
+	/**
+	 * @param args arguments of the form {@code --name value}
+	 * @param flags names that take no value
+	 * @return the value of every option by name, flags map to an empty string
+	 * @throws IllegalArgumentException if the arguments are malformed
+	 */
+	static Map<String, String> parseOptions(String[] args, Set<String> flags) {
+		var options = new HashMap<String, String>();
+		for (int i = 0; i < args.length; i++) {
+			if (!args[i].startsWith("--"))
+				throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+			String name = args[i].substring(2);
+			if (flags.contains(name)) options.put(name, "");
+			else if (i + 1 < args.length) options.put(name, args[++i]);
+			else throw new IllegalArgumentException("Missing value for --" + name);
+		}
+		return options;
+	}
+
+	/**
+	 * @param name an Ai's class name or {@link Ai#name()}, case insensitive for the latter
+	 * @param threads the search threads of each instance, see
+	 * {@link ResourceManager#instantiateAi(Class, int)}
+	 * @return a supplier of new instances of the Ai
+	 * @throws IllegalArgumentException if there is no such Ai
+	 */
+	@SuppressWarnings("unchecked")
+	static Supplier<Ai> aiSupplier(String name, int threads) {
+		Class<Ai> type;
+		try {
+			var found = Class.forName(name);
+			if (!Ai.class.isAssignableFrom(found))
+				throw new IllegalArgumentException(found + " does not implement " + Ai.class);
+			type = (Class<Ai>) found;
+		} catch (ClassNotFoundException e) {
+			type = ResourceManager.scanAis().stream()
+					.filter(ai -> ai.name().equalsIgnoreCase(name)
+							|| ai.getClass().getSimpleName().equals(name))
+					.map(ai -> (Class<Ai>) ai.getClass())
+					.findFirst()
+					.orElseThrow(() -> new IllegalArgumentException("No Ai named " + name));
+		}
+		Class<Ai> resolved = type;
+		return () -> ResourceManager.instantiateAi(resolved, threads);
+	}
+
+}
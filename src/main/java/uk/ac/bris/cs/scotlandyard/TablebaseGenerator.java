@@ -0,0 +1,57 @@
+package uk.ac.bris.cs.scotlandyard;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+
+import uk.ac.bris.cs.scotlandyard.ai.Tablebase;
+import uk.ac.bris.cs.scotlandyard.ai.TablebaseAi;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.model.TransportGraph;
+
+/**
+ * Computes a {@link Tablebase} for the standard graph and writes it to a file, for
+ * {@link TablebaseAi} to open with {@code -Dscotlandyard.tablebase=<file>}.
+ * <br>
+ * Run with {@code mvn exec:java -Dexec.mainClass=uk.ac.bris.cs.scotlandyard.TablebaseGenerator
+ * -Dexec.args="--detectives 2 --rounds 5 --out tablebase-2x5.bin"}
+ */
+public final class TablebaseGenerator {
+
+	private static final String USAGE = String.join(System.lineSeparator(),
+			"Usage: TablebaseGenerator --out <file> [options]",
+			"  --detectives <n>  detectives in the games, 1-" + Tablebase.MAX_DETECTIVES
+					+ " (default 1)",
+			"  --rounds <n>      most rounds left the table covers (default 5)");
+
+	private TablebaseGenerator() {}
+
+	public static void main(String[] args) throws IOException {
+		Map<String, String> options;
+		try {
+			options = Simulator.parseOptions(args, Set.of());
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+			return;
+		}
+		if (!options.containsKey("out")) {
+			System.err.println(USAGE);
+			System.exit(2);
+			return;
+		}
+		int detectives = Integer.parseInt(options.getOrDefault("detectives", "1"));
+		int rounds = Integer.parseInt(options.getOrDefault("rounds", "5"));
+		Path out = Path.of(options.get("out"));
+
+		TransportGraph graph = TransportGraph.compile(ScotlandYard.standardGraph());
+		long start = System.nanoTime();
+		Tablebase table = Tablebase.compute(graph, detectives, rounds);
+		table.writeTo(out);
+		System.out.printf("%d detectives, %d rounds written to %s in %dms%n", detectives, rounds,
+				out.toAbsolutePath(), (System.nanoTime() - start) / 1_000_000);
+	}
+
+}
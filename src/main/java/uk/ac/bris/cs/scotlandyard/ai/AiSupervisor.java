@@ -0,0 +1,415 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.collect.ImmutableSet;
+
+import io.atlassian.fugue.Pair;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+import uk.ac.bris.cs.scotlandyard.model.AnytimeAi;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveSink;
+import uk.ac.bris.cs.scotlandyard.model.PonderingAi;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * Runs every {@link Ai#pickMove} on a dedicated thread with a hard deadline, so an Ai that runs
+ * over its timeout never stalls the game.
+ * <br>
+ * The deadline is half the {@link AiSupport#margin(long)} before the timeout runs out, after the
+ * Ais' own deadline. When it passes the call is cancelled: {@link Call#cancelled()} turns true and
+ * the thread is interrupted. The move played is then the best one the Ai published with
+ * {@link Call#publish(Move)}, or a cheap {@link #fallbackMove(Board)}. An {@link AnytimeAi} is
+ * given the call as its {@link MoveSink} and searches right up to the deadline; the shipped Ais
+ * poll {@link #current()} when called as a plain {@link Ai}. A thread that ignores the
+ * cancellation is left to finish as a daemon and counted by {@link #running()}. Until it does,
+ * calls to the same Ai fall back at once without starting another thread, so a runaway Ai costs
+ * its moves rather than piling up threads or queueing behind itself.
+ * <br>
+ * A {@link PonderingAi} can also be run on the other side's turn with
+ * {@link #ponder(PonderingAi, Board)}.
+ */
+public final class AiSupervisor implements AutoCloseable {
+
+	/**
+	 * How a decision was made
+	 */
+	public enum Outcome {
+		/**
+		 * The Ai returned a legal move in time
+		 */
+		PICKED,
+		/**
+		 * The Ai ran out of time, its latest published move is played
+		 */
+		BEST_SO_FAR,
+		/**
+		 * The Ai ran out of time without publishing a move, or was still running an earlier call
+		 * that ignored its cancellation; the fallback move is played
+		 */
+		FALLBACK,
+		ILLEGAL_MOVE,
+		THREW;
+
+		/**
+		 * @return whether the decision's move can be played
+		 */
+		public boolean playable() { return this != ILLEGAL_MOVE && this != THREW; }
+	}
+
+	/**
+	 * The result of a supervised call
+	 */
+	public static final class Decision {
+		private final Move move;
+		private final Outcome outcome;
+		private final Throwable error;
+		private final long elapsedNanos;
+
+		Decision(@Nullable Move move, Outcome outcome, @Nullable Throwable error,
+		         long elapsedNanos) {
+			this.move = move;
+			this.outcome = Objects.requireNonNull(outcome);
+			this.error = error;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * @return the move to play, or for {@link Outcome#ILLEGAL_MOVE} the move the Ai picked,
+		 * null for {@link Outcome#THREW}
+		 */
+		@Nullable public Move move() { return move; }
+
+		@Nonnull public Outcome outcome() { return outcome; }
+
+		/**
+		 * @return what the Ai threw, null unless {@link Outcome#THREW}
+		 */
+		@Nullable public Throwable error() { return error; }
+
+		public long elapsedNanos() { return elapsedNanos; }
+
+		/**
+		 * @param ai the Ai the decision was made for
+		 * @return whether the Ai ran out of time; an {@link AnytimeAi} is meant to be stopped
+		 * with its latest move, so only its fallbacks count
+		 */
+		public boolean overran(@Nonnull Ai ai) {
+			return outcome == Outcome.FALLBACK
+					|| outcome == Outcome.BEST_SO_FAR && !(ai instanceof AnytimeAi);
+		}
+
+		@Override public String toString() {
+			return outcome + " " + move + " in " + elapsedNanos + "ns";
+		}
+	}
+
+	/**
+	 * The call in progress on a supervised thread, polled by the Ai
+	 */
+	public static final class Call implements MoveSink {
+		private final ImmutableSet<Move> moves;
+		private final CompletableFuture<Move> picked = new CompletableFuture<>();
+		private final AtomicReference<Move> best = new AtomicReference<>();
+		private volatile Thread thread;
+		private volatile boolean cancelled;
+
+		Call(ImmutableSet<Move> moves) { this.moves = moves; }
+
+		/**
+		 * @return whether the deadline has passed and the Ai should return at once; the Ai may
+		 * hand this call to its own threads, which can't see {@link #current()}
+		 */
+		@Override public boolean cancelled() { return cancelled; }
+
+		/**
+		 * @param move the best move found so far, played if the Ai runs out of time; illegal
+		 * moves are ignored
+		 */
+		@Override public void publish(@Nonnull Move move) {
+			if (moves.contains(move)) best.set(move);
+		}
+
+		@Nullable Move best() { return best.get(); }
+
+		void cancel() {
+			cancelled = true;
+			Thread running = thread;
+			if (running != null) running.interrupt();
+		}
+	}
+
+	private static final Call UNSUPERVISED = new Call(ImmutableSet.of());
+	private static final ThreadLocal<Call> CURRENT = new ThreadLocal<>();
+
+	/**
+	 * @return the call running on this thread, or one that is never cancelled and ignores moves
+	 * if the thread isn't supervised
+	 */
+	@Nonnull public static Call current() {
+		Call call = CURRENT.get();
+		return call == null ? UNSUPERVISED : call;
+	}
+
+	// completes a call cancelled before its deadline, never thrown
+	private static final Throwable CANCELLED = new IllegalStateException("Cancelled");
+
+	private final AiTelemetry telemetry;
+	private final Set<Call> active = ConcurrentHashMap.newKeySet();
+	// the call each Ai is running, kept until its thread returns even if it was cancelled
+	private final Map<Ai, Call> busy = new ConcurrentHashMap<>();
+	private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+	private final Set<Pondering> ponderings = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger started = new AtomicInteger();
+	private volatile boolean closed;
+
+	public AiSupervisor() { this(null); }
+
+	/**
+	 * @param telemetry records every call as measured on its thread, may be null
+	 */
+	public AiSupervisor(@Nullable AiTelemetry telemetry) { this.telemetry = telemetry; }
+
+	/**
+	 * Asks the Ai for a move and waits for it until the deadline, on the calling thread
+	 *
+	 * @param ai the Ai
+	 * @param board the board, with at least one available move
+	 * @param timeout the timeout given to the Ai
+	 * @return the decision, never later than the timeout; a {@link Outcome#FALLBACK} at once if
+	 * the Ai is still running an earlier call
+	 * @throws InterruptedException if the calling thread is interrupted, the call is then
+	 * cancelled
+	 */
+	@Nonnull public Decision decide(@Nonnull Ai ai, @Nonnull Board board,
+	                                @Nonnull Pair<Long, TimeUnit> timeout)
+			throws InterruptedException {
+		if (closed) throw new IllegalStateException("Supervisor is closed");
+		long start = System.nanoTime();
+		long budget = timeout.right().toNanos(timeout.left());
+		long deadline = start + Math.max(0, budget - AiSupport.margin(budget) / 2);
+		var moves = board.getAvailableMoves();
+		var call = new Call(moves);
+		if (busy.putIfAbsent(ai, call) != null)
+			return new Decision(fallbackMove(board), Outcome.FALLBACK, null,
+					System.nanoTime() - start);
+		var thread = new Thread(() -> run(ai, board, timeout, call),
+				"ai-" + ai.name() + "-" + started.getAndIncrement());
+		thread.setDaemon(true);
+		call.thread = thread;
+		active.add(call);
+		threads.add(thread);
+		thread.start();
+		try {
+			Move move = call.picked.get(Math.max(0, deadline - System.nanoTime()),
+					TimeUnit.NANOSECONDS);
+			return new Decision(move, moves.contains(move) ? Outcome.PICKED : Outcome.ILLEGAL_MOVE,
+					null, System.nanoTime() - start);
+		} catch (TimeoutException e) {
+			// decided before cancelling, so the woken Ai doesn't compete for the CPU meanwhile
+			Decision decision = outOfTime(board, call, start);
+			call.cancel();
+			return decision;
+		} catch (ExecutionException e) {
+			if (e.getCause() == CANCELLED) return outOfTime(board, call, start);
+			return new Decision(null, Outcome.THREW, e.getCause(), System.nanoTime() - start);
+		} catch (CancellationException e) {
+			// the Ai threw it, the future itself is never cancelled
+			return new Decision(null, Outcome.THREW, e, System.nanoTime() - start);
+		} catch (InterruptedException e) {
+			call.cancel();
+			throw e;
+		} finally {
+			active.remove(call);
+		}
+	}
+
+	private static Decision outOfTime(Board board, Call call, long start) {
+		Move best = call.best();
+		return best != null ?
+				new Decision(best, Outcome.BEST_SO_FAR, null, System.nanoTime() - start) :
+				new Decision(fallbackMove(board), Outcome.FALLBACK, null,
+						System.nanoTime() - start);
+	}
+
+	private void run(Ai ai, Board board, Pair<Long, TimeUnit> timeout, Call call) {
+		CURRENT.set(call);
+		var probe = telemetry == null ? null : AiTelemetry.start();
+		Move move = null;
+		Throwable thrown = null;
+		try {
+			move = ai instanceof AnytimeAi ?
+					((AnytimeAi) ai).pickMove(board, timeout, call) : ai.pickMove(board, timeout);
+		} catch (Throwable e) {
+			thrown = e;
+		} finally {
+			CURRENT.remove();
+		}
+		// recorded before completing, so the sample is there once the decision is
+		if (probe != null)
+			telemetry.record(probe.stop(ai.name(), AiSupport.isMrXTurn(board),
+					board.getMrXTravelLog().size(), timeout.right().toNanos(timeout.left()),
+					thrown != null ? AiTelemetry.Outcome.THREW : call.moves.contains(move) ?
+							AiTelemetry.Outcome.OK : AiTelemetry.Outcome.ILLEGAL_MOVE));
+		threads.remove(Thread.currentThread());
+		busy.remove(ai, call);
+		if (thrown != null) call.picked.completeExceptionally(thrown);
+		else call.picked.complete(move);
+	}
+
+	/**
+	 * Pondering in progress, see {@link #ponder(PonderingAi, Board)}
+	 */
+	public final class Pondering {
+		private final PonderingAi ai;
+		private final Thread thread;
+		private volatile Move predicted;
+		private volatile boolean stopped;
+
+		Pondering(PonderingAi ai, Board board) {
+			this.ai = ai;
+			this.thread = new Thread(() -> run(board),
+					"ponder-" + ai.name() + "-" + started.getAndIncrement());
+			thread.setDaemon(true);
+		}
+
+		private void run(Board board) {
+			try {
+				Move move = ai.predict(board);
+				if (move == null || !board.getAvailableMoves().contains(move) || stopped) return;
+				predicted = move;
+				ai.ponder(board, move);
+			} catch (RuntimeException e) {
+				// pondering is best effort, the Ai will be asked for its move all the same
+				predicted = null;
+			} finally {
+				threads.remove(Thread.currentThread());
+			}
+		}
+
+		/**
+		 * @return the move the Ai predicted, null if it hasn't or won't ponder
+		 */
+		@Nullable public Move predicted() { return predicted; }
+
+		/**
+		 * Interrupts the pondering, waits {@link #PONDER_GRACE_MILLIS} at most for it to stop and
+		 * then tells the Ai whether it predicted the move made
+		 *
+		 * @param actual the move the other side made, null if none will be
+		 * @return whether the Ai predicted the move
+		 * @throws InterruptedException if interrupted while waiting, the Ai is told nothing
+		 */
+		public boolean stop(@Nullable Move actual) throws InterruptedException {
+			stopped = true;
+			thread.interrupt();
+			thread.join(PONDER_GRACE_MILLIS);
+			ponderings.remove(this);
+			Move move = predicted;
+			if (move == null) return false;
+			boolean hit = move.equals(actual);
+			ai.onPonderResult(hit);
+			return hit;
+		}
+	}
+
+	/**
+	 * Longest time {@link Pondering#stop(Move)} waits for the Ai to stop pondering
+	 */
+	public static final long PONDER_GRACE_MILLIS = 100;
+
+	/**
+	 * Starts the Ai pondering on a thread of its own while the detectives move
+	 *
+	 * @param ai the Ai, which mustn't be the one moving on the board
+	 * @param board a board on the detectives' turn
+	 * @return the pondering, to be stopped once the move is made
+	 * @throws IllegalArgumentException if it is MrX's turn, whose moves are secret
+	 */
+	@Nonnull public Pondering ponder(@Nonnull PonderingAi ai, @Nonnull Board board) {
+		if (closed) throw new IllegalStateException("Supervisor is closed");
+		if (AiSupport.isMrXTurn(board))
+			throw new IllegalArgumentException("MrX's moves are secret");
+		var pondering = new Pondering(ai, board);
+		ponderings.add(pondering);
+		threads.add(pondering.thread);
+		pondering.thread.start();
+		return pondering;
+	}
+
+	/**
+	 * @return the number of supervised threads still running, including those that ignored
+	 * their cancellation
+	 */
+	public int running() { return threads.size(); }
+
+	/**
+	 * Cancels every call in progress, their decisions fall back at once
+	 */
+	public void cancel() {
+		for (Call call : active) {
+			call.cancel();
+			call.picked.completeExceptionally(CANCELLED);
+		}
+	}
+
+	/**
+	 * Cancels every call and pondering in progress and refuses new ones; the pondering Ais are
+	 * told nothing
+	 */
+	@Override public void close() {
+		closed = true;
+		cancel();
+		for (Pondering pondering : ponderings) {
+			pondering.stopped = true;
+			pondering.thread.interrupt();
+		}
+		ponderings.clear();
+	}
+
+	/**
+	 * @param board the board, with at least one available move
+	 * @return the first move that spends the fewest and most common tickets: a single move over a
+	 * double move, anything over a secret move
+	 */
+	@Nonnull public static Move fallbackMove(@Nonnull Board board) {
+		// a plain loop, this runs once the time is up and mustn't pay for linking a lambda
+		Move cheapest = null;
+		int lowest = Integer.MAX_VALUE;
+		for (Move move : board.getAvailableMoves()) {
+			int cost = cost(move);
+			if (cost < lowest) {
+				cheapest = move;
+				lowest = cost;
+			}
+		}
+		if (cheapest == null) throw new IllegalArgumentException("No moves available");
+		return cheapest;
+	}
+
+	private static int cost(Move move) {
+		int cost = 0;
+		for (Ticket ticket : move.tickets()) {
+			if (ticket == Ticket.DOUBLE) cost += 4;
+			else if (ticket == Ticket.SECRET) cost += 2;
+			else cost += 1;
+		}
+		return cost;
+	}
+
+}
@@ -0,0 +1,142 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.atlassian.fugue.Pair;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.NodeSet;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+
+/**
+ * Helpers shared by the search {@link uk.ac.bris.cs.scotlandyard.model.Ai}s
+ */
+final class AiSupport {
+
+	private AiSupport() {}
+
+	/**
+	 * Time kept back from every timeout for returning the move, in nanoseconds
+	 */
+	static final long MIN_MARGIN = TimeUnit.MILLISECONDS.toNanos(5);
+	static final long MAX_MARGIN = TimeUnit.MILLISECONDS.toNanos(100);
+
+	/**
+	 * A stop condition of the searches that never holds, leaving only the deadline
+	 */
+	static final BooleanSupplier NEVER = () -> false;
+
+	/**
+	 * @param start the {@link System#nanoTime()} the turn started at
+	 * @param timeout the timeout given to pickMove
+	 * @return the {@link System#nanoTime()} to stop searching at, a margin of 5% of the timeout
+	 * (clamped to 5-100ms) before it runs out
+	 */
+	static long deadline(long start, Pair<Long, TimeUnit> timeout) {
+		long budget = timeout.right().toNanos(timeout.left());
+		return start + Math.max(0, budget - margin(budget));
+	}
+
+	/**
+	 * @param budget the timeout in nanoseconds
+	 * @return the margin kept back from it, 5% clamped to 5-100ms
+	 */
+	static long margin(long budget) {
+		return Math.max(MIN_MARGIN, Math.min(MAX_MARGIN, budget / 20));
+	}
+
+	/**
+	 * System property holding the search threads of the Ais built with their no argument
+	 * constructors, read once
+	 */
+	static final String THREADS_PROPERTY = "scotlandyard.ai.threads";
+
+	/**
+	 * The search threads of an Ai built with its no argument constructor, from
+	 * {@link #THREADS_PROPERTY} or else the number of cores
+	 */
+	static final int DEFAULT_THREADS = Math.max(1, Integer.getInteger(THREADS_PROPERTY,
+			Runtime.getRuntime().availableProcessors()));
+
+	/**
+	 * @param name the thread name format
+	 * @param threads the number of threads
+	 * @return a fixed pool of daemon threads, so a forgotten pool never keeps the JVM alive
+	 */
+	static ExecutorService daemonPool(String name, int threads) {
+		return Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+				.setNameFormat(name)
+				.setDaemon(true)
+				.build());
+	}
+
+	/**
+	 * @param board the board
+	 * @return whether the moves on the board are MrX's
+	 */
+	static boolean isMrXTurn(Board board) {
+		return board.getAvailableMoves().stream().anyMatch(m -> m.commencedBy().isMrX());
+	}
+
+	/**
+	 * @param board a board on MrX's turn
+	 * @return MrX's location, the source of his moves
+	 */
+	static int mrXLocation(Board board) {
+		return board.getAvailableMoves().stream()
+				.filter(m -> m.commencedBy().isMrX())
+				.mapToInt(Move::source)
+				.findFirst()
+				.orElseThrow(() -> new IllegalArgumentException("Not MrX's turn"));
+	}
+
+	/**
+	 * @param candidates the nodes MrX could be on
+	 * @param random the random source
+	 * @return a uniformly picked node, or -1 if there are none
+	 */
+	static int sample(long[] candidates, SplittableRandom random) {
+		int size = NodeSet.size(candidates);
+		if (size == 0) return -1;
+		int skip = random.nextInt(size);
+		int node = NodeSet.next(candidates, 0);
+		for (int i = 0; i < skip; i++) node = NodeSet.next(candidates, node + 1);
+		return node;
+	}
+
+	/**
+	 * @param board a board on the detectives' turn
+	 * @param tracker the tracker of the game, updated with the board
+	 * @return the nodes MrX could be on, never empty
+	 */
+	static long[] candidates(Board board, MrXTracker tracker) {
+		tracker.update(board);
+		if (tracker.size() == 0) {
+			// the log contradicts the tracker's start nodes, fall back to every start node
+			tracker.reset();
+			tracker.update(board);
+			if (tracker.size() == 0) tracker.reset();
+		}
+		return tracker.candidates();
+	}
+
+	/**
+	 * @param board the board
+	 * @param tracker the tracker of the game, updated with the board
+	 * @param random the random source for the detectives' guess
+	 * @return a search state for the board, MrX's location being guessed from the tracker on the
+	 * detectives' turn
+	 */
+	static SearchState rootState(Board board, MrXTracker tracker, SplittableRandom random) {
+		if (isMrXTurn(board)) return SearchState.fromBoard(board, mrXLocation(board));
+		return SearchState.fromBoard(board, sample(candidates(board, tracker), random));
+	}
+
+}
@@ -0,0 +1,260 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+
+/**
+ * Latency telemetry of {@link Ai#pickMove} calls, kept in a ring buffer of the most recent
+ * samples and exportable as CSV or JSON.
+ * <br>
+ * A {@link Probe} is started on the thread calling the Ai, CPU time and allocations are
+ * therefore those of that thread only and miss any work the Ai hands to its own threads.
+ * Thread safe.
+ */
+public final class AiTelemetry {
+
+	/**
+	 * Default number of samples kept, a few hundred games worth
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 14;
+
+	/**
+	 * How a call ended
+	 */
+	public enum Outcome {OK, ILLEGAL_MOVE, THREW}
+
+	/**
+	 * One {@link Ai#pickMove} call
+	 */
+	public static final class Sample {
+		private final long startedAtMillis;
+		private final String ai;
+		private final boolean mrX;
+		private final int round;
+		private final long wallNanos;
+		private final long cpuNanos;
+		private final long allocatedBytes;
+		private final long timeoutNanos;
+		private final Outcome outcome;
+
+		Sample(long startedAtMillis, String ai, boolean mrX, int round, long wallNanos,
+		       long cpuNanos, long allocatedBytes, long timeoutNanos, Outcome outcome) {
+			this.startedAtMillis = startedAtMillis;
+			this.ai = Objects.requireNonNull(ai);
+			this.mrX = mrX;
+			this.round = round;
+			this.wallNanos = wallNanos;
+			this.cpuNanos = cpuNanos;
+			this.allocatedBytes = allocatedBytes;
+			this.timeoutNanos = timeoutNanos;
+			this.outcome = Objects.requireNonNull(outcome);
+		}
+
+		/**
+		 * @return the wall clock time the call started at, in epoch milliseconds
+		 */
+		public long startedAtMillis() { return startedAtMillis; }
+
+		@Nonnull public String ai() { return ai; }
+
+		/**
+		 * @return whether the Ai was playing MrX
+		 */
+		public boolean mrX() { return mrX; }
+
+		/**
+		 * @return the size of MrX's travel log when the Ai was asked
+		 */
+		public int round() { return round; }
+
+		public long wallNanos() { return wallNanos; }
+
+		/**
+		 * @return the CPU time of the calling thread, -1 if the JVM cannot measure it
+		 */
+		public long cpuNanos() { return cpuNanos; }
+
+		/**
+		 * @return the bytes allocated by the calling thread, -1 if the JVM cannot measure it
+		 */
+		public long allocatedBytes() { return allocatedBytes; }
+
+		public long timeoutNanos() { return timeoutNanos; }
+
+		/**
+		 * @return the time left before the timeout when the call returned, negative if it
+		 * overran
+		 */
+		public long remainingNanos() { return timeoutNanos - wallNanos; }
+
+		/**
+		 * @return the fraction of the timeout used
+		 */
+		public double timeoutUsed() { return wallNanos / (double) timeoutNanos; }
+
+		@Nonnull public Outcome outcome() { return outcome; }
+	}
+
+	/**
+	 * Measures a call from the thread it is started on
+	 */
+	public static final class Probe {
+		private final long startedAtMillis = System.currentTimeMillis();
+		private final long thread = Thread.currentThread().getId();
+		private final long cpu = cpuTime();
+		private final long allocated = allocatedBytes(thread);
+		private final long start = System.nanoTime();
+
+		/**
+		 * @param ai the name of the Ai called
+		 * @param mrX whether the Ai was playing MrX
+		 * @param round the size of MrX's travel log when the Ai was asked
+		 * @param timeoutNanos the timeout given to the Ai
+		 * @param outcome how the call ended
+		 * @return the sample, must be called on the thread the probe was started on
+		 */
+		@Nonnull public Sample stop(@Nonnull String ai, boolean mrX, int round, long timeoutNanos,
+		                            @Nonnull Outcome outcome) {
+			long wall = System.nanoTime() - start;
+			if (Thread.currentThread().getId() != thread)
+				throw new IllegalStateException("Probe stopped on another thread");
+			long cpuNow = cpuTime();
+			long allocatedNow = allocatedBytes(thread);
+			return new Sample(startedAtMillis, ai, mrX, round, wall,
+					cpu < 0 || cpuNow < 0 ? -1 : cpuNow - cpu,
+					allocated < 0 || allocatedNow < 0 ? -1 : allocatedNow - allocated,
+					timeoutNanos, outcome);
+		}
+	}
+
+	/**
+	 * @return a probe measuring from now on the current thread
+	 */
+	@Nonnull public static Probe start() { return new Probe(); }
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private static long cpuTime() {
+		return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+	}
+
+	private static long allocatedBytes(long thread) {
+		return THREADS instanceof com.sun.management.ThreadMXBean ?
+				((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(thread) : -1;
+	}
+
+	private final Sample[] samples;
+	private long recorded;
+
+	/**
+	 * @param capacity the number of most recent samples kept
+	 */
+	public AiTelemetry(int capacity) {
+		if (capacity < 1) throw new IllegalArgumentException("Bad capacity: " + capacity);
+		this.samples = new Sample[capacity];
+	}
+
+	public synchronized void record(@Nonnull Sample sample) {
+		samples[(int) (recorded++ % samples.length)] = Objects.requireNonNull(sample);
+	}
+
+	/**
+	 * @return the samples kept, oldest first
+	 */
+	@Nonnull public synchronized ImmutableList<Sample> samples() {
+		var builder = ImmutableList.<Sample>builder();
+		long first = Math.max(0, recorded - samples.length);
+		for (long i = first; i < recorded; i++) builder.add(samples[(int) (i % samples.length)]);
+		return builder.build();
+	}
+
+	/**
+	 * @return the number of samples recorded, including those overwritten
+	 */
+	public synchronized long recorded() { return recorded; }
+
+	public synchronized void clear() {
+		Arrays.fill(samples, null);
+		recorded = 0;
+	}
+
+	private static final String[] COLUMNS = {"startedAtMillis", "ai", "side", "round",
+			"wallNanos", "cpuNanos", "allocatedBytes", "timeoutNanos", "remainingNanos",
+			"outcome"};
+
+	private static Object[] values(Sample sample) {
+		return new Object[]{sample.startedAtMillis, sample.ai, sample.mrX ? "MrX" : "Detectives",
+				sample.round, sample.wallNanos, sample.cpuNanos, sample.allocatedBytes,
+				sample.timeoutNanos, sample.remainingNanos(), sample.outcome};
+	}
+
+	/**
+	 * @param out where to write the samples as CSV, with a header line
+	 */
+	public void writeCsv(@Nonnull Appendable out) throws IOException {
+		out.append(String.join(",", COLUMNS)).append('\n');
+		for (Sample sample : samples()) {
+			Object[] values = values(sample);
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) out.append(',');
+				out.append(values[i] instanceof String ?
+						csvQuote((String) values[i]) : String.valueOf(values[i]));
+			}
+			out.append('\n');
+		}
+	}
+
+	/**
+	 * @param out where to write the samples as a JSON array of objects
+	 */
+	public void writeJson(@Nonnull Appendable out) throws IOException {
+		out.append('[');
+		boolean first = true;
+		for (Sample sample : samples()) {
+			out.append(first ? "\n  {" : ",\n  {");
+			first = false;
+			Object[] values = values(sample);
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) out.append(", ");
+				out.append('"').append(COLUMNS[i]).append("\": ");
+				out.append(values[i] instanceof Number ?
+						String.valueOf(values[i]) : jsonQuote(String.valueOf(values[i])));
+			}
+			out.append('}');
+		}
+		out.append(first ? "]\n" : "\n]\n");
+	}
+
+	private static String csvQuote(String value) {
+		if (value.chars().noneMatch(c -> c == ',' || c == '"' || c == '\n' || c == '\r'))
+			return value;
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+
+	private static String jsonQuote(String value) {
+		var builder = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			switch (c) {
+				case '"': builder.append("\\\""); break;
+				case '\\': builder.append("\\\\"); break;
+				case '\n': builder.append("\\n"); break;
+				case '\r': builder.append("\\r"); break;
+				case '\t': builder.append("\\t"); break;
+				default:
+					if (c < 0x20) builder.append(String.format("\\u%04x", (int) c));
+					else builder.append(c);
+			}
+		}
+		return builder.append('"').toString();
+	}
+
+}
@@ -0,0 +1,181 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import io.atlassian.fugue.Pair;
+
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import uk.ac.bris.cs.scotlandyard.ai.TranspositionTable.Replacement;
+import uk.ac.bris.cs.scotlandyard.model.AnytimeAi;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveSink;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.PonderingAi;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+
+/**
+ * An {@link AnytimeAi} for MrX and the detectives using {@link AlphaBetaSearch}, publishing the
+ * best move of every completed depth. Playing MrX it ponders on the detectives' turns, warming
+ * the transposition table for its next search. Pondering stops when interrupted, after
+ * {@link #PONDER_LIMIT}, or as soon as another call needs the search, so a missed interrupt
+ * never holds up the next move.
+ * <br>
+ * Like {@link MctsAi} the detectives search from a location picked at random from the
+ * {@link MrXTracker} candidates.
+ */
+public class AlphaBetaAi implements AnytimeAi, PonderingAi {
+
+	/**
+	 * Default memory budget of the transposition table
+	 */
+	public static final long TABLE_BYTES = 32L << 20;
+
+	/**
+	 * Longest a ponder runs for, in nanoseconds
+	 */
+	public static final long PONDER_LIMIT = TimeUnit.MINUTES.toNanos(1);
+
+	private final SearchMetrics metrics;
+	private final TranspositionTable table;
+	private final SplittableRandom random = new SplittableRandom();
+	// guards the search and the state below, taken over from a ponder with ponderStop
+	private final ReentrantLock lock = new ReentrantLock();
+	private volatile boolean ponderStop;
+	private AlphaBetaSearch search;
+	private MrXTracker tracker;
+	// where this Ai last moved MrX, assumed to be where he is while pondering
+	private int mrXLocation = -1;
+
+	public AlphaBetaAi() { this(SearchMetrics.NONE); }
+
+	/**
+	 * @param metrics receives the depth and speed of every search iteration
+	 */
+	public AlphaBetaAi(@Nonnull SearchMetrics metrics) {
+		this.metrics = Objects.requireNonNull(metrics);
+		this.table = new TranspositionTable(TABLE_BYTES, Replacement.AGED);
+	}
+
+	@Nonnull @Override public String name() { return "Alpha-Beta"; }
+
+	@Override public void onStart() {
+		takeOver();
+		try {
+			tracker = null;
+			mrXLocation = -1;
+			table.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// locks, stopping a ponder holding the lock first
+	private void takeOver() {
+		ponderStop = true;
+		lock.lock();
+		ponderStop = false;
+	}
+
+	@Nonnull @Override
+	public Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair) {
+		// a supervisor's call, if any, stops the search and takes the moves found so far
+		return pick(board, AiSupport.deadline(System.nanoTime(), timeoutPair),
+				AiSupervisor.current());
+	}
+
+	@Nonnull @Override public Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair,
+	                                        @Nonnull MoveSink sink) {
+		long start = System.nanoTime();
+		return pick(board, start + timeoutPair.right().toNanos(timeoutPair.left()), sink);
+	}
+
+	// every completed depth is published, cancelling the sink or an interrupt stops the search
+	private Move pick(Board board, long deadline, MoveSink sink) {
+		takeOver();
+		try {
+			return pickLocked(board, deadline, sink);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private Move pickLocked(Board board, long deadline, MoveSink sink) {
+		var moves = board.getAvailableMoves();
+		if (moves.size() == 1) return moves.iterator().next();
+		if (tracker == null) tracker = MrXTracker.of(board.getSetup());
+		if (search == null) search = new AlphaBetaSearch(table);
+		SearchState root = AiSupport.rootState(board, tracker, random);
+		long best = search.search(root, deadline, sink::cancelled, report -> {
+			metrics.report(report);
+			sink.publish(PackedMove.toMove(report.bestMove()));
+		}, name()).bestMove();
+		Move move = best == 0 ? null : PackedMove.toMove(best);
+		move = move != null && moves.contains(move) ? move : moves.iterator().next();
+		if (root.isMrXTurn())
+			mrXLocation = move.accept(new Move.FunctionalVisitor<>(m -> m.destination,
+					m -> m.destination2));
+		return move;
+	}
+
+	/**
+	 * @return the detectives' move stored in the table by the last search, which explored it as
+	 * a reply to MrX's move; null if this Ai hasn't moved MrX
+	 */
+	@Nullable @Override public Move predict(@Nonnull Board board) {
+		takeOver();
+		try {
+			if (search == null || mrXLocation < 0) return null;
+			var entry = new TranspositionTable.Entry();
+			SearchState root = SearchState.fromBoard(board, mrXLocation);
+			if (!table.probe(root.zobristKey(), entry) || entry.move() == 0) return null;
+			Move move = PackedMove.toMove(entry.move());
+			return board.getAvailableMoves().contains(move) ? move : null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Fills the transposition table from the board after the predicted move, which the next
+	 * search then starts from
+	 */
+	@Override public void ponder(@Nonnull Board board, @Nonnull Move predicted) {
+		long deadline = System.nanoTime() + PONDER_LIMIT;
+		try {
+			lock.lockInterruptibly();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		try {
+			if (search == null || mrXLocation < 0 || ponderStop) return;
+			SearchState root = SearchState.fromBoard(board, mrXLocation);
+			root.apply(predicted);
+			if (!root.isGameOver())
+				search.search(root, deadline, () -> ponderStop, SearchMetrics.NONE, name());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// the pondered entries are kept either way, after a miss they age out of the table
+	@Override public void onPonderResult(boolean hit) {}
+
+	@Override public void onTerminate() {
+		takeOver();
+		try {
+			tracker = null;
+			search = null;
+			mrXLocation = -1;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
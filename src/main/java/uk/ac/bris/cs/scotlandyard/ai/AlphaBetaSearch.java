@@ -0,0 +1,254 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.ai.TranspositionTable.Entry;
+import uk.ac.bris.cs.scotlandyard.model.DistanceTable;
+import uk.ac.bris.cs.scotlandyard.model.MoveBuffer;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+
+/**
+ * Paranoid alpha-beta search: MrX maximises the {@link Evaluation} score and the detectives, as
+ * one coalition, minimise it. Every single piece's move is one ply, so the side to move does
+ * not simply alternate.
+ * <br>
+ * Searches by iterative deepening with aspiration windows around the previous iteration's
+ * score. Moves are ordered by the {@link TranspositionTable} move, then two killer moves per ply,
+ * then the history heuristic, with MrX's double moves last.
+ * <br>
+ * Not thread safe, one instance per searching thread; the table may be shared.
+ */
+public final class AlphaBetaSearch {
+
+	private static final int INFINITY = Evaluation.WIN + 1;
+	private static final int MAX_PLY = 64;
+	private static final int ASPIRATION = 50;
+	private static final int CHECK_INTERVAL = 1023;
+
+	private static final int TT_MOVE_SCORE = Integer.MAX_VALUE;
+	private static final int KILLER_SCORE = Integer.MAX_VALUE - 2;
+	private static final int DOUBLE_PENALTY = 1 << 20;
+
+	private final TranspositionTable table;
+	private final Entry entry = new Entry();
+	private final MoveBuffer[] moves = new MoveBuffer[MAX_PLY];
+	private final int[][] scores = new int[MAX_PLY][];
+	private final long[][] killers = new long[MAX_PLY][2];
+	// indexed by piece index * node bound + destination
+	private int[] history = new int[0];
+
+	private SearchState state;
+	private DistanceTable distances;
+	private long deadline;
+	private BooleanSupplier stopped = AiSupport.NEVER;
+	private long nodes;
+	private boolean aborted;
+	private long rootBest;
+
+	/**
+	 * @param table the transposition table, may be shared with other searches
+	 */
+	public AlphaBetaSearch(@Nonnull TranspositionTable table) {
+		this.table = table;
+		for (int i = 0; i < MAX_PLY; i++) {
+			moves[i] = new MoveBuffer();
+			scores[i] = new int[16];
+		}
+	}
+
+	/**
+	 * Searches deeper and deeper until the deadline or an interrupt, reporting every completed
+	 * depth
+	 *
+	 * @param root the state to search from, restored before returning
+	 * @param deadline the {@link System#nanoTime()} to stop at
+	 * @param metrics receives a report after every completed depth
+	 * @param name the name reported to metrics
+	 * @return the report of the deepest completed depth, with a best move of 0 if not even depth
+	 * 1 completed
+	 */
+	@Nonnull public SearchReport search(@Nonnull SearchState root, long deadline,
+	                                    @Nonnull SearchMetrics metrics, @Nonnull String name) {
+		return search(root, deadline, AiSupport.NEVER, metrics, name);
+	}
+
+	/**
+	 * As {@link #search(SearchState, long, SearchMetrics, String)}, also stopping once
+	 * {@code stopped} returns true; it is polled with the deadline, from the searching thread
+	 */
+	@Nonnull public SearchReport search(@Nonnull SearchState root, long deadline,
+	                                    @Nonnull BooleanSupplier stopped,
+	                                    @Nonnull SearchMetrics metrics, @Nonnull String name) {
+		long start = System.nanoTime();
+		int rootDepth = root.depth();
+		this.state = root;
+		this.distances = root.setup().distanceTable();
+		this.deadline = deadline;
+		this.stopped = stopped;
+		this.nodes = 0;
+		this.aborted = false;
+		int bound = root.setup().transportGraph().nodeBound();
+		if (history.length != ScotlandYard.ALL_PIECES.size() * bound)
+			history = new int[ScotlandYard.ALL_PIECES.size() * bound];
+		else Arrays.fill(history, 0);
+		for (long[] killer : killers) Arrays.fill(killer, 0);
+		table.newSearch();
+
+		SearchReport report = new SearchReport(name, 0, 0, 0, 0, 0);
+		int score = 0;
+		for (int depth = 1; depth < MAX_PLY; depth++) {
+			rootBest = 0;
+			int value;
+			if (depth > 1 && Math.abs(score) < Evaluation.WIN_THRESHOLD) {
+				int alpha = score - ASPIRATION, beta = score + ASPIRATION;
+				value = search(depth, 0, alpha, beta);
+				if (!aborted && (value <= alpha || value >= beta)) {
+					rootBest = 0;
+					value = search(depth, 0, -INFINITY, INFINITY);
+				}
+			} else value = search(depth, 0, -INFINITY, INFINITY);
+			// every path undoes its own moves, this only guards the root
+			while (state.depth() > rootDepth) state.undo();
+			if (aborted || rootBest == 0) break;
+			score = value;
+			report = new SearchReport(name, depth, nodes, System.nanoTime() - start, score,
+					rootBest);
+			metrics.report(report);
+			// a forced result won't change with more depth
+			if (Math.abs(score) >= Evaluation.WIN_THRESHOLD) break;
+		}
+		return report;
+	}
+
+	private int search(int depth, int ply, int alpha, int beta) {
+		if ((++nodes & CHECK_INTERVAL) == 0
+				&& (System.nanoTime() >= deadline || Thread.currentThread().isInterrupted()
+				|| stopped.getAsBoolean()))
+			aborted = true;
+		if (aborted) return 0;
+		int outcome = state.outcome();
+		if (outcome != SearchState.ONGOING) return Evaluation.terminal(outcome, ply);
+		if (depth == 0 || ply == MAX_PLY - 1) return Evaluation.score(state, distances);
+
+		long key = state.zobristKey();
+		long ttMove = 0;
+		if (table.probe(key, entry)) {
+			ttMove = entry.move();
+			if (ply > 0 && entry.depth() >= depth) {
+				int stored = fromTable(entry.score(), ply);
+				if (entry.bound() == TranspositionTable.EXACT) return stored;
+				if (entry.bound() == TranspositionTable.LOWER) alpha = Math.max(alpha, stored);
+				else beta = Math.min(beta, stored);
+				if (alpha >= beta) return stored;
+			}
+		}
+
+		MoveBuffer buffer = moves[ply];
+		buffer.clear();
+		state.availableMoves(buffer);
+		int count = buffer.size();
+		int[] order = orderMoves(buffer, ply, ttMove);
+
+		boolean maximising = state.isMrXTurn();
+		int originalAlpha = alpha, originalBeta = beta;
+		int best = maximising ? -INFINITY : INFINITY;
+		long bestMove = 0;
+		for (int i = 0; i < count; i++) {
+			long move = next(buffer, order, i, count);
+			state.apply(move);
+			int value = search(depth - 1, ply + 1, alpha, beta);
+			state.undo();
+			if (aborted) return 0;
+			if (maximising ? value > best : value < best) {
+				best = value;
+				bestMove = move;
+				if (ply == 0) rootBest = move;
+			}
+			if (maximising) alpha = Math.max(alpha, value);
+			else beta = Math.min(beta, value);
+			if (alpha >= beta) {
+				cutoff(move, ply, depth);
+				break;
+			}
+		}
+		int type = best <= originalAlpha ? TranspositionTable.UPPER
+				: best >= originalBeta ? TranspositionTable.LOWER
+				: TranspositionTable.EXACT;
+		table.store(key, depth, type, toTable(best, ply), bestMove);
+		return best;
+	}
+
+	private int[] orderMoves(MoveBuffer buffer, int ply, long ttMove) {
+		int count = buffer.size();
+		if (scores[ply].length < count)
+			scores[ply] = new int[Math.max(count, scores[ply].length * 2)];
+		int[] order = scores[ply];
+		int bound = history.length / ScotlandYard.ALL_PIECES.size();
+		for (int i = 0; i < count; i++) {
+			long move = buffer.get(i);
+			int score;
+			if (move == ttMove) score = TT_MOVE_SCORE;
+			else if (move == killers[ply][0]) score = KILLER_SCORE;
+			else if (move == killers[ply][1]) score = KILLER_SCORE - 1;
+			else {
+				score = history[PackedMove.piece(move) * bound + PackedMove.destination(move)];
+				if (PackedMove.isDouble(move)) score -= DOUBLE_PENALTY;
+			}
+			order[i] = score;
+		}
+		return order;
+	}
+
+	/**
+	 * Selection sort step: moves the best remaining move to position i
+	 */
+	private static long next(MoveBuffer buffer, int[] order, int i, int count) {
+		int best = i;
+		for (int j = i + 1; j < count; j++) if (order[j] > order[best]) best = j;
+		if (best != i) {
+			long move = buffer.get(best);
+			buffer.set(best, buffer.get(i));
+			buffer.set(i, move);
+			int score = order[best];
+			order[best] = order[i];
+			order[i] = score;
+		}
+		return buffer.get(i);
+	}
+
+	private void cutoff(long move, int ply, int depth) {
+		if (killers[ply][0] != move) {
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = move;
+		}
+		int bound = history.length / ScotlandYard.ALL_PIECES.size();
+		int index = PackedMove.piece(move) * bound + PackedMove.destination(move);
+		history[index] = Math.min(DOUBLE_PENALTY - 1, history[index] + depth * depth);
+	}
+
+	/**
+	 * Wins are stored relative to the node so they stay correct when reached at another ply
+	 */
+	private static int toTable(int score, int ply) {
+		if (score >= Evaluation.WIN_THRESHOLD) return score + ply;
+		if (score <= -Evaluation.WIN_THRESHOLD) return score - ply;
+		return score;
+	}
+
+	private static int fromTable(int score, int ply) {
+		if (score >= Evaluation.WIN_THRESHOLD) return score - ply;
+		if (score <= -Evaluation.WIN_THRESHOLD) return score + ply;
+		return score;
+	}
+
+	/**
+	 * @return the nodes visited by the last search
+	 */
+	public long nodes() { return nodes; }
+
+}
@@ -0,0 +1,56 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.DistanceTable;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+
+/**
+ * Static evaluation of positions from MrX's point of view, higher is better for MrX
+ */
+public final class Evaluation {
+
+	private Evaluation() {}
+
+	/**
+	 * Score of a won game, less the plies it took to win so quicker wins score higher
+	 */
+	public static final int WIN = 100_000;
+
+	/**
+	 * Scores at least this far from 0 are wins or losses
+	 */
+	public static final int WIN_THRESHOLD = WIN - 1_000;
+
+	private static final int FAR = 8;
+
+	/**
+	 * @param state a state whose game is not over
+	 * @param distances the distances of the state's graph
+	 * @return the score, mostly how far the closest detectives are from MrX
+	 */
+	public static int score(@Nonnull SearchState state, @Nonnull DistanceTable distances) {
+		int mrX = state.mrXLocation();
+		int closest = FAR;
+		int total = 0;
+		for (int slot = 1; slot < state.slots(); slot++) {
+			int distance = Math.min(FAR,
+					distances.distance(state.location(slot), mrX, state.transports(slot)));
+			closest = Math.min(closest, distance);
+			total += distance;
+		}
+		return 100 * closest + 10 * total
+				+ 15 * state.tickets(0, Ticket.SECRET) + 60 * state.tickets(0, Ticket.DOUBLE);
+	}
+
+	/**
+	 * @param outcome {@link SearchState#MRX_WINS} or {@link SearchState#DETECTIVES_WIN}
+	 * @param ply the plies from the root of the search
+	 * @return the score of the finished game
+	 */
+	public static int terminal(int outcome, int ply) {
+		return outcome == SearchState.MRX_WINS ? WIN - ply : -WIN + ply;
+	}
+
+}
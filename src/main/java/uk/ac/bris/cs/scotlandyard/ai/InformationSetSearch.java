@@ -0,0 +1,349 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.MoveBuffer;
+import uk.ac.bris.cs.scotlandyard.model.NodeSet;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+
+/**
+ * Information set Monte Carlo tree search for the detectives, who don't know where MrX is.
+ * <br>
+ * Every iteration places MrX on a node sampled from the {@link MrXTracker} candidates (a
+ * determinization, see {@link SearchState#placeMrX(int)}) and walks one tree shared by all
+ * determinizations and all workers. A node's children are every move seen legal in any
+ * determinization so far; selection only considers the ones legal in the current one and
+ * replaces the parent's visits in UCT by how often each child was available.
+ * <br>
+ * MrX's moves are merged by what the detectives see of them (the tickets, and the destinations
+ * in reveal rounds) so his part of the tree is shared between determinizations; the concrete
+ * move is picked at random among the legal moves that look the same. Statistics and lock-free
+ * updates are as in {@link MonteCarloTreeSearch}.
+ */
+public final class InformationSetSearch {
+
+	private static final long OBSERVATION = 1L << 63;
+
+	static final class Node {
+		private static final VarHandle STATS;
+		private static final VarHandle AVAILABLE;
+		private static final VarHandle CHILDREN;
+
+		static {
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				STATS = lookup.findVarHandle(Node.class, "stats", long.class);
+				AVAILABLE = lookup.findVarHandle(Node.class, "available", int.class);
+				CHILDREN = lookup.findVarHandle(Node.class, "children", Node[].class);
+			} catch (ReflectiveOperationException e) {
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+
+		// a packed move for detectives, an observation key for MrX
+		private final long key;
+		private final boolean mrX;
+		private volatile long stats;
+		private volatile int available;
+		private volatile Node[] children = new Node[0];
+
+		Node(long key, boolean mrX) {
+			this.key = key;
+			this.mrX = mrX;
+		}
+
+		int visits() { return (int) (stats >>> 32); }
+
+		int wins() { return (int) stats; }
+
+		void add(int visits, int wins) { STATS.getAndAdd(this, (long) visits << 32 | wins); }
+
+		/**
+		 * @return the child with the key, added if there was none
+		 */
+		Node child(long key, boolean mrX) {
+			while (true) {
+				Node[] current = children;
+				for (Node child : current) if (child.key == key) return child;
+				Node[] grown = Arrays.copyOf(current, current.length + 1);
+				Node child = new Node(key, mrX);
+				grown[current.length] = child;
+				if (CHILDREN.compareAndSet(this, current, grown)) return child;
+			}
+		}
+	}
+
+	/**
+	 * The buffers of one worker, reused by every iteration
+	 */
+	static final class Scratch {
+		final MoveBuffer moves = new MoveBuffer();
+		// what the detectives see of each of MrX's moves, parallel to moves
+		final MoveBuffer observations = new MoveBuffer();
+		// the distinct children available in the determinization
+		final MoveBuffer keys = new MoveBuffer();
+		final LongHashSet seen = new LongHashSet();
+		final List<Node> path = new ArrayList<>();
+	}
+
+	/**
+	 * The outcome of a search
+	 */
+	public static final class Result {
+		private final Node root;
+		private final long iterations;
+
+		Result(Node root, long iterations) {
+			this.root = root;
+			this.iterations = iterations;
+		}
+
+		/**
+		 * @return the number of determinizations searched, one per playout
+		 */
+		public long iterations() { return iterations; }
+
+		/**
+		 * @return the most visited root move, or 0 if there is none
+		 */
+		public long bestMove() {
+			Node best = null;
+			for (Node child : root.children)
+				if (best == null || child.visits() > best.visits()) best = child;
+			return best == null || best.mrX ? 0 : best.key;
+		}
+
+		/**
+		 * @param move a root move
+		 * @return the playouts through the move
+		 */
+		public int visits(long move) {
+			for (Node child : root.children) if (child.key == move) return child.visits();
+			return 0;
+		}
+	}
+
+	private final double exploration;
+
+	public InformationSetSearch(double exploration) {
+		if (!(exploration >= 0)) throw new IllegalArgumentException("Bad exploration: " + exploration);
+		this.exploration = exploration;
+	}
+
+	/**
+	 * @param setup the game setup
+	 * @param round the round of the move
+	 * @param move MrX's packed move
+	 * @return what the detectives see of the move
+	 */
+	static long observation(GameSetup setup, int round, long move) {
+		boolean reveal1 = setup.moves.get(round);
+		if (!PackedMove.isDouble(move))
+			return OBSERVATION | PackedMove.single(PackedMove.MRX, 0, PackedMove.ticket1(move),
+					reveal1 ? PackedMove.destination1(move) : 0);
+		boolean reveal2 = setup.moves.get(round + 1);
+		return OBSERVATION | PackedMove.doubleMove(PackedMove.MRX, 0,
+				PackedMove.ticket1(move), reveal1 ? PackedMove.destination1(move) : 0,
+				PackedMove.ticket2(move), reveal2 ? PackedMove.destination2(move) : 0);
+	}
+
+	/**
+	 * Searches from the given state until the deadline, using the calling thread and
+	 * {@code workers} tasks submitted to the executor
+	 *
+	 * @param root the detectives' turn to search from; MrX's location is ignored
+	 * @param candidates the nodes MrX could be on, see {@link MrXTracker#candidates()}
+	 * @param deadline the {@link System#nanoTime()} to stop at
+	 * @param executor the executor for the other workers, may be null if there are none
+	 * @param workers the number of workers besides the calling thread
+	 * @param seed the seed of the sampling and the playouts
+	 * @return the search result
+	 * @throws IllegalArgumentException if it is MrX's turn or no candidate is free
+	 */
+	@Nonnull public Result search(@Nonnull SearchState root, @Nonnull long[] candidates,
+	                              long deadline, @Nullable ExecutorService executor, int workers,
+	                              long seed) {
+		return search(root, candidates, deadline, executor, workers, seed, null);
+	}
+
+	/**
+	 * As {@link #search(SearchState, long[], long, ExecutorService, int, long)}, reporting the
+	 * best move as it changes
+	 *
+	 * @param progress receives the most visited root move whenever it changes, checked every
+	 * {@link MonteCarloTreeSearch#PROGRESS_INTERVAL} on the calling thread; may be null
+	 */
+	@Nonnull public Result search(@Nonnull SearchState root, @Nonnull long[] candidates,
+	                              long deadline, @Nullable ExecutorService executor, int workers,
+	                              long seed, @Nullable LongConsumer progress) {
+		return search(root, candidates, deadline, AiSupport.NEVER, executor, workers, seed,
+				progress);
+	}
+
+	/**
+	 * As {@link #search(SearchState, long[], long, ExecutorService, int, long, LongConsumer)},
+	 * also stopping once {@code stopped} returns true; every worker polls it with the deadline
+	 */
+	@Nonnull public Result search(@Nonnull SearchState root, @Nonnull long[] candidates,
+	                              long deadline, @Nonnull BooleanSupplier stopped,
+	                              @Nullable ExecutorService executor, int workers, long seed,
+	                              @Nullable LongConsumer progress) {
+		Objects.requireNonNull(root);
+		Objects.requireNonNull(stopped);
+		if (workers > 0) Objects.requireNonNull(executor);
+		if (root.isMrXTurn()) throw new IllegalArgumentException("Not the detectives' turn");
+		long[] free = candidates.clone();
+		for (int node = NodeSet.next(free, 0); node >= 0; node = NodeSet.next(free, node + 1))
+			if (root.isOccupied(node) || !root.setup().transportGraph().hasEdges(node))
+				NodeSet.remove(free, node);
+		if (NodeSet.isEmpty(free)) throw new IllegalArgumentException("No node for MrX");
+		int[] nodes = new int[NodeSet.size(free)];
+		for (int i = 0, node = NodeSet.next(free, 0); node >= 0; node = NodeSet.next(free, node + 1))
+			nodes[i++] = node;
+
+		Node tree = new Node(0, true);
+		LongAdder iterations = new LongAdder();
+		SplittableRandom seeds = new SplittableRandom(seed);
+		List<Future<?>> futures = new ArrayList<>(workers);
+		for (int i = 0; i < workers; i++) {
+			SearchState state = root.copy();
+			SplittableRandom random = seeds.split();
+			futures.add(executor.submit(() ->
+					run(tree, state, nodes, deadline, stopped, random, iterations, null)));
+		}
+		run(tree, root.copy(), nodes, deadline, stopped, seeds.split(), iterations,
+				progress);
+		// as in MonteCarloTreeSearch the result never waits for a worker past the deadline
+		for (Future<?> future : futures) {
+			try {
+				future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			} catch (TimeoutException e) {
+				future.cancel(true);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				futures.forEach(f -> f.cancel(true));
+				break;
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Search worker failed", e.getCause());
+			}
+		}
+		return new Result(tree, iterations.sum());
+	}
+
+	private void run(Node tree, SearchState state, int[] nodes, long deadline,
+	                 BooleanSupplier stopped, SplittableRandom random, LongAdder iterations,
+	                 @Nullable LongConsumer progress) {
+		Scratch scratch = new Scratch();
+		long reported = 0;
+		long now, nextReport = System.nanoTime() + MonteCarloTreeSearch.PROGRESS_INTERVAL;
+		while ((now = System.nanoTime()) < deadline && !stopped.getAsBoolean()
+				&& !Thread.currentThread().isInterrupted()) {
+			state.placeMrX(nodes[random.nextInt(nodes.length)]);
+			iterate(tree, state, scratch, random);
+			iterations.increment();
+			if (progress != null && now >= nextReport) {
+				long best = new Result(tree, 0).bestMove();
+				if (best != 0 && best != reported) progress.accept(reported = best);
+				nextReport = now + MonteCarloTreeSearch.PROGRESS_INTERVAL;
+			}
+		}
+	}
+
+	/**
+	 * One determinization from MrX's current location: selection, expansion, playout and
+	 * backpropagation; leaves the state as it found it
+	 */
+	void iterate(Node tree, SearchState state, Scratch scratch, SplittableRandom random) {
+		GameSetup setup = state.setup();
+		MoveBuffer buffer = scratch.moves;
+		MoveBuffer observations = scratch.observations;
+		MoveBuffer keys = scratch.keys;
+		List<Node> path = scratch.path;
+		path.clear();
+		Node node = tree;
+		node.add(1, 0);
+		path.add(node);
+		while (!state.isGameOver()) {
+			buffer.clear();
+			state.availableMoves(buffer);
+			boolean mrX = state.isMrXTurn();
+			// the distinct children available in this determinization, each MrX move observed once
+			keys.clear();
+			observations.clear();
+			scratch.seen.clear(buffer.size());
+			int round = state.round();
+			for (int i = 0; i < buffer.size(); i++) {
+				long key = mrX ? observation(setup, round, buffer.get(i)) : buffer.get(i);
+				if (mrX) observations.add(key);
+				if (scratch.seen.add(key)) keys.add(key);
+			}
+			Node selected = null;
+			double bestScore = Double.NEGATIVE_INFINITY;
+			int offset = random.nextInt(keys.size());
+			for (int i = 0; i < keys.size(); i++) {
+				Node child = node.child(keys.get((i + offset) % keys.size()), mrX);
+				int available = (int) Node.AVAILABLE.getAndAdd(child, 1) + 1;
+				int visits = child.visits();
+				double score = visits == 0 ? Double.POSITIVE_INFINITY :
+						(double) child.wins() / visits
+								+ exploration * Math.sqrt(Math.log(available) / visits);
+				if (score > bestScore) {
+					bestScore = score;
+					selected = child;
+				}
+			}
+			boolean fresh = selected.visits() == 0;
+			selected.add(1, 0);
+			path.add(selected);
+			state.apply(mrX ? sameLooking(buffer, observations, selected.key, random)
+					: selected.key);
+			node = selected;
+			if (fresh) break;
+		}
+		// random playout
+		while (!state.isGameOver()) {
+			buffer.clear();
+			state.availableMoves(buffer);
+			state.apply(buffer.get(random.nextInt(buffer.size())));
+		}
+		boolean mrXWins = state.outcome() == SearchState.MRX_WINS;
+		while (state.depth() > 0) state.undo();
+		for (Node visited : path) if (visited.mrX == mrXWins && visited != tree) visited.add(0, 1);
+	}
+
+	/**
+	 * @param observations the observation of every move, in the same order
+	 * @return a random move of the buffer with the given observation
+	 */
+	private static long sameLooking(MoveBuffer moves, MoveBuffer observations, long key,
+	                                SplittableRandom random) {
+		int matches = 0;
+		long picked = 0;
+		for (int i = 0; i < moves.size(); i++) {
+			// reservoir sampling, one pass and no allocation
+			if (observations.get(i) == key && random.nextInt(++matches) == 0)
+				picked = moves.get(i);
+		}
+		return picked;
+	}
+
+}
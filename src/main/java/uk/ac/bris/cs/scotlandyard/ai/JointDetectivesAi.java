@@ -0,0 +1,112 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import io.atlassian.fugue.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+
+/**
+ * Detectives planning the whole round with a {@link JointMovePlanner} on their first move and
+ * playing the rest of it from the plan, so the coalition is searched once per round instead of
+ * once per detective. MrX is played by another Ai, an {@link AlphaBetaAi} by default.
+ * <br>
+ * The plan is dropped when MrX moves again or when none of its moves are available, say if the
+ * detectives were moved by someone else, and the detectives left are planned afresh.
+ * <br>
+ * The no argument constructor plans on as many threads as {@link MctsAi#MctsAi()} searches on.
+ */
+public class JointDetectivesAi implements Ai {
+
+	private final Ai mrX;
+	private final int threads;
+	private final SplittableRandom random = new SplittableRandom();
+	private final List<Move> planned = new ArrayList<>();
+	private ForkJoinPool pool;
+	private MrXTracker tracker;
+	private int plannedRound = -1;
+	private int plans;
+
+	public JointDetectivesAi() {
+		this(AiSupport.DEFAULT_THREADS);
+	}
+
+	/**
+	 * @param threads the parallelism of the planner
+	 */
+	public JointDetectivesAi(int threads) {
+		this(new AlphaBetaAi(), threads);
+	}
+
+	/**
+	 * @param mrX the Ai playing MrX
+	 * @param threads the parallelism of the planner
+	 */
+	public JointDetectivesAi(@Nonnull Ai mrX, int threads) {
+		if (threads < 1) throw new IllegalArgumentException("Bad threads: " + threads);
+		this.mrX = Objects.requireNonNull(mrX);
+		this.threads = threads;
+	}
+
+	@Nonnull @Override public String name() { return "Joint-Detectives"; }
+
+	@Override public synchronized void onStart() {
+		mrX.onStart();
+		tracker = null;
+		planned.clear();
+		plannedRound = -1;
+	}
+
+	@Nonnull @Override
+	public Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair) {
+		if (AiSupport.isMrXTurn(board)) return mrX.pickMove(board, timeoutPair);
+		return pick(board, AiSupport.deadline(System.nanoTime(), timeoutPair));
+	}
+
+	private synchronized Move pick(Board board, long deadline) {
+		var moves = board.getAvailableMoves();
+		int round = board.getMrXTravelLog().size();
+		if (round == plannedRound) {
+			for (int i = 0; i < planned.size(); i++)
+				if (moves.contains(planned.get(i))) return planned.remove(i);
+		}
+		if (tracker == null) tracker = MrXTracker.of(board.getSetup());
+		if (pool == null) pool = new ForkJoinPool(threads);
+		long[] candidates = AiSupport.candidates(board, tracker);
+		SearchState root = SearchState.fromBoard(board, AiSupport.sample(candidates, random));
+		var plan = new JointMovePlanner(pool).plan(root, candidates, deadline, random);
+		plans++;
+		planned.clear();
+		for (long move : plan.moves()) planned.add(PackedMove.toMove(move));
+		plannedRound = round;
+		for (int i = 0; i < planned.size(); i++)
+			if (moves.contains(planned.get(i))) return planned.remove(i);
+		return moves.iterator().next();
+	}
+
+	/**
+	 * @return the number of rounds, or parts of rounds, planned so far
+	 */
+	synchronized int plans() { return plans; }
+
+	@Override public synchronized void onTerminate() {
+		mrX.onTerminate();
+		if (pool != null) pool.shutdownNow();
+		pool = null;
+		tracker = null;
+		planned.clear();
+		plannedRound = -1;
+	}
+
+}
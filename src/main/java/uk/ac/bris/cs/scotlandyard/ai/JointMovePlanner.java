@@ -0,0 +1,377 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.DistanceTable;
+import uk.ac.bris.cs.scotlandyard.model.MoveBuffer;
+import uk.ac.bris.cs.scotlandyard.model.NodeSet;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+
+/**
+ * Plans the moves of every detective left to move in a round at once, searching the product of
+ * their moves in parallel on a {@link ForkJoinPool}.
+ * <br>
+ * A joint move is scored against every MrX candidate with the terms of
+ * {@link Evaluation#score}: a capture if a detective lands on the candidate, otherwise the
+ * closest and total distances of the detectives to it. The detectives pick the joint move with
+ * the lowest score summed over the candidates. Joint moves sending two detectives to the same
+ * node are pruned as soon as the second is placed, along with everything below them.
+ */
+public final class JointMovePlanner {
+
+	/**
+	 * Most MrX candidates a plan is scored against, more are sampled down to this
+	 */
+	public static final int MAX_CANDIDATES = 64;
+
+	private static final int FAR = 8;
+	// scored per candidate, catching MrX on one outweighs getting closer to all the others
+	private static final int CAPTURE = -Evaluation.WIN;
+	// levels of the product split into tasks, the rest is searched sequentially
+	private static final int SPLIT_LEVELS = 2;
+	private static final int DEADLINE_CHECK_MASK = (1 << 10) - 1;
+
+	/**
+	 * A joint move of the detectives
+	 */
+	public static final class Plan {
+		private final long[] moves;
+		private final long score;
+		private final long evaluated;
+		private final boolean complete;
+
+		Plan(long[] moves, long score, long evaluated, boolean complete) {
+			this.moves = moves;
+			this.score = score;
+			this.evaluated = evaluated;
+			this.complete = complete;
+		}
+
+		/**
+		 * @return a packed move for every detective that can move, in slot order; detectives
+		 * whose every move would collide with the others' are left out
+		 */
+		@Nonnull public long[] moves() { return moves.clone(); }
+
+		/**
+		 * @return the summed score of the candidates, lower is better for the detectives
+		 */
+		public long score() { return score; }
+
+		/**
+		 * @return the number of joint moves scored
+		 */
+		public long evaluated() { return evaluated; }
+
+		/**
+		 * @return whether every joint move was scored before the deadline
+		 */
+		public boolean complete() { return complete; }
+	}
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * @param pool the pool the product is searched on
+	 */
+	public JointMovePlanner(@Nonnull ForkJoinPool pool) {
+		this.pool = Objects.requireNonNull(pool);
+	}
+
+	/**
+	 * @param root a state on the detectives' turn, not modified
+	 * @param candidates the nodes MrX could be on, not empty
+	 * @param deadline the {@link System#nanoTime()} to stop at, the best joint move scored by
+	 * then is returned
+	 * @param random samples the candidates if there are more than {@link #MAX_CANDIDATES}
+	 * @return the plan
+	 * @throws IllegalArgumentException if it is MrX's turn or there are no candidates
+	 */
+	@Nonnull public Plan plan(@Nonnull SearchState root, @Nonnull long[] candidates,
+	                          long deadline, @Nonnull SplittableRandom random) {
+		if (root.isMrXTurn()) throw new IllegalArgumentException("Not the detectives' turn");
+		int[] targets = targets(candidates, random);
+		if (targets.length == 0) throw new IllegalArgumentException("No candidates");
+		var search = new Search(root, targets, deadline);
+		if (search.detectives == 0) return new Plan(new long[0], 0, 0, true);
+		int[] closest = new int[targets.length];
+		Arrays.fill(closest, FAR);
+		Result result = pool.invoke(new Task(search, 0, new int[search.detectives], closest,
+				new int[targets.length], new int[0]));
+		long[] moves = new long[search.detectives];
+		int planned = 0;
+		for (int i = 0; i < moves.length; i++) {
+			int index = result.choices[i];
+			if (index >= 0) moves[planned++] = search.moves[i][index];
+		}
+		return new Plan(Arrays.copyOf(moves, planned), result.score, search.evaluated(),
+				!search.expired);
+	}
+
+	private static int[] targets(long[] candidates, SplittableRandom random) {
+		int[] nodes = new int[NodeSet.size(candidates)];
+		int count = 0;
+		for (int node = NodeSet.next(candidates, 0); node >= 0;
+		     node = NodeSet.next(candidates, node + 1))
+			nodes[count++] = node;
+		if (count <= MAX_CANDIDATES) return nodes;
+		// partial Fisher-Yates
+		for (int i = 0; i < MAX_CANDIDATES; i++) {
+			int j = i + random.nextInt(count - i);
+			int swap = nodes[i];
+			nodes[i] = nodes[j];
+			nodes[j] = swap;
+		}
+		return Arrays.copyOf(nodes, MAX_CANDIDATES);
+	}
+
+	/**
+	 * The moves of every detective and their distance to every candidate, shared by the tasks
+	 */
+	private static final class Search {
+		final int detectives;
+		final int targets;
+		final long[][] moves;
+		final int[][] destinations;
+		// distances[detective][move * targets + target], 0 for a capture
+		final byte[][] distances;
+		final long deadline;
+		final LongAdder evaluated = new LongAdder();
+		volatile boolean expired;
+
+		Search(SearchState root, int[] targets, long deadline) {
+			var buffer = new MoveBuffer();
+			root.availableMoves(buffer);
+			DistanceTable table = root.setup().distanceTable();
+			long[][] bySlot = new long[root.slots()][];
+			int[] counts = new int[root.slots()];
+			for (int i = 0; i < buffer.size(); i++)
+				counts[root.slotOf(PackedMove.pieceAt(PackedMove.piece(buffer.get(i))))]++;
+			int detectives = 0;
+			for (int slot = 0; slot < counts.length; slot++) {
+				if (counts[slot] == 0) continue;
+				bySlot[slot] = new long[counts[slot]];
+				counts[slot] = 0;
+				detectives++;
+			}
+			for (int i = 0; i < buffer.size(); i++) {
+				long move = buffer.get(i);
+				int slot = root.slotOf(PackedMove.pieceAt(PackedMove.piece(move)));
+				bySlot[slot][counts[slot]++] = move;
+			}
+			this.detectives = detectives;
+			this.targets = targets.length;
+			this.moves = new long[detectives][];
+			this.destinations = new int[detectives][];
+			this.distances = new byte[detectives][];
+			this.deadline = deadline;
+			int detective = 0;
+			for (int slot = 0; slot < bySlot.length; slot++) {
+				if (bySlot[slot] == null) continue;
+				// the tickets left after the move rarely change what the detective can reach
+				int transports = root.transports(slot);
+				long[] slotMoves = bySlot[slot];
+				int[] slotDestinations = new int[slotMoves.length];
+				byte[] slotDistances = new byte[slotMoves.length * targets.length];
+				for (int m = 0; m < slotMoves.length; m++) {
+					slotDestinations[m] = PackedMove.destination(slotMoves[m]);
+					for (int t = 0; t < targets.length; t++)
+						slotDistances[m * targets.length + t] = (byte) Math.min(FAR,
+								table.distance(slotDestinations[m], targets[t], transports));
+				}
+				moves[detective] = slotMoves;
+				destinations[detective] = slotDestinations;
+				distances[detective++] = slotDistances;
+			}
+		}
+
+		long evaluated() { return evaluated.sum(); }
+
+		long score(int[] closest, int[] total) {
+			long score = 0;
+			for (int t = 0; t < targets; t++)
+				score += closest[t] == 0 ? CAPTURE : 100 * closest[t] + 10 * total[t];
+			return score;
+		}
+	}
+
+	/**
+	 * The best joint move below a task, choices being -1 for detectives left out
+	 */
+	private static final class Result {
+		final long score;
+		final int[] choices;
+
+		Result(long score, int[] choices) {
+			this.score = score;
+			this.choices = choices;
+		}
+
+		// ties go to the first in the order of the product, so a complete plan is deterministic
+		static Result better(Result first, Result second) {
+			if (first == null) return second;
+			if (second == null) return first;
+			return second.score < first.score ? second : first;
+		}
+	}
+
+	/**
+	 * Searches the joint moves extending the choices made for the detectives before its level
+	 */
+	private static final class Task extends RecursiveTask<Result> {
+		private static final long serialVersionUID = 1L;
+
+		private final Search search;
+		private final int level;
+		private final int[] choices;
+		private final int[] closest;
+		private final int[] total;
+		// the destinations taken by the detectives before the level
+		private final int[] used;
+
+		Task(Search search, int level, int[] choices, int[] closest, int[] total, int[] used) {
+			this.search = search;
+			this.level = level;
+			this.choices = choices;
+			this.closest = closest;
+			this.total = total;
+			this.used = used;
+		}
+
+		@Override protected Result compute() {
+			if (level >= SPLIT_LEVELS || level >= search.detectives - 1)
+				return new Sequential(search, level, choices, closest, total, used).run();
+			int[] destinations = search.destinations[level];
+			var tasks = new Task[destinations.length];
+			int forked = 0;
+			for (int m = 0; m < destinations.length; m++) {
+				if (contains(used, destinations[m])) continue;
+				int[] nextChoices = choices.clone();
+				nextChoices[level] = m;
+				int[] nextClosest = closest.clone();
+				int[] nextTotal = total.clone();
+				place(search, level, m, nextClosest, nextTotal);
+				int[] nextUsed = Arrays.copyOf(used, used.length + 1);
+				nextUsed[used.length] = destinations[m];
+				tasks[forked++] = new Task(search, level + 1, nextChoices, nextClosest,
+						nextTotal, nextUsed);
+			}
+			if (forked == 0) {
+				// every move collides, the detective will have none left when its turn comes
+				int[] nextChoices = choices.clone();
+				nextChoices[level] = -1;
+				return new Task(search, level + 1, nextChoices, closest, total, used).compute();
+			}
+			for (int i = 1; i < forked; i++) tasks[i].fork();
+			Result best = tasks[0].compute();
+			for (int i = 1; i < forked; i++) best = Result.better(best, tasks[i].join());
+			return best;
+		}
+	}
+
+	/**
+	 * Depth first search of the levels below the split, undoing the distances on the way up
+	 */
+	private static final class Sequential {
+		private final Search search;
+		private final int[] choices;
+		private final int[] closest;
+		private final int[] total;
+		// the destinations taken so far, a short list as there are at most five detectives
+		private final int[] destinations;
+		private final int[][] closestStack;
+		private final int level;
+		private final int used;
+		private long bestScore = Long.MAX_VALUE;
+		private int[] best;
+		private int leaves;
+
+		Sequential(Search search, int level, int[] choices, int[] closest, int[] total,
+		           int[] used) {
+			this.search = search;
+			this.level = level;
+			this.choices = choices.clone();
+			this.closest = closest.clone();
+			this.total = total.clone();
+			this.destinations = Arrays.copyOf(used, search.detectives);
+			this.closestStack = new int[search.detectives][];
+			this.used = used.length;
+		}
+
+		// never null, at least one joint move is scored even if the deadline has passed
+		Result run() {
+			descend(level, used);
+			search.evaluated.add(leaves);
+			return new Result(bestScore, best);
+		}
+
+		private void descend(int level, int used) {
+			if (search.expired && best != null) return;
+			if (level == search.detectives) {
+				long score = search.score(closest, total);
+				if (score < bestScore) {
+					bestScore = score;
+					best = choices.clone();
+				}
+				if ((++leaves & DEADLINE_CHECK_MASK) == 0 && System.nanoTime() >= search.deadline)
+					search.expired = true;
+				return;
+			}
+			int[] levelDestinations = search.destinations[level];
+			byte[] distances = search.distances[level];
+			int targets = search.targets;
+			if (closestStack[level] == null) closestStack[level] = new int[targets];
+			int[] saved = closestStack[level];
+			boolean placed = false;
+			for (int m = 0; m < levelDestinations.length; m++) {
+				int destination = levelDestinations[m];
+				if (taken(destination, used)) continue;
+				placed = true;
+				System.arraycopy(closest, 0, saved, 0, targets);
+				for (int t = 0; t < targets; t++) {
+					int distance = distances[m * targets + t];
+					if (distance < closest[t]) closest[t] = distance;
+					total[t] += distance;
+				}
+				choices[level] = m;
+				destinations[used] = destination;
+				descend(level + 1, used + 1);
+				for (int t = 0; t < targets; t++) total[t] -= distances[m * targets + t];
+				System.arraycopy(saved, 0, closest, 0, targets);
+				if (search.expired && best != null) return;
+			}
+			if (!placed) {
+				choices[level] = -1;
+				descend(level + 1, used);
+			}
+		}
+
+		private boolean taken(int destination, int used) {
+			for (int i = 0; i < used; i++) if (destinations[i] == destination) return true;
+			return false;
+		}
+	}
+
+	private static void place(Search search, int level, int move, int[] closest, int[] total) {
+		byte[] distances = search.distances[level];
+		for (int t = 0; t < search.targets; t++) {
+			int distance = distances[move * search.targets + t];
+			if (distance < closest[t]) closest[t] = distance;
+			total[t] += distance;
+		}
+	}
+
+	private static boolean contains(int[] used, int node) {
+		for (int taken : used) if (taken == node) return true;
+		return false;
+	}
+
+}
@@ -0,0 +1,47 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.util.Arrays;
+
+/**
+ * A reusable open-addressed set of non-zero {@code long}s with linear probing, for deduplicating
+ * the moves of one ply without boxing. Call {@link #clear(int)} between uses; the table only
+ * grows, and clearing fills just the part sized for the expected keys.
+ * <br>
+ * Not thread safe; give each search thread its own set.
+ */
+final class LongHashSet {
+
+	private long[] table = new long[64];
+	private int bits = 6;
+
+	/**
+	 * Empties the set, sized for the given number of keys
+	 *
+	 * @param expected the most keys that will be added before the next clear
+	 */
+	void clear(int expected) {
+		int bits = 4;
+		// at most half full
+		while (1 << bits < expected * 2) bits++;
+		if (table.length < 1 << bits) table = new long[1 << bits];
+		else Arrays.fill(table, 0, 1 << bits, 0);
+		this.bits = bits;
+	}
+
+	/**
+	 * @param key the key, never 0
+	 * @return whether the key was added, false if it was already in the set
+	 */
+	boolean add(long key) {
+		int mask = (1 << bits) - 1;
+		// Fibonacci hashing, the high bits of the product mix all the bits of the key
+		int slot = (int) (key * 0x9E3779B97F4A7C15L >>> (64 - bits));
+		while (table[slot] != 0) {
+			if (table[slot] == key) return false;
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = key;
+		return true;
+	}
+
+}
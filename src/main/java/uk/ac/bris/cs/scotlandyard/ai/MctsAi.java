@@ -0,0 +1,134 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import io.atlassian.fugue.Pair;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.AnytimeAi;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveSink;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+
+/**
+ * An {@link AnytimeAi} for MrX and the detectives using {@link MonteCarloTreeSearch} on every
+ * core, publishing the most visited move as it changes.
+ * <br>
+ * The detectives don't know where MrX is. By default they use {@link InformationSetSearch} over
+ * the {@link MrXTracker} candidates, otherwise they search from one candidate picked at random.
+ * <br>
+ * MrX keeps his tree between moves and {@link MonteCarloTreeSearch#reroot re-roots} it at the
+ * position he is next asked about, so the playouts already spent below the detectives' actual
+ * replies are not thrown away. The detectives search from a sampled MrX location every time and
+ * start afresh.
+ * <br>
+ * The no argument constructor searches on every core, or as many threads as the
+ * {@code scotlandyard.ai.threads} system property says.
+ */
+public class MctsAi implements AnytimeAi {
+
+	private final int threads;
+	private final MonteCarloTreeSearch search;
+	private final InformationSetSearch informationSetSearch;
+	private final SplittableRandom random = new SplittableRandom();
+	private ExecutorService executor;
+	private MrXTracker tracker;
+	private MonteCarloTreeSearch.Node retainedTree;
+	private SearchState retainedState;
+
+	public MctsAi() {
+		this(AiSupport.DEFAULT_THREADS);
+	}
+
+	/**
+	 * @param threads the number of search threads, the calling thread included
+	 */
+	public MctsAi(int threads) {
+		this(threads, MonteCarloTreeSearch.EXPLORATION, true);
+	}
+
+	/**
+	 * @param threads the number of search threads, the calling thread included
+	 * @param exploration the UCT exploration constant
+	 * @param informationSet whether the detectives use {@link InformationSetSearch}
+	 */
+	public MctsAi(int threads, double exploration, boolean informationSet) {
+		if (threads < 1) throw new IllegalArgumentException("Bad threads: " + threads);
+		this.threads = threads;
+		this.search = new MonteCarloTreeSearch(exploration);
+		this.informationSetSearch = informationSet ? new InformationSetSearch(exploration) : null;
+	}
+
+	@Nonnull @Override public String name() { return "MCTS"; }
+
+	@Override public synchronized void onStart() {
+		tracker = null;
+		retainedTree = null;
+		retainedState = null;
+	}
+
+	@Nonnull @Override
+	public Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair) {
+		// a supervisor's call, if any, stops the search and takes the moves found so far
+		return pick(board, AiSupport.deadline(System.nanoTime(), timeoutPair),
+				AiSupervisor.current());
+	}
+
+	@Nonnull @Override public Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair,
+	                                        @Nonnull MoveSink sink) {
+		long start = System.nanoTime();
+		return pick(board, start + timeoutPair.right().toNanos(timeoutPair.left()), sink);
+	}
+
+	private synchronized Move pick(Board board, long deadline, MoveSink sink) {
+		var moves = board.getAvailableMoves();
+		if (moves.size() == 1) return moves.iterator().next();
+		if (tracker == null) tracker = MrXTracker.of(board.getSetup());
+		if (executor == null && threads > 1)
+			executor = AiSupport.daemonPool("mcts-%d", threads - 1);
+		LongConsumer progress = sink == MoveSink.NONE ? null :
+				move -> sink.publish(PackedMove.toMove(move));
+		long best;
+		if (informationSetSearch != null && !AiSupport.isMrXTurn(board)) {
+			long[] candidates = AiSupport.candidates(board, tracker);
+			SearchState root = SearchState.fromBoard(board, AiSupport.sample(candidates, random));
+			best = informationSetSearch.search(root, candidates, deadline, sink::cancelled,
+					executor, threads - 1, random.nextLong(), progress).bestMove();
+		} else if (AiSupport.isMrXTurn(board)) {
+			SearchState root = AiSupport.rootState(board, tracker, random);
+			var tree = retainedTree == null ? null :
+					MonteCarloTreeSearch.reroot(retainedTree, retainedState, root);
+			var result = search.search(root, tree, deadline, sink::cancelled, executor,
+					threads - 1, random.nextLong(), progress);
+			retainedTree = result.root();
+			retainedState = root;
+			best = result.bestMove();
+		} else {
+			SearchState root = AiSupport.rootState(board, tracker, random);
+			best = search.search(root, null, deadline, sink::cancelled, executor, threads - 1,
+					random.nextLong(), progress).bestMove();
+		}
+		Move move = best == 0 ? null : PackedMove.toMove(best);
+		return move != null && moves.contains(move) ? move : moves.iterator().next();
+	}
+
+	/**
+	 * @return the number of search threads, the calling thread included
+	 */
+	int threads() { return threads; }
+
+	@Override public synchronized void onTerminate() {
+		if (executor != null) executor.shutdownNow();
+		executor = null;
+		tracker = null;
+		retainedTree = null;
+		retainedState = null;
+	}
+
+}
@@ -0,0 +1,358 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import uk.ac.bris.cs.scotlandyard.model.MoveBuffer;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+
+/**
+ * Monte Carlo tree search over {@link SearchState}s with tree parallelism: every worker walks the
+ * same tree, each with its own copy of the root state.
+ * <br>
+ * Node statistics are a single {@code long} (visits in the high half, wins in the low half)
+ * updated with atomic adds, and children are published with a compare-and-set, so the tree needs
+ * no locks. A worker descending through a node adds a visit but no win straight away (a virtual
+ * loss) which steers the other workers to different branches until the playout result is added.
+ * Wins are counted for the side that made the move leading to the node.
+ */
+public final class MonteCarloTreeSearch {
+
+	/**
+	 * A node of the search tree, reached by {@link #move()}
+	 */
+	public static final class Node {
+		private static final VarHandle STATS;
+		private static final VarHandle CHILDREN;
+
+		static {
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				STATS = lookup.findVarHandle(Node.class, "stats", long.class);
+				CHILDREN = lookup.findVarHandle(Node.class, "children", Node[].class);
+			} catch (ReflectiveOperationException e) {
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+
+		private final long move;
+		private final boolean mrX;
+		private volatile long stats;
+		private volatile Node[] children;
+
+		Node(long move, boolean mrX) {
+			this.move = move;
+			this.mrX = mrX;
+		}
+
+		/**
+		 * @return the packed move leading to this node, 0 for the root
+		 */
+		public long move() { return move; }
+
+		/**
+		 * @return whether MrX made the move leading to this node
+		 */
+		public boolean isMrXMove() { return mrX; }
+
+		public int visits() { return (int) (stats >>> 32); }
+
+		/**
+		 * @return the playouts won by the side that made {@link #move()}
+		 */
+		public int wins() { return (int) stats; }
+
+		/**
+		 * @return the children, or null if the node has not been expanded
+		 */
+		public Node[] children() { return children; }
+
+		void add(int visits, int wins) {
+			STATS.getAndAdd(this, (long) visits << 32 | wins);
+		}
+
+		Node[] expand(Node[] expanded) {
+			Node[] existing = (Node[]) CHILDREN.compareAndExchange(this, (Node[]) null, expanded);
+			return existing == null ? expanded : existing;
+		}
+	}
+
+	/**
+	 * The default exploration constant, {@code sqrt(2)}
+	 */
+	public static final double EXPLORATION = Math.sqrt(2);
+
+	/**
+	 * How often the best move is reported, in nanoseconds
+	 */
+	public static final long PROGRESS_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final double exploration;
+
+	public MonteCarloTreeSearch(double exploration) {
+		if (!(exploration >= 0)) throw new IllegalArgumentException("Bad exploration: " + exploration);
+		this.exploration = exploration;
+	}
+
+	/**
+	 * The outcome of a search
+	 */
+	public static final class Result {
+		private final Node root;
+		private final long iterations;
+		private final int reused;
+
+		Result(Node root, long iterations) {
+			this(root, iterations, 0);
+		}
+
+		Result(Node root, long iterations, int reused) {
+			this.root = root;
+			this.iterations = iterations;
+			this.reused = reused;
+		}
+
+		@Nonnull public Node root() { return root; }
+
+		/**
+		 * @return the number of playouts
+		 */
+		public long iterations() { return iterations; }
+
+		/**
+		 * @return the visits the root already had from an earlier search, 0 for a new tree
+		 */
+		public int reused() { return reused; }
+
+		/**
+		 * @return the most visited move of the root, or 0 if the root has no children
+		 */
+		public long bestMove() {
+			Node[] children = root.children();
+			if (children == null) return 0;
+			Node best = null;
+			for (Node child : children)
+				if (best == null || child.visits() > best.visits()) best = child;
+			return best == null ? 0 : best.move();
+		}
+	}
+
+	/**
+	 * Searches from the given state until the deadline, using the calling thread and
+	 * {@code workers} tasks submitted to the executor
+	 *
+	 * @param root the state to search from, not modified
+	 * @param deadline the {@link System#nanoTime()} to stop at
+	 * @param executor the executor for the other workers, may be null if there are none
+	 * @param workers the number of workers besides the calling thread
+	 * @param seed the seed of the playouts
+	 * @return the search result
+	 */
+	@Nonnull public Result search(@Nonnull SearchState root, long deadline,
+	                              @Nullable ExecutorService executor, int workers, long seed) {
+		return search(root, deadline, executor, workers, seed, null);
+	}
+
+	/**
+	 * As {@link #search(SearchState, long, ExecutorService, int, long)}, reporting the best move
+	 * as it changes
+	 *
+	 * @param progress receives the most visited root move whenever it changes, checked every
+	 * {@link #PROGRESS_INTERVAL} on the calling thread; may be null
+	 */
+	@Nonnull public Result search(@Nonnull SearchState root, long deadline,
+	                              @Nullable ExecutorService executor, int workers, long seed,
+	                              @Nullable LongConsumer progress) {
+		return search(root, null, deadline, executor, workers, seed, progress);
+	}
+
+	/**
+	 * As {@link #search(SearchState, long, ExecutorService, int, long, LongConsumer)}, continuing
+	 * a tree kept from an earlier search
+	 *
+	 * @param tree the node of an earlier search for the root state, usually found with
+	 * {@link #reroot}; a new tree if null
+	 */
+	@Nonnull public Result search(@Nonnull SearchState root, @Nullable Node tree, long deadline,
+	                              @Nullable ExecutorService executor, int workers, long seed,
+	                              @Nullable LongConsumer progress) {
+		return search(root, tree, deadline, AiSupport.NEVER, executor, workers, seed, progress);
+	}
+
+	/**
+	 * As {@link #search(SearchState, Node, long, ExecutorService, int, long, LongConsumer)}, also
+	 * stopping once {@code stopped} returns true; every worker polls it with the deadline
+	 */
+	@Nonnull public Result search(@Nonnull SearchState root, @Nullable Node tree, long deadline,
+	                              @Nonnull BooleanSupplier stopped,
+	                              @Nullable ExecutorService executor, int workers, long seed,
+	                              @Nullable LongConsumer progress) {
+		Objects.requireNonNull(root);
+		Objects.requireNonNull(stopped);
+		if (workers > 0) Objects.requireNonNull(executor);
+		if (tree == null) tree = new Node(0, !root.isMrXTurn());
+		else if (tree.isMrXMove() == root.isMrXTurn())
+			throw new IllegalArgumentException("Tree is for the other side");
+		int reused = tree.visits();
+		Node shared = tree;
+		LongAdder iterations = new LongAdder();
+		SplittableRandom seeds = new SplittableRandom(seed);
+		List<Future<?>> futures = new ArrayList<>(workers);
+		for (int i = 0; i < workers; i++) {
+			SearchState state = root.copy();
+			SplittableRandom random = seeds.split();
+			futures.add(executor.submit(() ->
+					run(shared, state, deadline, stopped, random, iterations, null)));
+		}
+		run(tree, root.copy(), deadline, stopped, seeds.split(), iterations, progress);
+		// a descheduled worker may still be in its last iteration, the tree is usable as it is so
+		// the result is never held up waiting for it past the deadline
+		for (Future<?> future : futures) {
+			try {
+				future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			} catch (TimeoutException e) {
+				future.cancel(true);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				futures.forEach(f -> f.cancel(true));
+				break;
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Search worker failed", e.getCause());
+			}
+		}
+		return new Result(tree, iterations.sum(), reused);
+	}
+
+	/**
+	 * Finds the node of a previous search tree reached by the moves played since, so a search
+	 * from the new root keeps the statistics gathered below it. Only children leading towards
+	 * the locations of the new root are followed, and a node is taken when its position has the
+	 * same {@link SearchState#zobristKey()} as the new root.
+	 *
+	 * @param tree the root of the previous search
+	 * @param treeState the state the previous search started from, not modified
+	 * @param root the state to search from next, not modified
+	 * @return the node of the new root, or null if it was never expanded in the tree
+	 */
+	@Nullable public static Node reroot(@Nonnull Node tree, @Nonnull SearchState treeState,
+	                                    @Nonnull SearchState root) {
+		if (treeState.slots() != root.slots()) return null;
+		// a round is at most one move per slot, a double move being a single ply
+		return find(tree, treeState.copy(), root, root.slots());
+	}
+
+	private static Node find(Node node, SearchState state, SearchState root, int plies) {
+		if (state.zobristKey() == root.zobristKey()) return node;
+		Node[] children = node.children();
+		if (plies == 0 || children == null) return null;
+		for (Node child : children) {
+			if (child.visits() == 0) continue;
+			int slot = state.slotOf(PackedMove.pieceAt(PackedMove.piece(child.move())));
+			state.apply(child.move());
+			Node found = state.location(slot) == root.location(slot) ?
+					find(child, state, root, plies - 1) : null;
+			state.undo();
+			if (found != null) return found;
+		}
+		return null;
+	}
+
+	private void run(Node tree, SearchState state, long deadline, BooleanSupplier stopped,
+	                 SplittableRandom random, LongAdder iterations,
+	                 @Nullable LongConsumer progress) {
+		MoveBuffer buffer = new MoveBuffer();
+		List<Node> path = new ArrayList<>();
+		long reported = 0;
+		long now, nextReport = System.nanoTime() + PROGRESS_INTERVAL;
+		while ((now = System.nanoTime()) < deadline && !stopped.getAsBoolean()
+				&& !Thread.currentThread().isInterrupted()) {
+			iterate(tree, state, buffer, path, random);
+			iterations.increment();
+			if (progress != null && now >= nextReport) {
+				long best = new Result(tree, 0).bestMove();
+				if (best != 0 && best != reported) progress.accept(reported = best);
+				nextReport = now + PROGRESS_INTERVAL;
+			}
+		}
+	}
+
+	/**
+	 * One selection, expansion, playout and backpropagation; leaves the state as it found it
+	 */
+	void iterate(Node tree, SearchState state, MoveBuffer buffer, List<Node> path,
+	             SplittableRandom random) {
+		path.clear();
+		Node node = tree;
+		node.add(1, 0);
+		path.add(node);
+		while (!state.isGameOver()) {
+			Node[] children = node.children();
+			if (children == null) children = node.expand(expand(state, buffer));
+			if (children.length == 0) break;
+			Node child = select(node, children, random);
+			boolean fresh = child.visits() == 0;
+			child.add(1, 0);
+			path.add(child);
+			state.apply(child.move());
+			node = child;
+			if (fresh) break;
+		}
+		// random playout
+		while (!state.isGameOver()) {
+			buffer.clear();
+			state.availableMoves(buffer);
+			state.apply(buffer.get(random.nextInt(buffer.size())));
+		}
+		boolean mrXWins = state.outcome() == SearchState.MRX_WINS;
+		while (state.depth() > 0) state.undo();
+		for (Node visited : path) if (visited.isMrXMove() == mrXWins) visited.add(0, 1);
+	}
+
+	private static Node[] expand(SearchState state, MoveBuffer buffer) {
+		buffer.clear();
+		state.availableMoves(buffer);
+		Node[] children = new Node[buffer.size()];
+		for (int i = 0; i < children.length; i++) {
+			long move = buffer.get(i);
+			children[i] = new Node(move, PackedMove.piece(move) == PackedMove.MRX);
+		}
+		return children;
+	}
+
+	private Node select(Node parent, Node[] children, SplittableRandom random) {
+		double logVisits = Math.log(Math.max(1, parent.visits()));
+		int offset = random.nextInt(children.length);
+		Node best = null;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < children.length; i++) {
+			Node child = children[(i + offset) % children.length];
+			int visits = child.visits();
+			// unvisited children first, starting from a random one to spread the workers
+			if (visits == 0) return child;
+			double score = (double) child.wins() / visits
+					+ exploration * Math.sqrt(logVisits / visits);
+			if (score > bestScore) {
+				bestScore = score;
+				best = child;
+			}
+		}
+		return best;
+	}
+
+}
@@ -0,0 +1,198 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.LogEntry;
+import uk.ac.bris.cs.scotlandyard.model.NodeSet;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TransportGraph;
+
+/**
+ * Tracks the nodes MrX could be on as seen by the detectives, as a {@link NodeSet}.
+ * <br>
+ * {@link #update(Board)} consumes the travel log entries added since the last update: a reveal
+ * collapses the set to one node, a hidden entry moves the set one step along the edges the ticket
+ * pays for. Nodes the detectives are on are removed after every update, as MrX would have been
+ * caught there. Only new entries are processed, so calling it every turn is cheap.
+ * <br>
+ * Not thread safe; use {@link #copy()} to give each thread its own tracker.
+ */
+public final class MrXTracker {
+
+	private static final int TICKETS = Ticket.values().length;
+
+	private final TransportGraph graph;
+	private final int words;
+	// the neighbours reachable with each ticket, indexed by (node * TICKETS + ticket) * words
+	private final long[] adjacency;
+	private final long[] start;
+	private final long[] candidates;
+	private final long[] scratch;
+	private int consumed;
+
+	private MrXTracker(TransportGraph graph, int words, long[] adjacency, long[] start) {
+		this.graph = graph;
+		this.words = words;
+		this.adjacency = adjacency;
+		this.start = start;
+		this.candidates = start.clone();
+		this.scratch = new long[words];
+	}
+
+	/**
+	 * @param setup the game setup
+	 * @return a tracker for a game starting from one of {@link ScotlandYard#MRX_LOCATIONS}
+	 */
+	@Nonnull public static MrXTracker of(@Nonnull GameSetup setup) {
+		return of(setup, ScotlandYard.MRX_LOCATIONS);
+	}
+
+	/**
+	 * @param setup the game setup
+	 * @param starts the nodes MrX may start on
+	 * @return a tracker for a game starting from one of the given nodes
+	 */
+	@Nonnull public static MrXTracker of(@Nonnull GameSetup setup,
+	                                     @Nonnull ImmutableList<Integer> starts) {
+		TransportGraph graph = setup.transportGraph();
+		int bound = graph.nodeBound();
+		int words = NodeSet.words(bound);
+		long[] adjacency = new long[bound * TICKETS * words];
+		for (int node = 0; node < bound; node++) {
+			for (int edge = graph.start(node); edge < graph.end(node); edge++) {
+				int neighbour = graph.neighbour(edge);
+				int tickets = graph.tickets(edge) | 1 << Ticket.SECRET.ordinal();
+				for (int ticket = 0; ticket < TICKETS; ticket++) {
+					if ((tickets & (1 << ticket)) == 0) continue;
+					int row = (node * TICKETS + ticket) * words;
+					adjacency[row + (neighbour >>> 6)] |= 1L << neighbour;
+				}
+			}
+		}
+		long[] start = NodeSet.create(bound);
+		for (int node : starts) if (node >= 0 && node < bound) NodeSet.add(start, node);
+		return new MrXTracker(graph, words, adjacency, start);
+	}
+
+	/**
+	 * @return an independent copy of this tracker in the same state
+	 */
+	@Nonnull public MrXTracker copy() {
+		MrXTracker copy = new MrXTracker(graph, words, adjacency, start);
+		System.arraycopy(candidates, 0, copy.candidates, 0, words);
+		copy.consumed = consumed;
+		return copy;
+	}
+
+	/**
+	 * Catches up with the board's travel log and removes the nodes the detectives are on. If the
+	 * log is shorter than what was already consumed (a new game) the tracker starts over.
+	 *
+	 * @param board the board
+	 */
+	public void update(@Nonnull Board board) {
+		ImmutableList<LogEntry> log = board.getMrXTravelLog();
+		if (log.size() < consumed) reset();
+		long[] occupied = NodeSet.create(graph.nodeBound());
+		for (Piece piece : board.getPlayers())
+			if (piece.isDetective())
+				board.getDetectiveLocation((Piece.Detective) piece).ifPresent(location -> {
+					if (location >= 0 && location < graph.nodeBound()) NodeSet.add(occupied, location);
+				});
+		while (consumed < log.size()) {
+			LogEntry entry = log.get(consumed++);
+			if (entry.location().isPresent()) reveal(entry.location().get());
+			// where the detectives were when MrX moved is unknown, only where they are now
+			else move(entry.ticket().ordinal(), null);
+		}
+		exclude(occupied);
+	}
+
+	/**
+	 * MrX was seen at a node
+	 *
+	 * @param node the node
+	 */
+	public void reveal(int node) {
+		NodeSet.clear(candidates);
+		if (node >= 0 && node < graph.nodeBound()) NodeSet.add(candidates, node);
+	}
+
+	/**
+	 * MrX made a hidden move
+	 *
+	 * @param ticket the ordinal of the ticket MrX used
+	 * @param occupied the nodes MrX could not move to, may be null
+	 */
+	public void move(int ticket, long[] occupied) {
+		Arrays.fill(scratch, 0L);
+		for (int node = NodeSet.next(candidates, 0); node >= 0;
+		     node = NodeSet.next(candidates, node + 1)) {
+			int row = (node * TICKETS + ticket) * words;
+			for (int w = 0; w < words; w++) scratch[w] |= adjacency[row + w];
+		}
+		System.arraycopy(scratch, 0, candidates, 0, words);
+		if (occupied != null) exclude(occupied);
+	}
+
+	/**
+	 * Removes nodes MrX can't be on
+	 *
+	 * @param nodes the nodes to remove
+	 */
+	public void exclude(long[] nodes) {
+		for (int w = 0; w < words; w++) candidates[w] &= ~nodes[w];
+	}
+
+	/**
+	 * Starts over from the start nodes
+	 */
+	public void reset() {
+		System.arraycopy(start, 0, candidates, 0, words);
+		consumed = 0;
+	}
+
+	/**
+	 * @return the nodes MrX could be on; must not be modified
+	 */
+	@Nonnull public long[] candidates() { return candidates; }
+
+	public boolean contains(int node) {
+		return node >= 0 && node < graph.nodeBound() && NodeSet.contains(candidates, node);
+	}
+
+	/**
+	 * @return the number of nodes MrX could be on
+	 */
+	public int size() { return NodeSet.size(candidates); }
+
+	/**
+	 * @return the number of travel log entries consumed
+	 */
+	public int consumed() { return consumed; }
+
+	/**
+	 * @return the nodes MrX could be on
+	 */
+	@Nonnull public ImmutableSet<Integer> toSet() {
+		var builder = ImmutableSet.<Integer>builder();
+		for (int node = NodeSet.next(candidates, 0); node >= 0;
+		     node = NodeSet.next(candidates, node + 1))
+			builder.add(node);
+		return builder.build();
+	}
+
+	@Override public String toString() {
+		return "MrXTracker{consumed=" + consumed + ", candidates=" + toSet() + '}';
+	}
+
+}
@@ -0,0 +1,19 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives the progress of a search, called on the searching thread so implementations should
+ * be quick
+ */
+@FunctionalInterface
+public interface SearchMetrics {
+
+	/**
+	 * Ignores every report
+	 */
+	SearchMetrics NONE = report -> {};
+
+	void report(@Nonnull SearchReport report);
+
+}
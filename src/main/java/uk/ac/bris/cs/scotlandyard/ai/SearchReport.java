@@ -0,0 +1,66 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.util.concurrent.TimeUnit;
+
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+
+/**
+ * Progress of a search, reported to {@link SearchMetrics} after every completed iteration
+ */
+public final class SearchReport {
+
+	private final String ai;
+	private final int depth;
+	private final long nodes;
+	private final long elapsedNanos;
+	private final int score;
+	private final long bestMove;
+
+	public SearchReport(String ai, int depth, long nodes, long elapsedNanos, int score,
+	                    long bestMove) {
+		this.ai = ai;
+		this.depth = depth;
+		this.nodes = nodes;
+		this.elapsedNanos = elapsedNanos;
+		this.score = score;
+		this.bestMove = bestMove;
+	}
+
+	/**
+	 * @return the name of the Ai searching
+	 */
+	public String ai() { return ai; }
+
+	/**
+	 * @return the depth reached, in plies (single moves of one piece)
+	 */
+	public int depth() { return depth; }
+
+	/**
+	 * @return the nodes visited since the search started
+	 */
+	public long nodes() { return nodes; }
+
+	public long elapsedNanos() { return elapsedNanos; }
+
+	/**
+	 * @return the score of the best move from MrX's point of view
+	 */
+	public int score() { return score; }
+
+	/**
+	 * @return the best move as a {@link PackedMove}, 0 if there is none
+	 */
+	public long bestMove() { return bestMove; }
+
+	public double nodesPerSecond() {
+		return elapsedNanos == 0 ? 0 : nodes * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+	}
+
+	@Override public String toString() {
+		return String.format("%s depth=%d nodes=%d nps=%.0f time=%dms score=%d move=%s", ai, depth,
+				nodes, nodesPerSecond(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), score,
+				bestMove == 0 ? "none" : PackedMove.toString(bestMove));
+	}
+
+}
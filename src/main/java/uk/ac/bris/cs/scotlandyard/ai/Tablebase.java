@@ -0,0 +1,322 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+import uk.ac.bris.cs.scotlandyard.model.TransportGraph;
+
+/**
+ * An endgame tablebase for MrX, solved by retrograde analysis from the end of the game: for
+ * every position with up to {@link #rounds()} rounds left it tells whether MrX, having just
+ * moved, survives to fill the travel log.
+ * <br>
+ * The positions are solved in a relaxed game that favours the detectives. They see MrX, ignore
+ * their tickets, and may stay put or share a node, while MrX only makes single moves and never
+ * takes a ferry. A position safe in the relaxed game is therefore safe in the real one, so long
+ * as MrX has a ticket for every move he makes, see {@link #hasTickets}. An unsafe position is
+ * no proof that the detectives win.
+ * <br>
+ * A table is a bitset per round, indexed by MrX's location then every detective's. It takes
+ * {@code nodeBound^(detectives + 1)} bits a round, about 1MB for two detectives on the standard
+ * graph, hence {@link #MAX_DETECTIVES}. Tables are written once and memory mapped for probing,
+ * which is thread safe.
+ */
+public final class Tablebase {
+
+	/**
+	 * Most detectives a table can be computed for, each one more multiplies its size by the
+	 * number of nodes
+	 */
+	public static final int MAX_DETECTIVES = 2;
+
+	private static final int MAGIC = 0x53595442; // SYTB
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 32;
+
+	private final long fingerprint;
+	private final int nodeBound;
+	private final int detectives;
+	private final int rounds;
+	private final long layerBytes;
+	private final ByteBuffer bits;
+
+	private Tablebase(long fingerprint, int nodeBound, int detectives, int rounds,
+	                  ByteBuffer bits) {
+		this.fingerprint = fingerprint;
+		this.nodeBound = nodeBound;
+		this.detectives = detectives;
+		this.rounds = rounds;
+		this.layerBytes = layerWords(nodeBound, detectives) * Long.BYTES;
+		this.bits = bits;
+	}
+
+	private static long positions(int nodeBound, int detectives) {
+		long positions = nodeBound;
+		for (int i = 0; i < detectives; i++) positions *= nodeBound;
+		return positions;
+	}
+
+	private static long layerWords(int nodeBound, int detectives) {
+		return (positions(nodeBound, detectives) + 63) >>> 6;
+	}
+
+	/**
+	 * @param graph the graph
+	 * @return a hash of the graph's edges, tables only open for the graph they were computed for
+	 */
+	public static long fingerprint(@Nonnull TransportGraph graph) {
+		long hash = graph.nodeBound();
+		for (int node = 0; node < graph.nodeBound(); node++) {
+			for (int edge = graph.start(node); edge < graph.end(node); edge++) {
+				hash = hash * 31 + node;
+				hash = hash * 31 + graph.neighbour(edge);
+				hash = hash * 31 + graph.transports(edge);
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Solves every position by retrograde analysis, one round at a time from the end of the game
+	 *
+	 * @param graph the graph
+	 * @param detectives the number of detectives, 1 to {@link #MAX_DETECTIVES}
+	 * @param rounds the most rounds left the table covers, at least 1
+	 * @return the table, held on the heap
+	 */
+	@Nonnull public static Tablebase compute(@Nonnull TransportGraph graph, int detectives,
+	                                         int rounds) {
+		if (detectives < 1 || detectives > MAX_DETECTIVES)
+			throw new IllegalArgumentException("Bad detectives: " + detectives);
+		if (rounds < 1) throw new IllegalArgumentException("Bad rounds: " + rounds);
+		int bound = graph.nodeBound();
+		long positions = positions(bound, detectives);
+		if (positions * rounds > (Integer.MAX_VALUE - HEADER_BYTES) * 8L)
+			throw new IllegalArgumentException("Table too large: " + rounds + " rounds");
+		int[][] mrXMoves = new int[bound][];
+		int[][] detectiveMoves = new int[bound][];
+		for (int node = 0; node < bound; node++) {
+			mrXMoves[node] = landMoves(graph, node, false);
+			detectiveMoves[node] = landMoves(graph, node, true);
+		}
+		int words = (int) layerWords(bound, detectives);
+		var bits = ByteBuffer.allocate((int) (words * Long.BYTES * (long) rounds))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		long[] safe = new long[words];
+		long[] escapes = new long[words];
+		long[] swap = new long[words];
+		for (int round = 1; round <= rounds; round++) {
+			// MrX to move with round - 1 rounds left: he escapes if he is free and can move to a
+			// free node safe with one round fewer; every position is an escape after the last
+			if (round == 1) fillFree(escapes, bound, detectives, positions);
+			else escapes(safe, escapes, mrXMoves, bound, detectives, positions);
+			// MrX has moved: safe if every reply of the detectives leaves him an escape, the
+			// replies are taken one detective at a time
+			long[] from = escapes;
+			for (int detective = 0; detective < detectives; detective++) {
+				long[] to = detective % 2 == 0 ? safe : swap;
+				allReplies(from, to, detectiveMoves, stride(bound, detectives, detective),
+						bound, positions);
+				from = to;
+			}
+			if (from != safe) System.arraycopy(from, 0, safe, 0, words);
+			for (long word : safe) bits.putLong(word);
+		}
+		return new Tablebase(fingerprint(graph), bound, detectives, rounds, bits.flip());
+	}
+
+	// the neighbours along routes other than ferries, and the node itself for the detectives
+	private static int[] landMoves(TransportGraph graph, int node, boolean stay) {
+		int[] moves = new int[graph.degree(node) + (stay ? 1 : 0)];
+		int count = 0;
+		if (stay) moves[count++] = node;
+		for (int edge = graph.start(node); edge < graph.end(node); edge++)
+			if ((graph.transports(edge) & ~(1 << Transport.FERRY.ordinal())) != 0)
+				moves[count++] = graph.neighbour(edge);
+		return Arrays.copyOf(moves, count);
+	}
+
+	private static long stride(int bound, int detectives, int detective) {
+		long stride = 1;
+		for (int i = detective + 1; i < detectives; i++) stride *= bound;
+		return stride;
+	}
+
+	private static boolean get(long[] bits, long index) {
+		return (bits[(int) (index >>> 6)] & 1L << index) != 0;
+	}
+
+	private static void set(long[] bits, long index) {
+		bits[(int) (index >>> 6)] |= 1L << index;
+	}
+
+	// whether MrX shares a node with any detective at the position
+	private static boolean caught(long position, int bound, int detectives, long positions) {
+		long rest = positions / bound;
+		int mrX = (int) (position / rest);
+		long locations = position % rest;
+		for (int i = 0; i < detectives; i++) {
+			if (locations % bound == mrX) return true;
+			locations /= bound;
+		}
+		return false;
+	}
+
+	private static void fillFree(long[] out, int bound, int detectives, long positions) {
+		Arrays.fill(out, 0);
+		for (long position = 0; position < positions; position++)
+			if (!caught(position, bound, detectives, positions)) set(out, position);
+	}
+
+	private static void escapes(long[] safe, long[] out, int[][] mrXMoves, int bound,
+	                            int detectives, long positions) {
+		Arrays.fill(out, 0);
+		long rest = positions / bound;
+		for (long position = 0; position < positions; position++) {
+			if (caught(position, bound, detectives, positions)) continue;
+			int mrX = (int) (position / rest);
+			long locations = position % rest;
+			// a safe position never has MrX on a detective, so a move onto one is never taken
+			for (int to : mrXMoves[mrX]) {
+				if (get(safe, to * rest + locations)) {
+					set(out, position);
+					break;
+				}
+			}
+		}
+	}
+
+	private static void allReplies(long[] in, long[] out, int[][] detectiveMoves, long stride,
+	                               int bound, long positions) {
+		Arrays.fill(out, 0);
+		for (long position = 0; position < positions; position++) {
+			int location = (int) (position / stride % bound);
+			long base = position - location * stride;
+			boolean all = true;
+			for (int to : detectiveMoves[location]) {
+				if (!get(in, base + to * stride)) {
+					all = false;
+					break;
+				}
+			}
+			if (all) set(out, position);
+		}
+	}
+
+	/**
+	 * Writes the table, replacing the file atomically
+	 *
+	 * @param file the file
+	 */
+	public void writeTo(@Nonnull Path file) throws IOException {
+		var header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+				.putInt(MAGIC).putInt(VERSION).putLong(fingerprint)
+				.putInt(nodeBound).putInt(detectives).putInt(rounds);
+		header.position(HEADER_BYTES).flip();
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (var channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			var body = bits.duplicate();
+			body.rewind();
+			while (header.hasRemaining()) channel.write(header);
+			while (body.hasRemaining()) channel.write(body);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Memory maps a table written by {@link #writeTo}
+	 *
+	 * @param file the file
+	 * @param graph the graph the table is for
+	 * @return the table
+	 * @throws IOException if the file is not a table, or not one for the graph
+	 */
+	@Nonnull public static Tablebase open(@Nonnull Path file, @Nonnull TransportGraph graph)
+			throws IOException {
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_BYTES || size > Integer.MAX_VALUE)
+				throw new IOException("Not a tablebase: " + file);
+			var mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION)
+				throw new IOException("Not a tablebase: " + file);
+			long fingerprint = mapped.getLong(8);
+			int nodeBound = mapped.getInt(16);
+			int detectives = mapped.getInt(20);
+			int rounds = mapped.getInt(24);
+			if (fingerprint != fingerprint(graph) || nodeBound != graph.nodeBound())
+				throw new IOException("Tablebase is for another graph: " + file);
+			if (detectives < 1 || detectives > MAX_DETECTIVES || rounds < 1
+					|| size != HEADER_BYTES + layerWords(nodeBound, detectives) * Long.BYTES
+					* rounds)
+				throw new IOException("Truncated tablebase: " + file);
+			var bits = mapped.position(HEADER_BYTES).slice().order(ByteOrder.LITTLE_ENDIAN);
+			return new Tablebase(fingerprint, nodeBound, detectives, rounds, bits);
+		}
+	}
+
+	public int detectives() { return detectives; }
+
+	/**
+	 * @return the most rounds left the table covers
+	 */
+	public int rounds() { return rounds; }
+
+	/**
+	 * @param roundsLeft the rounds left including the current one, the size of the setup's
+	 * moves less that of the travel log on MrX's turn
+	 * @param detectives the number of detectives in the game
+	 * @return whether the table has the positions
+	 */
+	public boolean covers(int roundsLeft, int detectives) {
+		return roundsLeft >= 1 && roundsLeft <= rounds && detectives == this.detectives;
+	}
+
+	/**
+	 * @param roundsLeft the rounds left including the current one, the size of the setup's
+	 * moves less that of the travel log before MrX moved
+	 * @param mrX where MrX has just moved to
+	 * @param detectives where the detectives are, in any order
+	 * @return whether MrX survives every remaining round against any detectives' play
+	 * @throws IllegalArgumentException if the table doesn't {@link #covers cover} the position
+	 */
+	public boolean isSafe(int roundsLeft, int mrX, @Nonnull int[] detectives) {
+		if (!covers(roundsLeft, Objects.requireNonNull(detectives).length))
+			throw new IllegalArgumentException("Position not covered: " + roundsLeft
+					+ " rounds left with " + detectives.length + " detectives");
+		long position = checkNode(mrX);
+		for (int detective : detectives) position = position * nodeBound + checkNode(detective);
+		long bit = (roundsLeft - 1) * layerBytes * 8 + position;
+		return (bits.get((int) (bit >>> 3)) & 1 << (bit & 7)) != 0;
+	}
+
+	private int checkNode(int node) {
+		if (node < 0 || node >= nodeBound) throw new IllegalArgumentException("Bad node: " + node);
+		return node;
+	}
+
+	/**
+	 * @param roundsLeft the rounds left including the current one
+	 * @return whether MrX can pay for any {@code roundsLeft} moves over land: his scarcest land
+	 * ticket and his secret tickets make up at least that many
+	 */
+	public static boolean hasTickets(int roundsLeft, int taxi, int bus, int underground,
+	                                 int secret) {
+		return Math.min(taxi, Math.min(bus, underground)) + secret >= roundsLeft;
+	}
+
+}
@@ -0,0 +1,132 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import io.atlassian.fugue.Pair;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+
+/**
+ * MrX playing the endgame from a {@link Tablebase}: once few enough rounds are left he plays a
+ * single move the table proves safe, without searching. Otherwise, and for the detectives, the
+ * move is left to another Ai, an {@link MctsAi} by default.
+ * <br>
+ * The no argument constructor opens the table named by {@link #TABLEBASE_PROPERTY}, if any, on
+ * the first move.
+ */
+public class TablebaseAi implements Ai {
+
+	/**
+	 * System property naming the table file used by default
+	 */
+	public static final String TABLEBASE_PROPERTY = "scotlandyard.tablebase";
+
+	private final Ai fallback;
+	@Nullable private final Path file;
+	private Tablebase table;
+	private int probed;
+
+	public TablebaseAi() {
+		this(AiSupport.DEFAULT_THREADS);
+	}
+
+	/**
+	 * @param threads the search threads of the default {@link MctsAi}
+	 */
+	public TablebaseAi(int threads) {
+		this(new MctsAi(threads), System.getProperty(TABLEBASE_PROPERTY) == null ? null :
+				Path.of(System.getProperty(TABLEBASE_PROPERTY)));
+	}
+
+	/**
+	 * @param fallback the Ai for the moves the table doesn't cover
+	 * @param file the table, opened on the first move; none if null
+	 */
+	public TablebaseAi(@Nonnull Ai fallback, @Nullable Path file) {
+		this.fallback = Objects.requireNonNull(fallback);
+		this.file = file;
+	}
+
+	/**
+	 * @param fallback the Ai for the moves the table doesn't cover
+	 * @param table the table
+	 */
+	public TablebaseAi(@Nonnull Ai fallback, @Nonnull Tablebase table) {
+		this.fallback = Objects.requireNonNull(fallback);
+		this.file = null;
+		this.table = Objects.requireNonNull(table);
+	}
+
+	@Nonnull @Override public String name() { return "Tablebase"; }
+
+	@Override public void onStart() { fallback.onStart(); }
+
+	@Nonnull @Override
+	public Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair) {
+		if (AiSupport.isMrXTurn(board)) {
+			Move move = probe(board);
+			if (move != null) return move;
+		}
+		return fallback.pickMove(board, timeoutPair);
+	}
+
+	/**
+	 * @param board a board on MrX's turn
+	 * @return a move the table proves safe, or null if the position isn't covered or MrX can't
+	 * be sure to escape
+	 */
+	@Nullable synchronized Move probe(Board board) {
+		Tablebase table = table(board);
+		if (table == null) return null;
+		SearchState state = SearchState.fromBoard(board, AiSupport.mrXLocation(board));
+		int roundsLeft = board.getSetup().moves.size() - board.getMrXTravelLog().size();
+		if (!table.covers(roundsLeft, state.slots() - 1)
+				|| !Tablebase.hasTickets(roundsLeft, state.tickets(0, Ticket.TAXI),
+				state.tickets(0, Ticket.BUS), state.tickets(0, Ticket.UNDERGROUND),
+				state.tickets(0, Ticket.SECRET)))
+			return null;
+		int[] detectives = new int[state.slots() - 1];
+		for (int slot = 1; slot < state.slots(); slot++)
+			detectives[slot - 1] = state.location(slot);
+		probed++;
+		// the first safe single move, keeping the secret tickets for when they are needed
+		Move secret = null;
+		for (Move move : board.getAvailableMoves()) {
+			if (!(move instanceof Move.SingleMove)) continue;
+			var single = (Move.SingleMove) move;
+			if (!table.isSafe(roundsLeft, single.destination, detectives)) continue;
+			if (single.ticket != Ticket.SECRET) return single;
+			if (secret == null) secret = single;
+		}
+		return secret;
+	}
+
+	@Nullable private Tablebase table(Board board) {
+		if (table == null && file != null) {
+			try {
+				table = Tablebase.open(file, board.getSetup().transportGraph());
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to open tablebase " + file, e);
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * @return the number of MrX's positions looked up in the table
+	 */
+	synchronized int probed() { return probed; }
+
+	@Override public void onTerminate() { fallback.onTerminate(); }
+
+}
@@ -0,0 +1,258 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.HashedGameState;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.Zobrist;
+
+/**
+ * A fixed-size transposition table keyed by {@link Zobrist} keys (see
+ * {@link HashedGameState#zobristKey()}), shared by any number of search threads without locks.
+ * <br>
+ * Entries live in three parallel primitive arrays, the packed search result, the best move as a
+ * {@link PackedMove} and a check word holding {@code key ^ move ^ data}. A reader only accepts an
+ * entry whose check word matches, so entries torn by concurrent writers read as misses instead of
+ * as wrong results. Entries are grouped into buckets of {@value #BUCKET} and a store that does not
+ * hit its own key replaces an entry picked by the {@link Replacement} policy.
+ */
+public final class TranspositionTable {
+
+	/**
+	 * Bound type of an entry whose score is exact
+	 */
+	public static final int EXACT = 0;
+	/**
+	 * Bound type of an entry whose score is a lower bound (the search failed high)
+	 */
+	public static final int LOWER = 1;
+	/**
+	 * Bound type of an entry whose score is an upper bound (the search failed low)
+	 */
+	public static final int UPPER = 2;
+
+	/**
+	 * How a store picks the entry to overwrite when its key is not in the bucket
+	 */
+	public enum Replacement {
+		/**
+		 * Always overwrite the shallowest entry of the bucket
+		 */
+		ALWAYS,
+		/**
+		 * Overwrite the shallowest entry only if the new entry is searched at least as deep
+		 */
+		DEPTH,
+		/**
+		 * Like {@link #DEPTH} but entries stored before the last {@link #newSearch()} are always
+		 * overwritten first
+		 */
+		AGED
+	}
+
+	/**
+	 * Bytes used per entry, see {@link #TranspositionTable(long, Replacement)}
+	 */
+	public static final int ENTRY_BYTES = 3 * Long.BYTES;
+
+	static final int BUCKET = 2;
+	private static final int MAX_ENTRIES = 1 << 30;
+
+	// data layout: score 0-31, depth 32-47, bound 48-49, generation 50-57, valid 63
+	private static final int DEPTH_SHIFT = 32;
+	private static final int BOUND_SHIFT = 48;
+	private static final int GENERATION_SHIFT = 50;
+	private static final int GENERATION_MASK = 0xFF;
+	private static final long VALID = 1L << 63;
+
+	private final long[] checks;
+	private final long[] moves;
+	private final long[] data;
+	private final int mask;
+	private final Replacement replacement;
+	private volatile int generation;
+
+	/**
+	 * @param budgetBytes the memory budget, the table takes the largest power of two number of
+	 * entries that fits (at least one bucket)
+	 * @param replacement the replacement policy
+	 */
+	public TranspositionTable(long budgetBytes, @Nonnull Replacement replacement) {
+		this.replacement = Objects.requireNonNull(replacement);
+		if (budgetBytes <= 0) throw new IllegalArgumentException("Bad budget: " + budgetBytes);
+		long entries = Math.min(MAX_ENTRIES, Math.max(BUCKET, budgetBytes / ENTRY_BYTES));
+		int size = Integer.highestOneBit((int) entries);
+		this.checks = new long[size];
+		this.moves = new long[size];
+		this.data = new long[size];
+		this.mask = size - BUCKET;
+	}
+
+	/**
+	 * A probed entry, reused by a searching thread across probes
+	 */
+	public static final class Entry {
+		private long move;
+		private int score;
+		private int depth;
+		private int bound;
+
+		/**
+		 * @return the best move as a {@link PackedMove}, or 0 if there was none
+		 */
+		public long move() { return move; }
+
+		public int score() { return score; }
+
+		/**
+		 * @return the remaining depth the entry was searched to
+		 */
+		public int depth() { return depth; }
+
+		/**
+		 * @return {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+		 */
+		public int bound() { return bound; }
+
+		@Override public String toString() {
+			return "Entry{move=" + (move == 0 ? "none" : PackedMove.toString(move))
+					+ ", score=" + score + ", depth=" + depth + ", bound=" + bound + '}';
+		}
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int capacity() { return checks.length; }
+
+	@Nonnull public Replacement replacement() { return replacement; }
+
+	/**
+	 * Looks up a position
+	 *
+	 * @param key the Zobrist key of the position
+	 * @param out the entry to copy the result into
+	 * @return whether the position was found; out is only written if it was
+	 */
+	public boolean probe(long key, @Nonnull Entry out) {
+		int first = bucket(key);
+		for (int i = first; i < first + BUCKET; i++) {
+			long d = data[i];
+			long m = moves[i];
+			if ((d & VALID) == 0 || checks[i] != (key ^ m ^ d)) continue;
+			out.move = m;
+			out.score = score(d);
+			out.depth = depth(d);
+			out.bound = (int) (d >>> BOUND_SHIFT) & 0x3;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Stores a search result
+	 *
+	 * @param key the Zobrist key of the position
+	 * @param depth the remaining depth searched, clamped to {@code [0, 65535]}
+	 * @param bound {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+	 * @param score the score
+	 * @param move the best move as a {@link PackedMove}, or 0 if there is none; a store with no
+	 * move keeps the move already stored for the same key
+	 */
+	public void store(long key, int depth, int bound, int score, long move) {
+		if (bound < EXACT || bound > UPPER) throw new IllegalArgumentException("Bad bound: " + bound);
+		int generation = this.generation;
+		int first = bucket(key);
+		int victim = -1;
+		for (int i = first; i < first + BUCKET; i++) {
+			long d = data[i];
+			long m = moves[i];
+			if ((d & VALID) != 0 && checks[i] == (key ^ m ^ d)) {
+				// same position, newer results always win
+				if (move == 0) move = m;
+				victim = i;
+				break;
+			}
+			if (victim < 0 || worse(d, data[victim], generation)) victim = i;
+		}
+		long old = data[victim];
+		boolean sameKey = (old & VALID) != 0 && checks[victim] == (key ^ moves[victim] ^ old);
+		if (!sameKey && (old & VALID) != 0 && !replaces(old, depth, generation)) return;
+		long d = VALID
+				| (long) (generation & GENERATION_MASK) << GENERATION_SHIFT
+				| (long) bound << BOUND_SHIFT
+				| (long) Math.max(0, Math.min(0xFFFF, depth)) << DEPTH_SHIFT
+				| score & 0xFFFF_FFFFL;
+		// readers check all three words, so a reader racing with this write sees a miss
+		data[victim] = d;
+		moves[victim] = move;
+		checks[victim] = key ^ move ^ d;
+	}
+
+	/**
+	 * Marks the start of a new search; entries from earlier searches are replaced first by
+	 * {@link Replacement#AGED}
+	 */
+	public void newSearch() { generation = (generation + 1) & GENERATION_MASK; }
+
+	/**
+	 * Empties the table, must not run concurrently with a search
+	 */
+	public void clear() {
+		Arrays.fill(checks, 0);
+		Arrays.fill(moves, 0);
+		Arrays.fill(data, 0);
+	}
+
+	/**
+	 * @return approximately how full the table is, in permille, sampled from the first entries
+	 */
+	public int hashfull() {
+		int sample = Math.min(1000, checks.length);
+		int used = 0;
+		for (int i = 0; i < sample; i++) if ((data[i] & VALID) != 0) used++;
+		return used * 1000 / sample;
+	}
+
+	private int bucket(long key) {
+		// the low bits of Zobrist keys are as good as any
+		return (int) (key ^ (key >>> 32)) & mask;
+	}
+
+	/**
+	 * @return whether entry a is a better victim than entry b
+	 */
+	private boolean worse(long a, long b, int generation) {
+		if ((a & VALID) == 0) return true;
+		if ((b & VALID) == 0) return false;
+		if (replacement == Replacement.AGED) {
+			boolean aOld = generation(a) != generation;
+			boolean bOld = generation(b) != generation;
+			if (aOld != bOld) return aOld;
+		}
+		return depth(a) < depth(b);
+	}
+
+	private boolean replaces(long old, int depth, int generation) {
+		switch (replacement) {
+			case ALWAYS:
+				return true;
+			case AGED:
+				return generation(old) != generation || depth >= depth(old);
+			default:
+				return depth >= depth(old);
+		}
+	}
+
+	private static int score(long data) { return (int) data; }
+
+	private static int depth(long data) { return (int) (data >>> DEPTH_SHIFT) & 0xFFFF; }
+
+	private static int generation(long data) {
+		return (int) (data >>> GENERATION_SHIFT) & GENERATION_MASK;
+	}
+
+}
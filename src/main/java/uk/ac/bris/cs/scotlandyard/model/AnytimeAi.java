@@ -0,0 +1,28 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import io.atlassian.fugue.Pair;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+/**
+ * An {@link Ai} that can be stopped at any time: it publishes improving moves while it searches
+ * and whoever runs it may play the latest one once the time is up instead of waiting.
+ */
+public interface AnytimeAi extends Ai {
+
+	/**
+	 * Searches until the sink is cancelled or the timeout runs out, whichever is first. Unlike
+	 * {@link Ai#pickMove(Board, Pair)} no time needs to be kept back for returning, the caller
+	 * cancels the sink when it takes the latest move.
+	 *
+	 * @param board       the game board
+	 * @param timeoutPair the time the Ai has for this move
+	 * @param sink        receives every improvement of the best move found so far
+	 * @return the best move found, from {@link Board#getAvailableMoves()}
+	 */
+	@Nonnull Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair,
+	                       @Nonnull MoveSink sink);
+
+}
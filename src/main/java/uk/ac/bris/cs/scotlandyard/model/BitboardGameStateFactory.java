@@ -0,0 +1,501 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Factory;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * A {@link GameState} factory producing states backed by a compact, fixed-size primitive layout
+ * instead of {@link Player}s and immutable collections. States are still immutable; advancing
+ * copies a handful of small arrays and shares the rest with the previous state.
+ * <br>
+ * Players are stored in slots: slot 0 is MrX, slots 1..n are the detectives in the order they
+ * were given to {@link #build(GameSetup, Player, ImmutableList)}.
+ */
+public final class BitboardGameStateFactory implements Factory<GameState> {
+
+	@Nonnull @Override
+	public BitboardGameState build(GameSetup setup, Player mrX, ImmutableList<Player> detectives) {
+		Objects.requireNonNull(setup);
+		Objects.requireNonNull(mrX);
+		detectives.forEach(Objects::requireNonNull);
+		if (!mrX.isMrX()) throw new IllegalArgumentException("MrX is not MrX: " + mrX);
+		if (setup.moves.isEmpty()) throw new IllegalArgumentException("Moves is empty");
+		if (detectives.isEmpty()) throw new IllegalArgumentException("No detectives");
+		if (setup.graph.edges().isEmpty()) throw new IllegalArgumentException("Graph is empty");
+
+		TransportGraph graph = setup.transportGraph();
+		int slots = detectives.size() + 1;
+		Piece[] pieces = new Piece[slots];
+		int[] locations = new int[slots];
+		int[] tickets = new int[slots * TICKETS];
+		long[] occupied = NodeSet.create(graph.nodeBound());
+		for (int slot = 0; slot < slots; slot++) {
+			Player player = slot == 0 ? mrX : detectives.get(slot - 1);
+			if (slot != 0) {
+				if (!player.isDetective())
+					throw new IllegalArgumentException("Not a detective: " + player);
+				if (player.has(Ticket.DOUBLE) || player.has(Ticket.SECRET))
+					throw new IllegalArgumentException("Detective has MrX tickets: " + player);
+			}
+			int location = player.location();
+			if (!graph.hasEdges(location) || location > PackedMove.MAX_NODE)
+				throw new IllegalArgumentException("Bad location: " + player);
+			for (int other = 0; other < slot; other++) {
+				if (pieces[other] == player.piece())
+					throw new IllegalArgumentException("Duplicate piece: " + player);
+				if (other != 0 && locations[other] == location)
+					throw new IllegalArgumentException("Duplicate location: " + player);
+			}
+			pieces[slot] = player.piece();
+			locations[slot] = location;
+			for (Ticket t : ALL_TICKETS)
+				tickets[slot * TICKETS + t.ordinal()] = player.tickets().getOrDefault(t, 0);
+			if (slot != 0) NodeSet.add(occupied, location);
+		}
+		return new BitboardGameState(setup, graph, pieces, locations, tickets, occupied,
+				MRX_SLOT_BIT, 0, new int[setup.moves.size()],
+				zobristKey(pieces, locations, tickets, MRX_SLOT_BIT, 0));
+	}
+
+	static final Ticket[] ALL_TICKETS = Ticket.values();
+	/**
+	 * Number of ticket counters per slot
+	 */
+	static final int TICKETS = ALL_TICKETS.length;
+	static final int MRX_SLOT_BIT = 1;
+
+	private static final int DOUBLE = Ticket.DOUBLE.ordinal();
+	private static final int SECRET_BIT = 1 << Ticket.SECRET.ordinal();
+	private static final int TICKET_BITS = 3;
+
+	static final byte WINNER_UNKNOWN = 0;
+	static final byte WINNER_NONE = 1;
+	static final byte WINNER_MRX = 2;
+	static final byte WINNER_DETECTIVES = 3;
+
+	//-------------------- Rules shared with SearchState --------------------//
+
+	/**
+	 * @param pieces the pieces in slot order
+	 * @param move the packed move
+	 * @return the slot of the piece making the move, or -1 if the piece is not in the game
+	 */
+	static int slotOf(Piece[] pieces, long move) {
+		int index = PackedMove.piece(move);
+		if (index >= ScotlandYard.ALL_PIECES.size()) return -1;
+		Piece piece = PackedMove.pieceAt(index);
+		for (int slot = 0; slot < pieces.length; slot++) if (pieces[slot] == piece) return slot;
+		return -1;
+	}
+
+	/**
+	 * Checks a packed move against the rules without generating moves; the caller must check
+	 * that the game is not over
+	 */
+	static boolean isLegal(GameSetup setup, TransportGraph graph, Piece[] pieces,
+	                       int[] locations, int[] tickets, long[] occupied,
+	                       int remaining, int round, long move) {
+		int slot = slotOf(pieces, move);
+		if (slot < 0 || (remaining & (1 << slot)) == 0) return false;
+		if (PackedMove.source(move) != locations[slot]) return false;
+		int base = slot * TICKETS;
+		int ticket1 = PackedMove.ticket1(move);
+		int destination1 = PackedMove.destination1(move);
+		if (!canTravel(graph, tickets, occupied, base, locations[slot], ticket1, destination1))
+			return false;
+		if (!PackedMove.isDouble(move)) return true;
+		if (tickets[base + DOUBLE] <= 0 || setup.moves.size() - round < 2) return false;
+		int ticket2 = PackedMove.ticket2(move);
+		if (ticket1 == ticket2 && tickets[base + ticket1] < 2) return false;
+		return canTravel(graph, tickets, occupied, base, destination1, ticket2,
+				PackedMove.destination2(move));
+	}
+
+	private static boolean canTravel(TransportGraph graph, int[] tickets, long[] occupied,
+	                                 int base, int source, int ticket, int destination) {
+		if (ticket >= TICKETS || ticket == DOUBLE || tickets[base + ticket] <= 0) return false;
+		if (destination >= graph.nodeBound() || NodeSet.contains(occupied, destination))
+			return false;
+		int edge = graph.edge(source, destination);
+		return edge >= 0 && ((graph.tickets(edge) | SECRET_BIT) & (1 << ticket)) != 0;
+	}
+
+	/**
+	 * @return the detective slots in candidates that have at least one move
+	 */
+	static int movableDetectives(TransportGraph graph, int slots, int candidates,
+	                             int[] locations, int[] tickets, long[] occupied) {
+		int movable = 0;
+		for (int slot = 1; slot < slots; slot++) {
+			if ((candidates & (1 << slot)) == 0) continue;
+			if (MoveGenerator.canMove(graph, locations[slot], tickets, slot * TICKETS, occupied))
+				movable |= 1 << slot;
+		}
+		return movable;
+	}
+
+	/**
+	 * @return one of the WINNER_ constants other than {@link #WINNER_UNKNOWN}
+	 */
+	static byte winner(GameSetup setup, TransportGraph graph, int slots,
+	                   int[] locations, int[] tickets, long[] occupied,
+	                   int remaining, int round) {
+		// a detective caught MrX
+		for (int slot = 1; slot < slots; slot++)
+			if (locations[slot] == locations[0]) return WINNER_DETECTIVES;
+		boolean mrXTurn = (remaining & MRX_SLOT_BIT) != 0;
+		// MrX has to move but can't, a double move always needs a single move first
+		if (mrXTurn && !MoveGenerator.canMove(graph, locations[0], tickets, 0, occupied))
+			return WINNER_DETECTIVES;
+		// every detective is stuck
+		if (movableDetectives(graph, slots, -1, locations, tickets, occupied) == 0)
+			return WINNER_MRX;
+		// MrX filled the travel log without being caught
+		if (mrXTurn && round == setup.moves.size()) return WINNER_MRX;
+		return WINNER_NONE;
+	}
+
+	/**
+	 * @return the packed travel log entry for MrX's journey in the given round
+	 */
+	static int logEntry(GameSetup setup, int ticket, int destination, int round) {
+		return setup.moves.get(round) ? (destination + 1) << TICKET_BITS | ticket : ticket;
+	}
+
+	/**
+	 * @return the packed travel log as {@link LogEntry}s
+	 */
+	static ImmutableList<LogEntry> travelLog(int[] log, int round) {
+		var builder = ImmutableList.<LogEntry>builderWithExpectedSize(round);
+		for (int i = 0; i < round; i++) {
+			Ticket ticket = ALL_TICKETS[log[i] & ((1 << TICKET_BITS) - 1)];
+			int location = log[i] >>> TICKET_BITS;
+			builder.add(location == 0 ?
+					LogEntry.hidden(ticket) :
+					LogEntry.reveal(ticket, location - 1));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return the {@link Zobrist} key of a position computed from scratch
+	 */
+	static long zobristKey(Piece[] pieces, int[] locations, int[] tickets, int remaining, int round) {
+		long key = Zobrist.round(round) ^ remainingKey(pieces, remaining);
+		for (int slot = 0; slot < pieces.length; slot++)
+			key ^= Zobrist.player(PackedMove.pieceIndex(pieces[slot]), locations[slot], tickets,
+					slot * TICKETS);
+		return key;
+	}
+
+	/**
+	 * @return the {@link Zobrist} key of the remaining slots
+	 */
+	static long remainingKey(Piece[] pieces, int remaining) {
+		long key = 0;
+		for (int slot = 0; slot < pieces.length; slot++)
+			if ((remaining & (1 << slot)) != 0)
+				key ^= Zobrist.remaining(PackedMove.pieceIndex(pieces[slot]));
+		return key;
+	}
+
+	/**
+	 * @param tickets the ticket counts before the move
+	 * @return the change of the {@link Zobrist} key caused by the locations and tickets of a
+	 * legal move; the remaining slots and the round are left to the caller
+	 */
+	static long moveKey(Piece[] pieces, int[] tickets, long move) {
+		int slot = slotOf(pieces, move);
+		int piece = PackedMove.pieceIndex(pieces[slot]);
+		int base = slot * TICKETS;
+		int ticket1 = PackedMove.ticket1(move);
+		long key = Zobrist.location(piece, PackedMove.source(move))
+				^ Zobrist.location(piece, PackedMove.destination(move));
+		if (slot != 0) {
+			// the ticket goes from the detective to MrX
+			return key ^ Zobrist.ticketsChanged(piece, ticket1, tickets[base + ticket1],
+					tickets[base + ticket1] - 1)
+					^ Zobrist.ticketsChanged(PackedMove.pieceIndex(pieces[0]), ticket1,
+					tickets[ticket1], tickets[ticket1] + 1);
+		}
+		if (!PackedMove.isDouble(move))
+			return key ^ Zobrist.ticketsChanged(piece, ticket1, tickets[ticket1], tickets[ticket1] - 1);
+		int ticket2 = PackedMove.ticket2(move);
+		key ^= Zobrist.ticketsChanged(piece, DOUBLE, tickets[DOUBLE], tickets[DOUBLE] - 1);
+		if (ticket1 == ticket2)
+			return key ^ Zobrist.ticketsChanged(piece, ticket1, tickets[ticket1], tickets[ticket1] - 2);
+		return key ^ Zobrist.ticketsChanged(piece, ticket1, tickets[ticket1], tickets[ticket1] - 1)
+				^ Zobrist.ticketsChanged(piece, ticket2, tickets[ticket2], tickets[ticket2] - 1);
+	}
+
+	/**
+	 * @return the winner as a set of pieces
+	 */
+	static ImmutableSet<Piece> winnerPieces(byte winner, Piece[] pieces) {
+		switch (winner) {
+			case WINNER_MRX:
+				return ImmutableSet.of(pieces[0]);
+			case WINNER_DETECTIVES:
+				return ImmutableSet.copyOf(Arrays.asList(pieces).subList(1, pieces.length));
+			default:
+				return ImmutableSet.of();
+		}
+	}
+
+	/**
+	 * A game state stored as primitives.
+	 * <br>
+	 * Besides the {@link GameState} methods this exposes allocation-free move generation
+	 * ({@link #availableMoves(MoveBuffer)}) and advancing by packed move
+	 * ({@link #advance(long)}) for search.
+	 */
+	public static final class BitboardGameState implements HashedGameState {
+
+		private final GameSetup setup;
+		private final TransportGraph graph;
+		// shared between all states of a game, never modified
+		private final Piece[] pieces;
+		// the arrays below are never modified once the state is constructed, so unchanged ones
+		// are shared with the previous state
+		private final int[] locations;
+		private final int[] tickets;
+		private final long[] occupied;
+		private final int[] log;
+		private final int remaining;
+		private final int round;
+		private final long zobristKey;
+
+		// lazily computed
+		private byte winner = WINNER_UNKNOWN;
+		private ImmutableSet<Move> moves;
+		private ImmutableList<LogEntry> travelLog;
+
+		BitboardGameState(GameSetup setup, TransportGraph graph, Piece[] pieces,
+		                  int[] locations, int[] tickets, long[] occupied,
+		                  int remaining, int round, int[] log, long zobristKey) {
+			this.setup = setup;
+			this.graph = graph;
+			this.pieces = pieces;
+			this.locations = locations;
+			this.tickets = tickets;
+			this.occupied = occupied;
+			this.remaining = remaining;
+			this.round = round;
+			this.log = log;
+			this.zobristKey = zobristKey;
+		}
+
+		@Nonnull @Override public GameSetup getSetup() { return setup; }
+
+		@Nonnull @Override public ImmutableSet<Piece> getPlayers() {
+			return ImmutableSet.copyOf(pieces);
+		}
+
+		@Nonnull @Override
+		public Optional<Integer> getDetectiveLocation(Piece.Detective detective) {
+			int slot = slotOf(detective);
+			return slot > 0 ? Optional.of(locations[slot]) : Optional.empty();
+		}
+
+		@Nonnull @Override public Optional<TicketBoard> getPlayerTickets(Piece piece) {
+			int slot = slotOf(piece);
+			if (slot < 0) return Optional.empty();
+			return Optional.of(ticket -> tickets[slot * TICKETS + ticket.ordinal()]);
+		}
+
+		@Nonnull @Override public ImmutableList<LogEntry> getMrXTravelLog() {
+			if (travelLog == null) travelLog = travelLog(log, round);
+			return travelLog;
+		}
+
+		@Nonnull @Override public ImmutableSet<Piece> getWinner() {
+			return winnerPieces(winner(), pieces);
+		}
+
+		@Nonnull @Override public ImmutableSet<Move> getAvailableMoves() {
+			if (moves == null) {
+				MoveBuffer buffer = new MoveBuffer();
+				availableMoves(buffer);
+				moves = buffer.toMoves();
+			}
+			return moves;
+		}
+
+		@Nonnull @Override public BitboardGameState advance(Move move) {
+			return advance(PackedMove.of(move));
+		}
+
+		@Override public long zobristKey() { return zobristKey; }
+
+		//-------------------- Primitive access --------------------//
+
+		/**
+		 * @return the number of player slots, MrX included
+		 */
+		public int slots() { return pieces.length; }
+
+		/**
+		 * @param slot the slot
+		 * @return the piece in the slot
+		 */
+		@Nonnull public Piece piece(int slot) { return pieces[slot]; }
+
+		/**
+		 * @param piece the piece
+		 * @return the slot of the given piece, or -1 if the piece is not in the game
+		 */
+		public int slotOf(Piece piece) {
+			for (int slot = 0; slot < pieces.length; slot++) if (pieces[slot] == piece) return slot;
+			return -1;
+		}
+
+		/**
+		 * @param slot the slot
+		 * @return the location of the player in the slot
+		 */
+		public int location(int slot) { return locations[slot]; }
+
+		/**
+		 * @return MrX's actual location, which is hidden from the {@link Board} interface
+		 */
+		public int mrXLocation() { return locations[0]; }
+
+		/**
+		 * @param slot the slot
+		 * @param ticket the ticket
+		 * @return the number of tickets held by the player in the slot
+		 */
+		public int tickets(int slot, Ticket ticket) {
+			return tickets[slot * TICKETS + ticket.ordinal()];
+		}
+
+		/**
+		 * @return bitmask of slots that can still move this round, bit 0 being MrX
+		 */
+		public int remaining() { return remaining; }
+
+		/**
+		 * @return the number of entries in MrX's travel log
+		 */
+		public int round() { return round; }
+
+		/**
+		 * @param node the node
+		 * @return whether a detective is at the node
+		 */
+		public boolean isOccupied(int node) { return NodeSet.contains(occupied, node); }
+
+		/**
+		 * @return whether the game is over, cheaper than {@link #getWinner()}
+		 */
+		public boolean isGameOver() { return winner() != WINNER_NONE; }
+
+		/**
+		 * Writes the available moves into the buffer as {@link PackedMove}s, nothing is written if
+		 * the game is over
+		 *
+		 * @param out the buffer to append moves to
+		 */
+		public void availableMoves(@Nonnull MoveBuffer out) {
+			if (isGameOver()) return;
+			int roundsLeft = setup.moves.size() - round;
+			for (int slot = 0; slot < pieces.length; slot++) {
+				if ((remaining & (1 << slot)) == 0) continue;
+				MoveGenerator.moves(graph, PackedMove.pieceIndex(pieces[slot]), locations[slot],
+						tickets, slot * TICKETS, occupied, roundsLeft, out);
+			}
+		}
+
+		/**
+		 * @param move the packed move
+		 * @return whether the move is one of the available moves, checked without generating
+		 * the moves
+		 */
+		public boolean isLegal(long move) {
+			return !isGameOver() && BitboardGameStateFactory.isLegal(setup, graph, pieces,
+					locations, tickets, occupied, remaining, round, move);
+		}
+
+		/**
+		 * Computes the next game state given a packed move
+		 *
+		 * @param move the packed move, see {@link PackedMove}
+		 * @return the game state of which the given move has been made
+		 * @throws IllegalArgumentException if the move is not an available move
+		 */
+		@Nonnull public BitboardGameState advance(long move) {
+			if (!isLegal(move))
+				throw new IllegalArgumentException("Illegal move: " + PackedMove.toString(move));
+			int slot = BitboardGameStateFactory.slotOf(pieces, move);
+			int base = slot * TICKETS;
+			int[] newLocations = locations.clone();
+			int[] newTickets = tickets.clone();
+			long newKey = zobristKey ^ moveKey(pieces, tickets, move) ^ remainingKey(pieces, remaining);
+			int destination = PackedMove.destination(move);
+			newLocations[slot] = destination;
+			newTickets[base + PackedMove.ticket1(move)]--;
+
+			if (slot == 0) {
+				int[] newLog = log.clone();
+				int newRound = round;
+				newLog[newRound] = logEntry(setup, PackedMove.ticket1(move),
+						PackedMove.destination1(move), newRound);
+				newRound++;
+				if (PackedMove.isDouble(move)) {
+					newTickets[PackedMove.ticket2(move)]--;
+					newTickets[DOUBLE]--;
+					newLog[newRound] = logEntry(setup, PackedMove.ticket2(move),
+							PackedMove.destination2(move), newRound);
+					newRound++;
+				}
+				// a new round begins, every detective that can move may move
+				int newRemaining = movableDetectives(graph, pieces.length, -1, newLocations,
+						newTickets, occupied);
+				if (newRemaining == 0) newRemaining = MRX_SLOT_BIT;
+				newKey ^= remainingKey(pieces, newRemaining) ^ Zobrist.round(round)
+						^ Zobrist.round(newRound);
+				return new BitboardGameState(setup, graph, pieces, newLocations, newTickets,
+						occupied, newRemaining, newRound, newLog, newKey);
+			}
+
+			// detectives give their used tickets to MrX
+			newTickets[PackedMove.ticket1(move)]++;
+			long[] newOccupied = occupied.clone();
+			NodeSet.remove(newOccupied, locations[slot]);
+			NodeSet.add(newOccupied, destination);
+			int newRemaining = movableDetectives(graph, pieces.length, remaining & ~(1 << slot),
+					newLocations, newTickets, newOccupied);
+			if (newRemaining == 0) newRemaining = MRX_SLOT_BIT;
+			newKey ^= remainingKey(pieces, newRemaining);
+			return new BitboardGameState(setup, graph, pieces, newLocations, newTickets,
+					newOccupied, newRemaining, round, log, newKey);
+		}
+
+		private byte winner() {
+			if (winner == WINNER_UNKNOWN)
+				winner = BitboardGameStateFactory.winner(setup, graph, pieces.length, locations,
+						tickets, occupied, remaining, round);
+			return winner;
+		}
+
+		@Override public String toString() {
+			StringBuilder builder = new StringBuilder("BitboardGameState{round=").append(round);
+			for (int slot = 0; slot < pieces.length; slot++) {
+				builder.append(", ").append(pieces[slot]).append('@').append(locations[slot]);
+				if ((remaining & (1 << slot)) != 0) builder.append('*');
+			}
+			return builder.append('}').toString();
+		}
+	}
+
+}
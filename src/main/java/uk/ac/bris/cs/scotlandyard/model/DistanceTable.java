@@ -0,0 +1,182 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+/**
+ * All-pairs shortest hop counts of a {@link TransportGraph}, one flat {@code short[]} matrix per
+ * subset of {@link Transport}s (bit {@code t.ordinal()} of the subset mask). The standard map
+ * needs 16 matrices of 200 x 200 entries, about 1.3MB.
+ * <br>
+ * {@link #distance(int, int, int[], int)} ignores how many tickets a player has, only which ones,
+ * so it is a lower bound on {@link #budgetedDistance(int, int, int[], int, int)}, which respects
+ * the counts. Use {@link GameSetup#distanceTable()} to obtain the (cached) instance for a setup.
+ */
+public final class DistanceTable {
+
+	/**
+	 * Distance between nodes that can't reach each other
+	 */
+	public static final int UNREACHABLE = Short.MAX_VALUE;
+
+	/**
+	 * Transport mask of every transport
+	 */
+	public static final int ALL_TRANSPORTS = (1 << Transport.values().length) - 1;
+
+	private static final int TAXI = Ticket.TAXI.ordinal();
+	private static final int BUS = Ticket.BUS.ordinal();
+	private static final int UNDERGROUND = Ticket.UNDERGROUND.ordinal();
+	private static final int SECRET = Ticket.SECRET.ordinal();
+	private static final int TICKETS = Ticket.values().length;
+
+	private final TransportGraph graph;
+	private final int bound;
+	// indexed by transport mask, then source * bound + destination
+	private final short[][] distances;
+
+	private DistanceTable(TransportGraph graph, short[][] distances) {
+		this.graph = graph;
+		this.bound = graph.nodeBound();
+		this.distances = distances;
+	}
+
+	/**
+	 * Runs a breadth first search from every node for every transport subset
+	 *
+	 * @param graph the graph
+	 * @return the distances of the graph
+	 */
+	@Nonnull public static DistanceTable compute(@Nonnull TransportGraph graph) {
+		int bound = graph.nodeBound();
+		short[][] distances = new short[ALL_TRANSPORTS + 1][];
+		int[] queue = new int[bound];
+		for (int transports = 0; transports <= ALL_TRANSPORTS; transports++) {
+			short[] matrix = new short[bound * bound];
+			Arrays.fill(matrix, (short) UNREACHABLE);
+			for (int source = 0; source < bound; source++) {
+				int row = source * bound;
+				matrix[row + source] = 0;
+				int head = 0, tail = 0;
+				queue[tail++] = source;
+				while (head < tail) {
+					int node = queue[head++];
+					short next = (short) (matrix[row + node] + 1);
+					for (int edge = graph.start(node); edge < graph.end(node); edge++) {
+						int neighbour = graph.neighbour(edge);
+						if ((graph.transports(edge) & transports) == 0
+								|| matrix[row + neighbour] != UNREACHABLE) continue;
+						matrix[row + neighbour] = next;
+						queue[tail++] = neighbour;
+					}
+				}
+			}
+			distances[transports] = matrix;
+		}
+		return new DistanceTable(graph, distances);
+	}
+
+	/**
+	 * @param tickets ticket counts indexed by {@link Ticket#ordinal()} from off
+	 * @param off the offset of the counts
+	 * @return the transports the tickets can pay for, at least one ticket of the kind being held;
+	 * a secret ticket pays for every transport
+	 */
+	public static int transportsFor(int[] tickets, int off) {
+		if (tickets[off + SECRET] > 0) return ALL_TRANSPORTS;
+		int transports = 0;
+		if (tickets[off + TAXI] > 0) transports |= 1 << Transport.TAXI.ordinal();
+		if (tickets[off + BUS] > 0) transports |= 1 << Transport.BUS.ordinal();
+		if (tickets[off + UNDERGROUND] > 0) transports |= 1 << Transport.UNDERGROUND.ordinal();
+		return transports;
+	}
+
+	/**
+	 * @return the graph the distances are of
+	 */
+	@Nonnull public TransportGraph graph() { return graph; }
+
+	/**
+	 * @param source the source node
+	 * @param destination the destination node
+	 * @return the fewest moves between the nodes using any transport, or {@link #UNREACHABLE}
+	 */
+	public int distance(int source, int destination) {
+		return distance(source, destination, ALL_TRANSPORTS);
+	}
+
+	/**
+	 * @param source the source node
+	 * @param destination the destination node
+	 * @param transports the transport mask
+	 * @return the fewest moves between the nodes using only the given transports, or
+	 * {@link #UNREACHABLE}
+	 */
+	public int distance(int source, int destination, int transports) {
+		return distances[transports & ALL_TRANSPORTS][source * bound + destination];
+	}
+
+	/**
+	 * @param source the source node
+	 * @param destination the destination node
+	 * @param tickets ticket counts indexed by {@link Ticket#ordinal()} from off
+	 * @param off the offset of the counts
+	 * @return the fewest moves between the nodes using transports the tickets pay for, ignoring
+	 * how many tickets there are, or {@link #UNREACHABLE}
+	 */
+	public int distance(int source, int destination, int[] tickets, int off) {
+		return distance(source, destination, transportsFor(tickets, off));
+	}
+
+	/**
+	 * @param transports the transport mask
+	 * @return the distance matrix of the transports, indexed by
+	 * {@code source * graph().nodeBound() + destination}; must not be modified
+	 */
+	@Nonnull public short[] matrix(int transports) { return distances[transports & ALL_TRANSPORTS]; }
+
+	/**
+	 * Finds the fewest moves between two nodes spending at most the given tickets (each move
+	 * takes one ticket, secret tickets pay for any transport), by iterative deepening pruned
+	 * with {@link #distance(int, int, int[], int)}.
+	 *
+	 * @param source the source node
+	 * @param destination the destination node
+	 * @param tickets ticket counts indexed by {@link Ticket#ordinal()} from off, not modified
+	 * @param off the offset of the counts
+	 * @param limit the largest distance worth searching for
+	 * @return the fewest moves, or {@link #UNREACHABLE} if it takes more than limit moves or the
+	 * tickets run out
+	 */
+	public int budgetedDistance(int source, int destination, int[] tickets, int off, int limit) {
+		int lower = distance(source, destination, tickets, off);
+		if (lower == UNREACHABLE || lower > limit) return UNREACHABLE;
+		int[] counts = Arrays.copyOfRange(tickets, off, off + TICKETS);
+		for (int depth = lower; depth <= limit; depth++)
+			if (reachable(source, destination, counts, depth)) return depth;
+		return UNREACHABLE;
+	}
+
+	private boolean reachable(int node, int destination, int[] counts, int moves) {
+		if (node == destination) return true;
+		if (moves == 0 || distance(node, destination, counts, 0) > moves) return false;
+		for (int edge = graph.start(node); edge < graph.end(node); edge++) {
+			int neighbour = graph.neighbour(edge);
+			int edgeTickets = graph.tickets(edge);
+			for (int ticket = 0; ticket < TICKETS; ticket++) {
+				boolean pays = ticket == SECRET || (edgeTickets & (1 << ticket)) != 0;
+				if (!pays || counts[ticket] == 0) continue;
+				counts[ticket]--;
+				boolean found = reachable(neighbour, destination, counts, moves - 1);
+				counts[ticket]++;
+				if (found) return true;
+			}
+		}
+		return false;
+	}
+
+}
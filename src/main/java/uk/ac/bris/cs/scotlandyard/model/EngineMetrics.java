@@ -0,0 +1,239 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * Counters and timers of the {@link MyGameStateFactory} hot paths, telling apart time spent in
+ * the engine from time spent in an {@link Ai}.
+ * <br>
+ * Off unless the JVM is started with {@code -Dscotlandyard.metrics=true}. Every call site is
+ * guarded by {@link #ENABLED}, a static final the JIT folds, so when off the instrumentation is
+ * compiled out of the hot path entirely. When on, the metrics are registered with the platform
+ * MBean server as {@link #OBJECT_NAME} and can be read with {@link #snapshot()}. Recording is
+ * thread safe and uncontended across threads.
+ */
+public final class EngineMetrics {
+
+	private EngineMetrics() {}
+
+	/**
+	 * Whether the engine records metrics, fixed at startup
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("scotlandyard.metrics");
+
+	public static final String OBJECT_NAME = "uk.ac.bris.cs.scotlandyard:type=EngineMetrics";
+
+	/**
+	 * The metrics as seen over JMX
+	 */
+	public interface EngineMetricsMXBean {
+		long getStatesConstructed();
+
+		long getSingleMoves();
+
+		long getDoubleMoves();
+
+		long getSecretMoves();
+
+		long getAdvanceCount();
+
+		long getAdvanceMeanNanos();
+
+		long getAdvanceP50Nanos();
+
+		long getAdvanceP99Nanos();
+
+		long getAdvanceMaxNanos();
+
+		long getWinnerChecks();
+
+		long getWinnerCheckMeanNanos();
+
+		void reset();
+	}
+
+	/**
+	 * A concurrent histogram of durations, precise to within a quarter of the value
+	 */
+	static final class Histogram {
+		private static final int SUB_BITS = 2;
+		private static final int SUB_BUCKETS = 1 << SUB_BITS;
+		private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+		private final LongAdder[] buckets = new LongAdder[BUCKETS];
+		private final LongAdder count = new LongAdder();
+		private final LongAdder total = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		Histogram() {
+			for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+		}
+
+		static int bucket(long nanos) {
+			if (nanos < SUB_BUCKETS) return (int) nanos;
+			int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+			int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+			return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+		}
+
+		static long upperBound(int bucket) {
+			if (bucket < SUB_BUCKETS) return bucket;
+			int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+			long sub = bucket % SUB_BUCKETS;
+			return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+		}
+
+		void record(long nanos) {
+			nanos = Math.max(0, nanos);
+			buckets[bucket(nanos)].increment();
+			count.increment();
+			total.add(nanos);
+			max.accumulate(nanos);
+		}
+
+		long count() { return count.sum(); }
+
+		long max() { return max.get(); }
+
+		long mean() {
+			long n = count.sum();
+			return n == 0 ? 0 : total.sum() / n;
+		}
+
+		// an upper bound of the quantile, the buckets are read one by one so this is approximate
+		// while other threads record
+		long quantile(double quantile) {
+			long[] counts = new long[BUCKETS];
+			long n = 0;
+			for (int i = 0; i < BUCKETS; i++) n += counts[i] = buckets[i].sum();
+			if (n == 0) return 0;
+			long rank = Math.max(1, (long) Math.ceil(quantile * n));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += counts[i];
+				if (seen >= rank) return upperBound(i);
+			}
+			return upperBound(BUCKETS - 1);
+		}
+
+		void reset() {
+			for (LongAdder bucket : buckets) bucket.reset();
+			count.reset();
+			total.reset();
+			max.reset();
+		}
+	}
+
+	private static final LongAdder STATES = new LongAdder();
+	private static final LongAdder SINGLE_MOVES = new LongAdder();
+	private static final LongAdder DOUBLE_MOVES = new LongAdder();
+	private static final LongAdder SECRET_MOVES = new LongAdder();
+	private static final Histogram ADVANCE = new Histogram();
+	private static final Histogram WINNER = new Histogram();
+
+	private static final EngineMetricsMXBean BEAN = new EngineMetricsMXBean() {
+		@Override public long getStatesConstructed() { return STATES.sum(); }
+
+		@Override public long getSingleMoves() { return SINGLE_MOVES.sum(); }
+
+		@Override public long getDoubleMoves() { return DOUBLE_MOVES.sum(); }
+
+		@Override public long getSecretMoves() { return SECRET_MOVES.sum(); }
+
+		@Override public long getAdvanceCount() { return ADVANCE.count(); }
+
+		@Override public long getAdvanceMeanNanos() { return ADVANCE.mean(); }
+
+		@Override public long getAdvanceP50Nanos() { return ADVANCE.quantile(0.5); }
+
+		@Override public long getAdvanceP99Nanos() { return ADVANCE.quantile(0.99); }
+
+		@Override public long getAdvanceMaxNanos() { return ADVANCE.max(); }
+
+		@Override public long getWinnerChecks() { return WINNER.count(); }
+
+		@Override public long getWinnerCheckMeanNanos() { return WINNER.mean(); }
+
+		@Override public void reset() { EngineMetrics.reset(); }
+	};
+
+	static {
+		if (ENABLED) {
+			try {
+				ManagementFactory.getPlatformMBeanServer()
+						.registerMBean(BEAN, new ObjectName(OBJECT_NAME));
+			} catch (JMException e) {
+				throw new IllegalStateException("Unable to register " + OBJECT_NAME, e);
+			}
+		}
+	}
+
+	static void stateConstructed() { STATES.increment(); }
+
+	/**
+	 * @param moves the packed moves generated for a state
+	 */
+	static void movesGenerated(MoveBuffer moves) {
+		int singles = 0, doubles = 0, secrets = 0;
+		for (int i = 0; i < moves.size(); i++) {
+			long move = moves.get(i);
+			if (PackedMove.isDouble(move)) {
+				doubles++;
+				if (PackedMove.ticket2(move) == Ticket.SECRET.ordinal()) secrets++;
+			} else singles++;
+			if (PackedMove.ticket1(move) == Ticket.SECRET.ordinal()) secrets++;
+		}
+		SINGLE_MOVES.add(singles);
+		DOUBLE_MOVES.add(doubles);
+		SECRET_MOVES.add(secrets);
+	}
+
+	static void advanced(long nanos) { ADVANCE.record(nanos); }
+
+	static void winnerChecked(long nanos) { WINNER.record(nanos); }
+
+	/**
+	 * @return the metrics as seen over JMX
+	 */
+	@Nonnull public static EngineMetricsMXBean bean() { return BEAN; }
+
+	/**
+	 * @return every metric by name; secret moves count the SECRET tickets used, so a double move
+	 * can count twice
+	 */
+	@Nonnull public static ImmutableMap<String, Long> snapshot() {
+		return ImmutableMap.<String, Long>builder()
+				.put("statesConstructed", BEAN.getStatesConstructed())
+				.put("singleMoves", BEAN.getSingleMoves())
+				.put("doubleMoves", BEAN.getDoubleMoves())
+				.put("secretMoves", BEAN.getSecretMoves())
+				.put("advanceCount", BEAN.getAdvanceCount())
+				.put("advanceMeanNanos", BEAN.getAdvanceMeanNanos())
+				.put("advanceP50Nanos", BEAN.getAdvanceP50Nanos())
+				.put("advanceP99Nanos", BEAN.getAdvanceP99Nanos())
+				.put("advanceMaxNanos", BEAN.getAdvanceMaxNanos())
+				.put("winnerChecks", BEAN.getWinnerChecks())
+				.put("winnerCheckMeanNanos", BEAN.getWinnerCheckMeanNanos())
+				.build();
+	}
+
+	public static void reset() {
+		STATES.reset();
+		SINGLE_MOVES.reset();
+		DOUBLE_MOVES.reset();
+		SECRET_MOVES.reset();
+		ADVANCE.reset();
+		WINNER.reset();
+	}
+
+}
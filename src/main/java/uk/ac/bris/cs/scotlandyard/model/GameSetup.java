@@ -25,11 +25,31 @@ public final class GameSetup implements Serializable {
 	 * MrX reveal moves; false is hidden, true is reveal
 	 */
 	public final ImmutableList<Boolean> moves;
+	private transient volatile TransportGraph transportGraph;
+	private transient volatile DistanceTable distanceTable;
 	public GameSetup(@Nonnull ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph,
 	                 @Nonnull ImmutableList<Boolean> moves) {
 		this.graph = Objects.requireNonNull(graph);
 		this.moves = Objects.requireNonNull(moves);
 	}
+	/**
+	 * @return the {@link #graph} compiled into a {@link TransportGraph}; compiled once on first
+	 * use and cached thereafter
+	 */
+	@Nonnull public TransportGraph transportGraph() {
+		TransportGraph compiled = transportGraph;
+		if (compiled == null) transportGraph = compiled = TransportGraph.compile(graph);
+		return compiled;
+	}
+	/**
+	 * @return the {@link DistanceTable} of the {@link #transportGraph()}; computed once on first
+	 * use and cached thereafter
+	 */
+	@Nonnull public DistanceTable distanceTable() {
+		DistanceTable computed = distanceTable;
+		if (computed == null) distanceTable = computed = DistanceTable.compute(transportGraph());
+		return computed;
+	}
 	@Override public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
@@ -0,0 +1,22 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+
+/**
+ * A {@link GameState} with a cheap 64-bit identity, see {@link Zobrist}
+ */
+public interface HashedGameState extends GameState {
+
+	/**
+	 * Positions with the same pieces, locations, tickets, remaining pieces and round have the
+	 * same key. The key is maintained by {@link #advance(Move)}, so reading it is free.
+	 *
+	 * @return the Zobrist key of this state
+	 */
+	long zobristKey();
+
+	@Nonnull @Override HashedGameState advance(Move move);
+
+}
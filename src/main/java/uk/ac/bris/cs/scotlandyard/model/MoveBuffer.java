@@ -0,0 +1,99 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A reusable, growable buffer of {@link PackedMove}s. Call {@link #clear()} between uses; the
+ * backing array is kept so steady-state generation does not allocate.
+ * <br>
+ * Not thread safe; give each search thread its own buffer.
+ */
+public final class MoveBuffer {
+
+	private long[] moves;
+	private int size;
+
+	public MoveBuffer() { this(256); }
+
+	/**
+	 * @param capacity the initial capacity
+	 */
+	public MoveBuffer(int capacity) { this.moves = new long[Math.max(capacity, 1)]; }
+
+	/**
+	 * @param move the packed move to append
+	 */
+	public void add(long move) {
+		if (size == moves.length) moves = Arrays.copyOf(moves, size * 2);
+		moves[size++] = move;
+	}
+
+	/**
+	 * @param index the index, must be in {@code [0, size())}
+	 * @return the packed move at the given index
+	 */
+	public long get(int index) {
+		if (index >= size) throw new IndexOutOfBoundsException(index);
+		return moves[index];
+	}
+
+	/**
+	 * Replaces the move at the given index, useful for in-place move ordering
+	 *
+	 * @param index the index, must be in {@code [0, size())}
+	 * @param move the packed move
+	 */
+	public void set(int index, long move) {
+		if (index >= size) throw new IndexOutOfBoundsException(index);
+		moves[index] = move;
+	}
+
+	/**
+	 * @param move the packed move
+	 * @return whether the buffer contains the move
+	 */
+	public boolean contains(long move) {
+		for (int i = 0; i < size; i++) if (moves[i] == move) return true;
+		return false;
+	}
+
+	public int size() { return size; }
+
+	public boolean isEmpty() { return size == 0; }
+
+	/**
+	 * Empties the buffer without releasing its storage
+	 */
+	public void clear() { size = 0; }
+
+	/**
+	 * Truncates the buffer to the given size, used to drop moves appended by a nested call
+	 *
+	 * @param newSize the new size, must not be larger than {@link #size()}
+	 */
+	public void truncate(int newSize) {
+		if (newSize < 0 || newSize > size) throw new IndexOutOfBoundsException(newSize);
+		size = newSize;
+	}
+
+	/**
+	 * @return a copy of the packed moves
+	 */
+	@Nonnull public long[] toArray() { return Arrays.copyOf(moves, size); }
+
+	/**
+	 * Materialises every move in the buffer
+	 *
+	 * @return the moves as {@link Move} instances
+	 */
+	@Nonnull public ImmutableSet<Move> toMoves() {
+		var builder = ImmutableSet.<Move>builderWithExpectedSize(size);
+		for (int i = 0; i < size; i++) builder.add(PackedMove.toMove(moves[i]));
+		return builder.build();
+	}
+
+}
@@ -0,0 +1,158 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * Allocation-free move generation over a {@link TransportGraph}. Moves are written as
+ * {@link PackedMove}s into a caller supplied {@link MoveBuffer}; use
+ * {@link MoveBuffer#toMoves()} or {@link PackedMove#toMove(long)} to materialise them only when
+ * needed.
+ * <br>
+ * Tickets are passed as an {@code int[]} of counts indexed by {@link Ticket#ordinal()} starting
+ * at {@code ticketOffset}, so that flat per-player arrays can be used directly. Occupied nodes
+ * (detective locations) are passed as a {@link NodeSet}.
+ */
+public final class MoveGenerator {
+
+	private MoveGenerator() {}
+
+	private static final int TAXI = Ticket.TAXI.ordinal();
+	private static final int BUS = Ticket.BUS.ordinal();
+	private static final int UNDERGROUND = Ticket.UNDERGROUND.ordinal();
+	private static final int DOUBLE = Ticket.DOUBLE.ordinal();
+	private static final int SECRET = Ticket.SECRET.ordinal();
+	private static final int SECRET_BIT = 1 << SECRET;
+
+	/**
+	 * @param tickets ticket counts
+	 * @param ticketOffset index of the player's {@link Ticket#TAXI} count
+	 * @return bitmask of the tickets usable for a single journey that the player has
+	 */
+	public static int usableTickets(int[] tickets, int ticketOffset) {
+		int usable = 0;
+		if (tickets[ticketOffset + TAXI] > 0) usable |= 1 << TAXI;
+		if (tickets[ticketOffset + BUS] > 0) usable |= 1 << BUS;
+		if (tickets[ticketOffset + UNDERGROUND] > 0) usable |= 1 << UNDERGROUND;
+		if (tickets[ticketOffset + SECRET] > 0) usable |= SECRET_BIT;
+		return usable;
+	}
+
+	/**
+	 * Writes all single moves of a player into the buffer
+	 *
+	 * @param graph the compiled graph
+	 * @param piece the piece index, see {@link PackedMove#pieceIndex(Piece)}
+	 * @param source the location of the player
+	 * @param tickets ticket counts
+	 * @param ticketOffset index of the player's {@link Ticket#TAXI} count
+	 * @param occupied nodes that cannot be moved to
+	 * @param out the buffer to append moves to
+	 */
+	public static void singleMoves(@Nonnull TransportGraph graph, int piece, int source,
+	                               @Nonnull int[] tickets, int ticketOffset,
+	                               @Nonnull long[] occupied, @Nonnull MoveBuffer out) {
+		int usable = usableTickets(tickets, ticketOffset);
+		if (usable == 0) return;
+		for (int edge = graph.start(source), end = graph.end(source); edge < end; edge++) {
+			int destination = graph.neighbour(edge);
+			if (NodeSet.contains(occupied, destination)) continue;
+			int mask = (graph.tickets(edge) | SECRET_BIT) & usable;
+			while (mask != 0) {
+				int ticket = Integer.numberOfTrailingZeros(mask);
+				mask &= mask - 1;
+				out.add(PackedMove.single(piece, source, ticket, destination));
+			}
+		}
+	}
+
+	/**
+	 * Writes all double moves of a player into the buffer. The caller is responsible for checking
+	 * that there are at least two rounds left in the travel log.
+	 *
+	 * @param graph the compiled graph
+	 * @param piece the piece index, see {@link PackedMove#pieceIndex(Piece)}
+	 * @param source the location of the player
+	 * @param tickets ticket counts
+	 * @param ticketOffset index of the player's {@link Ticket#TAXI} count
+	 * @param occupied nodes that cannot be moved to, for either of the two journeys
+	 * @param out the buffer to append moves to
+	 */
+	public static void doubleMoves(@Nonnull TransportGraph graph, int piece, int source,
+	                               @Nonnull int[] tickets, int ticketOffset,
+	                               @Nonnull long[] occupied, @Nonnull MoveBuffer out) {
+		if (tickets[ticketOffset + DOUBLE] <= 0) return;
+		int usable = usableTickets(tickets, ticketOffset);
+		if (usable == 0) return;
+		for (int edge1 = graph.start(source), end1 = graph.end(source); edge1 < end1; edge1++) {
+			int destination1 = graph.neighbour(edge1);
+			if (NodeSet.contains(occupied, destination1)) continue;
+			int mask1 = (graph.tickets(edge1) | SECRET_BIT) & usable;
+			while (mask1 != 0) {
+				int ticket1 = Integer.numberOfTrailingZeros(mask1);
+				mask1 &= mask1 - 1;
+				// the same ticket can only be used twice if there are two of them
+				int usable2 = tickets[ticketOffset + ticket1] > 1 ? usable : usable & ~(1 << ticket1);
+				if (usable2 == 0) continue;
+				for (int edge2 = graph.start(destination1), end2 = graph.end(destination1);
+				     edge2 < end2; edge2++) {
+					int destination2 = graph.neighbour(edge2);
+					if (NodeSet.contains(occupied, destination2)) continue;
+					int mask2 = (graph.tickets(edge2) | SECRET_BIT) & usable2;
+					while (mask2 != 0) {
+						int ticket2 = Integer.numberOfTrailingZeros(mask2);
+						mask2 &= mask2 - 1;
+						out.add(PackedMove.doubleMove(piece, source,
+								ticket1, destination1, ticket2, destination2));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes all single moves and, if allowed, double moves of a player into the buffer
+	 *
+	 * @param graph the compiled graph
+	 * @param piece the piece index, see {@link PackedMove#pieceIndex(Piece)}
+	 * @param source the location of the player
+	 * @param tickets ticket counts
+	 * @param ticketOffset index of the player's {@link Ticket#TAXI} count
+	 * @param occupied nodes that cannot be moved to
+	 * @param roundsLeft the number of empty slots left in MrX's travel log
+	 * @param out the buffer to append moves to
+	 */
+	public static void moves(@Nonnull TransportGraph graph, int piece, int source,
+	                         @Nonnull int[] tickets, int ticketOffset,
+	                         @Nonnull long[] occupied, int roundsLeft,
+	                         @Nonnull MoveBuffer out) {
+		singleMoves(graph, piece, source, tickets, ticketOffset, occupied, out);
+		if (roundsLeft >= 2)
+			doubleMoves(graph, piece, source, tickets, ticketOffset, occupied, out);
+	}
+
+	/**
+	 * Checks whether a player has at least one single move without generating any.
+	 * A player without single moves never has double moves either.
+	 *
+	 * @param graph the compiled graph
+	 * @param source the location of the player
+	 * @param tickets ticket counts
+	 * @param ticketOffset index of the player's {@link Ticket#TAXI} count
+	 * @param occupied nodes that cannot be moved to
+	 * @return whether the player can move
+	 */
+	public static boolean canMove(@Nonnull TransportGraph graph, int source,
+	                              @Nonnull int[] tickets, int ticketOffset,
+	                              @Nonnull long[] occupied) {
+		int usable = usableTickets(tickets, ticketOffset);
+		if (usable == 0) return false;
+		for (int edge = graph.start(source), end = graph.end(source); edge < end; edge++) {
+			if (NodeSet.contains(occupied, graph.neighbour(edge))) continue;
+			if (((graph.tickets(edge) | SECRET_BIT) & usable) != 0) return true;
+		}
+		return false;
+	}
+
+}
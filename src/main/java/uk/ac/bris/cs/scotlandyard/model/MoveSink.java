@@ -0,0 +1,26 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives the improving candidate moves of an {@link AnytimeAi} while it searches
+ */
+public interface MoveSink {
+
+	/**
+	 * Ignores every move and is never cancelled
+	 */
+	MoveSink NONE = move -> {};
+
+	/**
+	 * @param move the best move found so far, replacing any published before; called from
+	 *             any thread of the Ai
+	 */
+	void publish(@Nonnull Move move);
+
+	/**
+	 * @return whether the latest published move has been taken and the Ai should stop searching
+	 */
+	default boolean cancelled() { return false; }
+
+}
@@ -29,11 +29,19 @@ public final class MyGameStateFactory implements Factory<GameState> {
      */
     @Nonnull
     @Override
-    public GameState build(GameSetup setup, Player mrX, ImmutableList<Player> detectives) {
-        return new MyGameState(setup, ImmutableSet.of(Piece.MrX.MRX), ImmutableList.of(), mrX, detectives);
+    public HashedGameState build(GameSetup setup, Player mrX, ImmutableList<Player> detectives) {
+        ImmutableSet<Piece> remaining = ImmutableSet.of(Piece.MrX.MRX);
+        // the key of the first state is computed from scratch, advance updates it after that
+        long zobristKey = playerKey(mrX) ^ remainingKey(remaining) ^ Zobrist.round(0);
+        for (Player d : detectives) zobristKey ^= playerKey(d);
+        return new MyGameState(setup, remaining, ImmutableList.of(), mrX, detectives,
+                null, UNKNOWN_STUCK, zobristKey);
     }
 
-    private final class MyGameState implements GameState {
+    // Marks the stuck detectives as not computed yet
+    private static final int UNKNOWN_STUCK = -1;
+
+    private final class MyGameState implements HashedGameState {
 
         // The game setup
         private GameSetup setup;
@@ -50,13 +58,27 @@ public final class MyGameStateFactory implements Factory<GameState> {
         // List containing all the detectives
         private List<Player> detectives;
 
-        // Set containing all the moves (singles and doubles)
+        // Set containing all the moves (singles and doubles), computed on first access
         private ImmutableSet<Move> moves;
 
+        // The moves of the remaining players packed, computed on first access and shared by
+        // getAvailableMoves, getWinner and advance; never modified once published so a state
+        // shared between threads stays safe to read
+        private volatile long[] candidates;
+
+        // The locations of the detectives as a NodeSet
+        private long[] occupied;
+
+        // Bit i is set if detectives.get(i) has no single moves
+        private int stuck;
+
+        // The Zobrist key of this state
+        private long zobristKey;
+
         // All the player involved in the game
         private ImmutableList<Player> everyone;
 
-        // The winner of the game
+        // The winner of the game, computed on first access
         private ImmutableSet<Piece> winner;
 
 
@@ -68,6 +90,9 @@ public final class MyGameStateFactory implements Factory<GameState> {
          * @param log MrX's travel log
          * @param mrX MrX player
          * @param detectives detective players
+         * @param occupied the locations of the detectives, or null to compute them
+         * @param stuck the stuck detectives, or {@link #UNKNOWN_STUCK} to compute them
+         * @param zobristKey the Zobrist key of the state
          * @throws IllegalArgumentException if any of the arguments is not valid
          */
         private MyGameState(
@@ -75,7 +100,10 @@ public final class MyGameStateFactory implements Factory<GameState> {
                 final ImmutableSet<Piece> remaining, // all the pieces that haven't moved yet
                 final ImmutableList<LogEntry> log,
                 final Player mrX,
-                final List<Player> detectives) {
+                final List<Player> detectives,
+                final long[] occupied,
+                final int stuck,
+                final long zobristKey) {
 
 
             // CHECKS
@@ -120,8 +148,13 @@ public final class MyGameStateFactory implements Factory<GameState> {
             this.mrX = mrX;
             this.detectives = detectives;
             this.everyone = ImmutableList.copyOf(everyone);
-            this.winner = getWinner();
-            this.moves = getAvailableMoves();
+            // advance hands over the occupancy and the stuck detectives, only the first state computes them
+            this.occupied = occupied != null ? occupied : occupancy(setup, detectives);
+            this.stuck = stuck != UNKNOWN_STUCK ? stuck : stuckDetectives(setup, detectives, this.occupied);
+            this.zobristKey = zobristKey;
+            // the winner and the moves are computed lazily, most states in a playout never
+            // need the full move set
+            if (EngineMetrics.ENABLED) EngineMetrics.stateConstructed();
 
 
         }
@@ -205,39 +238,17 @@ public final class MyGameStateFactory implements Factory<GameState> {
         @Nonnull
         @Override
         public ImmutableSet<Piece> getWinner() {
-            List<Piece> detectivePiecesList = new ArrayList<>();
-            List<Integer> detectivesLocation = new ArrayList<>();
-
-            for (Player d : detectives) {
-                detectivePiecesList.add(d.piece());
-                detectivesLocation.add(d.location());
-            }
-
-            for (Player d : detectives) {
-                // Mrx lost
-                if (d.location() == this.mrX.location()) {
-                    return ImmutableSet.copyOf(detectivePiecesList);
+            if (winner == null) {
+                // only time the check when the engine metrics are on, see EngineMetrics
+                if (EngineMetrics.ENABLED) {
+                    long start = System.nanoTime();
+                    winner = computeWinner();
+                    EngineMetrics.winnerChecked(System.nanoTime() - start);
+                } else {
+                    winner = computeWinner();
                 }
             }
-
-            // if its mrX turn to move and there are no available moves then game over, and he loses
-            if ((makeSingleMoves(setup, detectives, mrX, mrX.location()).isEmpty()
-                    && makeDoubleMoves(setup, detectives, mrX, mrX.location(), log).isEmpty()
-                    && remaining.contains(mrX.piece()))) {
-                return ImmutableSet.copyOf(detectivePiecesList);
-            }
-
-            // No detective has more moves so mrx win
-            if (noDetectivesHasMoves(detectives)) return ImmutableSet.of(mrX.piece());
-
-
-            // mrx manage to fill the log and no detectives could catch him, so mrx win
-            if (setup.moves.size() == getMrXTravelLog().size()
-                    && remaining.contains(mrX.piece())) {
-                return ImmutableSet.of(mrX.piece());
-            }
-
-            return ImmutableSet.of();
+            return winner;
         }
 
         /**
@@ -246,26 +257,19 @@ public final class MyGameStateFactory implements Factory<GameState> {
         @Nonnull
         @Override
         public ImmutableSet<Move> getAvailableMoves() {
-
-            // if there is a winner
-            if (!getWinner().isEmpty()) {
-                return ImmutableSet.of();
-            }
-
-            HashSet<SingleMove> singleMoves = new HashSet<>();
-            HashSet<DoubleMove> doubleMoves = new HashSet<>();
-            HashSet<Move> moves = new HashSet<>();
-
-            for (Player player : everyone) {
-                if (remaining.contains(player.piece())) {
-                    singleMoves.addAll(makeSingleMoves(setup, detectives, player, player.location()));
-                    doubleMoves.addAll(makeDoubleMoves(setup, detectives, player, player.location(), log));
-                }
+            if (moves == null) {
+                // if there is a winner there are no moves
+                moves = getWinner().isEmpty() ? toMoves(candidateMoves()) : ImmutableSet.of();
             }
+            return moves;
+        }
 
-            moves.addAll(singleMoves);
-            moves.addAll(doubleMoves);
-            return ImmutableSet.copyOf(moves);
+        /**
+         * @return the Zobrist key of this state
+         */
+        @Override
+        public long zobristKey() {
+            return zobristKey;
         }
 
         /**
@@ -277,12 +281,23 @@ public final class MyGameStateFactory implements Factory<GameState> {
          */
         @Nonnull
         @Override
-        public GameState advance(Move move) {
-            if (!moves.contains(move)) throw new IllegalArgumentException("Illegal move: " + move);
+        public HashedGameState advance(Move move) {
+            // only time the advance when the engine metrics are on, see EngineMetrics
+            if (!EngineMetrics.ENABLED) return advanceState(move);
+            long start = System.nanoTime();
+            HashedGameState next = advanceState(move);
+            EngineMetrics.advanced(System.nanoTime() - start);
+            return next;
+        }
+
+        /**
+         * The work of {@link #advance(Move)}
+         */
+        private HashedGameState advanceState(Move move) {
+            if (!isAvailable(move)) throw new IllegalArgumentException("Illegal move: " + move);
 
             List<LogEntry> newLog = new ArrayList<>(log);
             List<Player> newDetectives = new ArrayList<>();
-            List<Piece> oldRemaining = new ArrayList<>(remaining);
             List<Piece> newRemaining = new ArrayList<>();
             Player newMrx;
 
@@ -299,10 +314,7 @@ public final class MyGameStateFactory implements Factory<GameState> {
                     // taking the tickets and move the player to the destination
                     Player newPlayer = player.use(move.ticket).at(move.destination);
 
-                    if (!player.isMrX()) {
-                        // updating mrX with new tickets
-                        mrX = mrX.give(move.ticket); // give the ticket to mrx from detectives
-                    } else {
+                    if (player.isMrX()) {
                         // check if in this round mrx has to reveal his moves
                         if (setup.moves.get(log.size())) {
                             newLog.add(LogEntry.reveal(move.ticket, move.destination));
@@ -348,6 +360,31 @@ public final class MyGameStateFactory implements Factory<GameState> {
             // mrx exam
             Player newPlayer = move.accept(v);
 
+            if (newPlayer.isMrX()) {
+                // detectives don't block each other any differently, so the occupancy and the
+                // stuck detectives stay the same and every detective that can move is remaining
+                for (int i = 0; i < detectives.size(); i++) {
+                    if ((stuck & 1 << i) == 0) newRemaining.add(detectives.get(i).piece());
+                }
+                if (newRemaining.isEmpty()) newRemaining.add(newPlayer.piece());
+
+                ImmutableSet<Piece> nextRemaining = ImmutableSet.copyOf(newRemaining);
+                return new MyGameState(
+                        setup,
+                        nextRemaining,
+                        ImmutableList.copyOf(newLog),
+                        newPlayer,
+                        detectives,
+                        occupied,
+                        stuck,
+                        zobristKey ^ playerKey(mrX) ^ playerKey(newPlayer)
+                                ^ remainingKey(remaining) ^ remainingKey(nextRemaining)
+                                ^ Zobrist.round(log.size()) ^ Zobrist.round(newLog.size())
+                );
+            }
+
+            // detectives only make single moves, their ticket goes to mrX
+            newMrx = mrX.give(move.tickets());
 
             // only update newDetectives if newPlayer is a detective
             for (Player p : detectives) {
@@ -358,58 +395,52 @@ public final class MyGameStateFactory implements Factory<GameState> {
                 }
             }
 
-            // exclude the piece moved for remaining
-            for (Piece p : remaining) {
-                if (p != newPlayer.piece()) {
-                    newRemaining.add(p);
-                }
-            }
-
-
-            // check if the newPlayer is mrx
-            if (newPlayer.isMrX()) {
-                newMrx = newPlayer;
-            } else {
-                newMrx = mrX;
-            }
-
-
-            // beginning of each round, only mrX is in remaining set
-            if (move.commencedBy().isMrX()) {
-                for (Player p : detectives) {
-                    newRemaining.add(p.piece());
-                }
-            } else {
-                for (Piece p : remaining) {
-                    if (p != move.commencedBy()) newRemaining.add(p);
+            // move the detective in the occupancy
+            TransportGraph graph = setup.transportGraph();
+            int source = move.source();
+            int destination = newPlayer.location();
+            long[] newOccupied = occupied.clone();
+            NodeSet.remove(newOccupied, source);
+            NodeSet.add(newOccupied, destination);
+
+            // only the detective that moved and the ones next to the nodes it left or entered
+            // can have a different number of moves
+            int newStuck = stuck;
+            for (int i = 0; i < newDetectives.size(); i++) {
+                Player p = newDetectives.get(i);
+                if (p == newPlayer
+                        || graph.edge(p.location(), source) >= 0
+                        || graph.edge(p.location(), destination) >= 0) {
+                    if (MoveGenerator.canMove(graph, p.location(), p.ticketCounts(), 0, newOccupied)) {
+                        newStuck &= ~(1 << i);
+                    } else {
+                        newStuck |= 1 << i;
+                    }
                 }
             }
 
-            for(Piece p : remaining) {
-                Player player = playerFromPiece(p);
-                if(p.isMrX()) {
-                    /* The game is not over if MrX is cornered, but he can still escape
-                       can scape using a double move, or secret */
-                    if(makeSingleMoves(setup, newDetectives, player, player.location()).isEmpty()
-                            && !makeDoubleMoves(setup, newDetectives, newMrx, newMrx.location(), ImmutableList.copyOf(newLog)).isEmpty() ) {
-                        newRemaining.add(newMrx.piece());
-                    }
-                } else {
-                    // check if a detective still has moves
-                    if(makeSingleMoves(setup, newDetectives, player, player.location()).isEmpty()) {
-                        newRemaining.add(newMrx.piece());
-                    }
+            // the rest of the detectives that can still move are remaining, otherwise it's mrX turn
+            for (int i = 0; i < newDetectives.size(); i++) {
+                Piece p = newDetectives.get(i).piece();
+                if (p != newPlayer.piece() && remaining.contains(p) && (newStuck & 1 << i) == 0) {
+                    newRemaining.add(p);
                 }
             }
-
             if (newRemaining.isEmpty()) newRemaining.add(newMrx.piece());
 
+            // only the detective, mrX's tickets and the remaining players changed
+            ImmutableSet<Piece> nextRemaining = ImmutableSet.copyOf(newRemaining);
             return new MyGameState(
                     setup,
-                    ImmutableSet.copyOf(newRemaining),
+                    nextRemaining,
                     ImmutableList.copyOf(newLog),
                     newMrx,
-                    newDetectives
+                    newDetectives,
+                    newOccupied,
+                    newStuck,
+                    zobristKey ^ playerKey(playerFromPiece(newPlayer.piece())) ^ playerKey(newPlayer)
+                            ^ playerKey(mrX) ^ playerKey(newMrx)
+                            ^ remainingKey(remaining) ^ remainingKey(nextRemaining)
             );
         }
 
@@ -417,17 +448,100 @@ public final class MyGameStateFactory implements Factory<GameState> {
         //-------------------- Auxiliary Functions --------------------//
 
         /**
-         * Function to check if the detective have moves left or no
+         * @return the winner of the game, see {@link #getWinner()}
+         */
+        private ImmutableSet<Piece> computeWinner() {
+            List<Piece> detectivePiecesList = new ArrayList<>();
+
+            for (Player d : detectives) {
+                detectivePiecesList.add(d.piece());
+            }
+
+            for (Player d : detectives) {
+                // Mrx lost
+                if (d.location() == this.mrX.location()) {
+                    return ImmutableSet.copyOf(detectivePiecesList);
+                }
+            }
+
+            // if its mrX turn to move and there are no available moves then game over, and he loses
+            if (remaining.contains(mrX.piece()) && !mrXCanMove()) {
+                return ImmutableSet.copyOf(detectivePiecesList);
+            }
+
+            // No detective has more moves so mrx win
+            if (stuck == (1 << detectives.size()) - 1) return ImmutableSet.of(mrX.piece());
+
+
+            // mrx manage to fill the log and no detectives could catch him, so mrx win
+            if (setup.moves.size() == getMrXTravelLog().size()
+                    && remaining.contains(mrX.piece())) {
+                return ImmutableSet.of(mrX.piece());
+            }
+
+            return ImmutableSet.of();
+        }
+
+        /**
+         * Function to check if mrX can move, reusing the generated moves if there are any
+         * (a double move always starts with a single move so single moves are enough)
          *
-         * @param detectives
          * @return boolean
          */
-        public boolean noDetectivesHasMoves(List<Player> detectives) {
-            for (Player p : detectives) {
-                if (!makeSingleMoves(setup, detectives, p, p.location()).isEmpty())
-                    return false; // IF THERE IS AVAILABLE MOVES FOR DETECTIVE
+        private boolean mrXCanMove() {
+            long[] generated = candidates;
+            if (generated != null) {
+                for (long move : generated) {
+                    if (PackedMove.piece(move) == PackedMove.MRX) return true;
+                }
+                return false;
             }
-            return true;
+            return MoveGenerator.canMove(setup.transportGraph(), checkedLocation(setup, mrX),
+                    mrX.ticketCounts(), 0, occupied);
+        }
+
+        /**
+         * @return the packed moves of every remaining player, ignoring whether the game is over
+         */
+        private long[] candidateMoves() {
+            long[] generated = candidates;
+            if (generated == null) {
+                // all the moves are written packed into one buffer and only materialised when needed
+                MoveBuffer buffer = new MoveBuffer();
+                for (Player player : everyone) {
+                    if (remaining.contains(player.piece())) {
+                        MoveGenerator.moves(setup.transportGraph(), PackedMove.pieceIndex(player.piece()),
+                                checkedLocation(setup, player), player.ticketCounts(), 0, occupied,
+                                setup.moves.size() - log.size(), buffer);
+                    }
+                }
+                if (EngineMetrics.ENABLED) EngineMetrics.movesGenerated(buffer);
+                // racing threads generate the same moves, whichever array is published wins
+                candidates = generated = buffer.toArray();
+            }
+            return generated;
+        }
+
+        /**
+         * Function to check if a move is one of {@link #getAvailableMoves()} without
+         * materialising the moves
+         *
+         * @param move the move
+         * @return boolean
+         */
+        private boolean isAvailable(Move move) {
+            if (moves != null) return moves.contains(move);
+            if (!getWinner().isEmpty() || !remaining.contains(move.commencedBy())) return false;
+            long packed;
+            try {
+                packed = PackedMove.of(move);
+            } catch (IllegalArgumentException e) {
+                return false; // the move has nodes that can't be on the graph
+            }
+            for (long candidate : candidateMoves()) {
+                if (candidate == packed) return true;
+            }
+            return false;
         }
 
 
@@ -448,170 +562,79 @@ public final class MyGameStateFactory implements Factory<GameState> {
     }
 
 
+    /**
+     * @param packed packed moves
+     * @return the moves as {@link Move} instances
+     */
+    private static ImmutableSet<Move> toMoves(long[] packed) {
+        var builder = ImmutableSet.<Move>builderWithExpectedSize(packed.length);
+        for (long move : packed) builder.add(PackedMove.toMove(move));
+        return builder.build();
+    }
+
     /**
      * @param setup the game setup
      * @param detectives the detective players
-     * @param player the player
-     * @param source the source of the player
-     * @return all the available single moves for the player
+     * @return the locations of the detectives as a {@link NodeSet}
      */
-    private static Set<SingleMove> makeSingleMoves(
-            GameSetup setup,
-            List<Player> detectives,
-            Player player,
-            int source) {
-
-        HashSet<SingleMove> singleMoves = new HashSet<>();
-        Set<Integer> locations = new HashSet<>();
-
-        // store only locations from detectives
-        for (Player d : detectives) locations.add(d.location());
-
-        // map every node
-        for (int destination : setup.graph.adjacentNodes(source)) {
-
-            // Don't add in the collection of moves if the node is occupied by another player
-            if (locations.contains(destination)) continue;
-
-
-            // transport represent the transportation type (bus, taxi, etc)
-            // map the transportations needed for every node
-            for (Transport t : setup.graph.edgeValueOrDefault(source, destination, ImmutableSet.of())) {
+    private static long[] occupancy(GameSetup setup, List<Player> detectives) {
+        long[] occupied = NodeSet.create(setup.transportGraph().nodeBound());
+        for (Player d : detectives) {
+            if (d.location() >= 0 && d.location() < setup.transportGraph().nodeBound())
+                NodeSet.add(occupied, d.location());
+        }
+        return occupied;
+    }
 
-                // find out if the player has the required tickets to transport to the node
-                if (player.has(t.requiredTicket())) {
-                    SingleMove m = new SingleMove(
-                            player.piece(),
-                            source,
-                            t.requiredTicket(),
-                            destination);
-                    singleMoves.add(m);
-                }
-            }
+    /**
+     * @param setup the game setup
+     * @param player the player
+     * @return the location of the player
+     * @throws IllegalArgumentException if the location is not a node of the graph
+     */
+    private static int checkedLocation(GameSetup setup, Player player) {
+        // every station of a real map has a route, the graph is only consulted for isolated ones
+        if (!setup.transportGraph().hasEdges(player.location())
+                && !setup.graph.nodes().contains(player.location()))
+            throw new IllegalArgumentException("Node " + player.location() + " is not an element of the graph");
+        return player.location();
+    }
 
-            // mrX can still make a single moves having a secret ticket
-            if (player.has(Ticket.SECRET)) {
-                SingleMove m = new SingleMove(
-                        player.piece(),
-                        source,
-                        Ticket.SECRET,
-                        destination);
-                singleMoves.add(m);
-            }
+    /**
+     * @param player the player
+     * @return the Zobrist key of the location and the tickets of the player
+     */
+    private static long playerKey(Player player) {
+        return Zobrist.player(PackedMove.pieceIndex(player.piece()), player.location(), player.ticketCounts(), 0);
+    }
 
-        }
-        return singleMoves;
+    /**
+     * @param remaining the remaining pieces
+     * @return the Zobrist key of the remaining pieces
+     */
+    private static long remainingKey(Set<Piece> remaining) {
+        long key = 0;
+        for (Piece p : remaining) key ^= Zobrist.remaining(PackedMove.pieceIndex(p));
+        return key;
     }
 
     /**
+     * Function to check which detectives have no moves left
+     *
      * @param setup the game setup
      * @param detectives the detective players
-     * @param player the player
-     * @param source the source of the player
-     * @param log MrX's travel log
-     * @return all the available double moves for the player
+     * @param occupied the locations of the detectives
+     * @return a mask with bit i set if detectives.get(i) can't move
      */
-    private static Set<DoubleMove> makeDoubleMoves(
-            GameSetup setup,
-            List<Player> detectives,
-            Player player,
-            int source,
-            ImmutableList<LogEntry> log) {
-
-        HashSet<DoubleMove> doubleMoves = new HashSet<>();
-        Set<Integer> locations = new HashSet<>();
-
-        // store only locations from detectives
-        for (Player d : detectives) locations.add(d.location());
-
-        // 4 nested loops to check destination1, destination2 and transport1, transport2
-        if ((player.has(Ticket.DOUBLE)) && (setup.moves.size() - log.size() >= 2)) {
-            for (int destination1 : setup.graph.adjacentNodes(source)) {
-                if (locations.contains(destination1)) continue;
-                for (Transport t1 : setup.graph.edgeValueOrDefault(source, destination1, ImmutableSet.of())) {
-                    if (player.has(t1.requiredTicket())) {
-                        for (int destination2 : setup.graph.adjacentNodes(destination1)) {
-                            if (locations.contains(destination2)) continue;
-                            for (Transport t2 : setup.graph.edgeValueOrDefault(destination1, destination2, ImmutableSet.of())) {
-
-                                // check if the required tickets for first and second move are the same
-                                if (t2.requiredTicket() == t1.requiredTicket()) {
-                                    // player needs at least 2 tickets
-                                    if (player.hasAtLeast(t2.requiredTicket(), 2)) {
-                                        DoubleMove doubleMove = new DoubleMove(
-                                                player.piece(),
-                                                source,
-                                                t2.requiredTicket(),
-                                                destination1,
-                                                t2.requiredTicket(),
-                                                destination2);
-                                        doubleMoves.add(doubleMove);
-                                    }
-                                } else if (player.has(t2.requiredTicket())) {
-                                    DoubleMove doubleMove = new DoubleMove(
-                                            player.piece(),
-                                            source,
-                                            t1.requiredTicket(),
-                                            destination1,
-                                            t2.requiredTicket(),
-                                            destination2);
-                                    doubleMoves.add(doubleMove);
-                                }
-                            }
-
-                            /* in double moves the player (mrx) can go to the first destination using a secret ticket
-                            or go to the second destination using the secret ticket, and finally, he can use 2 secrets
-                            to go to the first and second destination */
-
-                            // if mrX has t1.tickets + secret ticket
-                            if (player.has(Ticket.SECRET)) {
-                                DoubleMove doubleMove = new DoubleMove(
-                                        player.piece(),
-                                        source,
-                                        t1.requiredTicket(),
-                                        destination1,
-                                        Ticket.SECRET,
-                                        destination2);
-                                doubleMoves.add(doubleMove);
-                            }
-                        }
-                    }
-                }
-                if (player.has(Ticket.SECRET)) {
-                    for (int destination2 : setup.graph.adjacentNodes(destination1)) {
-                        if (locations.contains(destination2)) continue;
-                        for (Transport t2 : setup.graph.edgeValueOrDefault(destination1, destination2, ImmutableSet.of())) {
-
-                            // if mrX has secret ticket + t2.tickets
-                            if (player.has(t2.requiredTicket())) {
-                                DoubleMove doubleMove = new DoubleMove(
-                                        player.piece(),
-                                        source,
-                                        Ticket.SECRET,
-                                        destination1,
-                                        t2.requiredTicket(),
-                                        destination2);
-                                doubleMoves.add(doubleMove);
-                            }
-                        }
-
-                        // if mrX has secret + secret
-                        if (player.hasAtLeast(Ticket.SECRET, 2)) {
-                            DoubleMove doubleMove = new DoubleMove(
-                                    player.piece(),
-                                    source,
-                                    Ticket.SECRET,
-                                    destination1,
-                                    Ticket.SECRET,
-                                    destination2);
-                            doubleMoves.add(doubleMove);
-                        }
-                    }
-                }
-            }
+    private static int stuckDetectives(GameSetup setup, List<Player> detectives, long[] occupied) {
+        int stuck = 0;
+        for (int i = 0; i < detectives.size(); i++) {
+            Player p = detectives.get(i);
+            if (!MoveGenerator.canMove(setup.transportGraph(), checkedLocation(setup, p),
+                    p.ticketCounts(), 0, occupied))
+                stuck |= 1 << i; // NO AVAILABLE MOVES FOR DETECTIVE
         }
-        return doubleMoves;
+        return stuck;
     }
 
 }
-
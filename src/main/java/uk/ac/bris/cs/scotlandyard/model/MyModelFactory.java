@@ -2,6 +2,7 @@ package uk.ac.bris.cs.scotlandyard.model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 
 import com.google.common.collect.ImmutableList;
@@ -9,6 +10,7 @@ import com.google.common.collect.ImmutableList;
 import javax.annotation.Nonnull;
 
 import com.google.common.collect.ImmutableSet;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
 import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Factory;
 
 /**
@@ -17,6 +19,23 @@ import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Factory;
  */
 public final class MyModelFactory implements Factory<Model> {
 
+    // The factory used to create the game state the model delegates to
+    private final Factory<GameState> stateFactory;
+
+    /**
+     * Creates a model factory backed by {@link MyGameStateFactory}
+     */
+    public MyModelFactory() {
+        this(new MyGameStateFactory());
+    }
+
+    /**
+     * @param stateFactory the factory used to create the game state of each model
+     */
+    public MyModelFactory(@Nonnull Factory<GameState> stateFactory) {
+        this.stateFactory = Objects.requireNonNull(stateFactory);
+    }
+
     /**
      * @param setup the game setup
      * @param mrX MrX player
@@ -32,9 +51,7 @@ public final class MyModelFactory implements Factory<Model> {
         // anon class
         return new Model() {
             List<Model.Observer> observerList = new ArrayList<>();
-            MyGameStateFactory factory = new MyGameStateFactory();
-
-            Board.GameState State = factory.build(setup, mrX, detectives);
+            Board.GameState State = stateFactory.build(setup, mrX, detectives);
 
             /**
              * @return the current game board
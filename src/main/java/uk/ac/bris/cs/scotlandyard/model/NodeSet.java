@@ -0,0 +1,64 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.Arrays;
+
+/**
+ * Static helpers for sets of nodes stored as plain {@code long[]} bitsets, bit {@code n} being
+ * set when node {@code n} is in the set. The standard map fits into 4 words (200 bits).
+ * <br>
+ * Callers own the arrays; nothing here allocates except {@link #create(int)}.
+ */
+public final class NodeSet {
+
+	private NodeSet() {}
+
+	/**
+	 * @param bound one more than the largest node, see {@link TransportGraph#nodeBound()}
+	 * @return the number of words needed for nodes in {@code [0, bound)}
+	 */
+	public static int words(int bound) { return (bound + 63) >>> 6; }
+
+	/**
+	 * @param bound one more than the largest node, see {@link TransportGraph#nodeBound()}
+	 * @return a new empty set able to hold nodes in {@code [0, bound)}
+	 */
+	public static long[] create(int bound) { return new long[words(bound)]; }
+
+	public static boolean contains(long[] set, int node) {
+		return (set[node >>> 6] & (1L << node)) != 0;
+	}
+
+	public static void add(long[] set, int node) { set[node >>> 6] |= 1L << node; }
+
+	public static void remove(long[] set, int node) { set[node >>> 6] &= ~(1L << node); }
+
+	public static void clear(long[] set) { Arrays.fill(set, 0L); }
+
+	public static boolean isEmpty(long[] set) {
+		for (long word : set) if (word != 0) return false;
+		return true;
+	}
+
+	public static int size(long[] set) {
+		int count = 0;
+		for (long word : set) count += Long.bitCount(word);
+		return count;
+	}
+
+	/**
+	 * @param set the set
+	 * @param from the node to start searching from, inclusive
+	 * @return the smallest node in the set that is &gt;= from, or -1 if none
+	 */
+	public static int next(long[] set, int from) {
+		int index = from >>> 6;
+		if (index >= set.length) return -1;
+		long word = set[index] & (-1L << from);
+		while (true) {
+			if (word != 0) return (index << 6) + Long.numberOfTrailingZeros(word);
+			if (++index == set.length) return -1;
+			word = set[index];
+		}
+	}
+
+}
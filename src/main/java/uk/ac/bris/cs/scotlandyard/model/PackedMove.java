@@ -0,0 +1,161 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Move.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move.FunctionalVisitor;
+import uk.ac.bris.cs.scotlandyard.model.Move.SingleMove;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * Static helpers for moves packed into a single {@code long}, see {@link MoveGenerator}.
+ * <br>
+ * Layout, from the least significant bit:
+ * <pre>
+ *  0-15  source
+ * 16-31  destination1 (the only destination of a single move)
+ * 32-47  destination2 (0 for single moves)
+ * 48-50  ticket1 ordinal
+ * 51-53  ticket2 ordinal (0 for single moves)
+ * 54-56  piece, as the index in {@link ScotlandYard#ALL_PIECES}
+ * 57     set for double moves
+ * </pre>
+ * Nodes must therefore be in {@code [0, 65536)}. A packed move is never 0 as every move has a
+ * source and destination that differ.
+ */
+public final class PackedMove {
+
+	private PackedMove() {}
+
+	private static final int NODE_MASK = 0xFFFF;
+	private static final int TICKET_MASK = 0x7;
+	private static final int PIECE_MASK = 0x7;
+	private static final int DESTINATION1_SHIFT = 16;
+	private static final int DESTINATION2_SHIFT = 32;
+	private static final int TICKET1_SHIFT = 48;
+	private static final int TICKET2_SHIFT = 51;
+	private static final int PIECE_SHIFT = 54;
+	private static final long DOUBLE_FLAG = 1L << 57;
+
+	/**
+	 * The largest node that can be packed
+	 */
+	public static final int MAX_NODE = NODE_MASK;
+
+	/**
+	 * Index of MrX in {@link #PIECES}
+	 */
+	public static final int MRX = 0;
+
+	private static final Piece[] PIECES = ScotlandYard.ALL_PIECES.toArray(new Piece[0]);
+	private static final Ticket[] TICKETS = Ticket.values();
+
+	/**
+	 * @param piece the piece
+	 * @return the index of the piece in {@link ScotlandYard#ALL_PIECES}
+	 */
+	public static int pieceIndex(@Nonnull Piece piece) {
+		for (int i = 0; i < PIECES.length; i++) if (PIECES[i] == piece) return i;
+		throw new IllegalArgumentException("Unknown piece: " + piece);
+	}
+
+	/**
+	 * @param index the index in {@link ScotlandYard#ALL_PIECES}
+	 * @return the piece
+	 */
+	@Nonnull public static Piece pieceAt(int index) { return PIECES[index]; }
+
+	/**
+	 * @param ordinal the ticket ordinal
+	 * @return the ticket
+	 */
+	@Nonnull public static Ticket ticket(int ordinal) { return TICKETS[ordinal]; }
+
+	public static long single(int piece, int source, int ticket, int destination) {
+		return (long) source
+				| (long) destination << DESTINATION1_SHIFT
+				| (long) ticket << TICKET1_SHIFT
+				| (long) piece << PIECE_SHIFT;
+	}
+
+	public static long doubleMove(int piece, int source,
+	                              int ticket1, int destination1,
+	                              int ticket2, int destination2) {
+		return (long) source
+				| (long) destination1 << DESTINATION1_SHIFT
+				| (long) destination2 << DESTINATION2_SHIFT
+				| (long) ticket1 << TICKET1_SHIFT
+				| (long) ticket2 << TICKET2_SHIFT
+				| (long) piece << PIECE_SHIFT
+				| DOUBLE_FLAG;
+	}
+
+	public static boolean isDouble(long move) { return (move & DOUBLE_FLAG) != 0; }
+
+	public static int piece(long move) { return (int) (move >>> PIECE_SHIFT) & PIECE_MASK; }
+
+	public static int source(long move) { return (int) move & NODE_MASK; }
+
+	public static int ticket1(long move) { return (int) (move >>> TICKET1_SHIFT) & TICKET_MASK; }
+
+	public static int destination1(long move) {
+		return (int) (move >>> DESTINATION1_SHIFT) & NODE_MASK;
+	}
+
+	public static int ticket2(long move) { return (int) (move >>> TICKET2_SHIFT) & TICKET_MASK; }
+
+	public static int destination2(long move) {
+		return (int) (move >>> DESTINATION2_SHIFT) & NODE_MASK;
+	}
+
+	/**
+	 * @param move the packed move
+	 * @return where the piece ends up after the move
+	 */
+	public static int destination(long move) {
+		return isDouble(move) ? destination2(move) : destination1(move);
+	}
+
+	/**
+	 * Materialises a packed move
+	 *
+	 * @param move the packed move
+	 * @return the equivalent {@link SingleMove} or {@link DoubleMove}
+	 */
+	@Nonnull public static Move toMove(long move) {
+		if (isDouble(move))
+			return new DoubleMove(pieceAt(piece(move)), source(move),
+					TICKETS[ticket1(move)], destination1(move),
+					TICKETS[ticket2(move)], destination2(move));
+		return new SingleMove(pieceAt(piece(move)), source(move),
+				TICKETS[ticket1(move)], destination1(move));
+	}
+
+	/**
+	 * Packs a move
+	 *
+	 * @param move the move
+	 * @return the packed equivalent of the move
+	 * @throws IllegalArgumentException if any node of the move cannot be packed
+	 */
+	public static long of(@Nonnull Move move) {
+		return move.accept(new FunctionalVisitor<>(
+				m -> single(pieceIndex(m.commencedBy()), checkNode(m.source()),
+						m.ticket.ordinal(), checkNode(m.destination)),
+				m -> doubleMove(pieceIndex(m.commencedBy()), checkNode(m.source()),
+						m.ticket1.ordinal(), checkNode(m.destination1),
+						m.ticket2.ordinal(), checkNode(m.destination2))));
+	}
+
+	private static int checkNode(int node) {
+		if (node < 0 || node > MAX_NODE) throw new IllegalArgumentException("Bad node: " + node);
+		return node;
+	}
+
+	/**
+	 * @param move the packed move
+	 * @return a human readable form of the move, same as {@link Move#toString()}
+	 */
+	@Nonnull public static String toString(long move) { return toMove(move).toString(); }
+
+}
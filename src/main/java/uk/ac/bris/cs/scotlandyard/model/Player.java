@@ -14,9 +14,12 @@ import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
  * Each player contains the {@link Piece} (coloured counter), {@link Ticket}s, and the location.
  */
 public final class Player {
+	private static final Ticket[] TICKETS = Ticket.values();
+
 	private final Piece piece;
 	private final ImmutableMap<Ticket, Integer> tickets;
 	private final int location;
+	private final int[] ticketCounts;
 
 	public Player(@Nonnull Piece piece,
 	              @Nonnull ImmutableMap<Ticket, Integer> tickets,
@@ -24,6 +27,8 @@ public final class Player {
 		this.piece = Objects.requireNonNull(piece);
 		this.tickets = Objects.requireNonNull(tickets);
 		this.location = location;
+		this.ticketCounts = new int[TICKETS.length];
+		for (Ticket t : TICKETS) ticketCounts[t.ordinal()] = tickets.getOrDefault(t, 0);
 	}
 	/**
 	 * @return the piece
@@ -45,6 +50,10 @@ public final class Player {
 	 * @return the location
 	 */
 	public int location() { return location; }
+	/**
+	 * @return the ticket counts indexed by {@link Ticket#ordinal()}; shared, must not be modified
+	 */
+	int[] ticketCounts() { return ticketCounts; }
 	/**
 	 * @param ticket the ticket
 	 * @return whether the player has the given ticket
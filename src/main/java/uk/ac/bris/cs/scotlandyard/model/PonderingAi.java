@@ -0,0 +1,40 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * An {@link Ai} that thinks on the other side's turn, so the time the other side takes is not
+ * wasted.
+ * <br>
+ * While the other side is to move on a board the Ai is asked to {@link #predict(Board)} its move,
+ * then to {@link #ponder(Board, Move)} on the board after that move on a thread of its own. Once
+ * the real move arrives the thread is interrupted and {@link #onPonderResult(boolean)} tells the
+ * Ai whether the prediction was right, before it is asked anything else. The Ai may reuse what it
+ * pondered in its next {@link #pickMove}.
+ * <br>
+ * Only the detectives' moves are pondered on, so an Ai playing the detectives never learns
+ * anything about MrX's secret moves from the result.
+ */
+public interface PonderingAi extends Ai {
+
+	/**
+	 * @param board a board the other side is to move on
+	 * @return the move the Ai expects the other side to make, or null to not ponder
+	 */
+	@Nullable Move predict(@Nonnull Board board);
+
+	/**
+	 * Searches the board after the predicted move until the calling thread is interrupted
+	 *
+	 * @param board the board passed to {@link #predict(Board)}
+	 * @param predicted the move predicted
+	 */
+	void ponder(@Nonnull Board board, @Nonnull Move predicted);
+
+	/**
+	 * @param hit whether the other side made the predicted move
+	 */
+	void onPonderResult(boolean hit);
+
+}
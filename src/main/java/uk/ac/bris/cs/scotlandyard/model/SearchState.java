@@ -0,0 +1,412 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.BitboardGameStateFactory.BitboardGameState;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+import static uk.ac.bris.cs.scotlandyard.model.BitboardGameStateFactory.MRX_SLOT_BIT;
+import static uk.ac.bris.cs.scotlandyard.model.BitboardGameStateFactory.TICKETS;
+import static uk.ac.bris.cs.scotlandyard.model.BitboardGameStateFactory.WINNER_DETECTIVES;
+import static uk.ac.bris.cs.scotlandyard.model.BitboardGameStateFactory.WINNER_MRX;
+import static uk.ac.bris.cs.scotlandyard.model.BitboardGameStateFactory.WINNER_UNKNOWN;
+
+/**
+ * A mutable game state for depth-first search. {@link #apply(long)} updates locations, tickets,
+ * the remaining players and the travel log in place and {@link #undo()} reverts the last applied
+ * move, so walking a search tree copies nothing.
+ * <br>
+ * Uses the same rules and slot layout as {@link BitboardGameState}; {@link #snapshot()} produces
+ * an immutable one whenever a {@link Board.GameState} is needed.
+ * <br>
+ * Not thread safe; use {@link #copy()} to give each search thread its own state.
+ */
+public final class SearchState {
+
+	/**
+	 * Outcome of a game that is not over yet, see {@link #outcome()}
+	 */
+	public static final int ONGOING = 0;
+	/**
+	 * Outcome of a game won by MrX, see {@link #outcome()}
+	 */
+	public static final int MRX_WINS = 1;
+	/**
+	 * Outcome of a game won by the detectives, see {@link #outcome()}
+	 */
+	public static final int DETECTIVES_WIN = 2;
+
+	private static final int DOUBLE = Ticket.DOUBLE.ordinal();
+
+	private final GameSetup setup;
+	private final TransportGraph graph;
+	private final Piece[] pieces;
+	private final int[] locations;
+	private final int[] tickets;
+	private final long[] occupied;
+	private final int[] log;
+	private int remaining;
+	private int round;
+	private long zobristKey;
+
+	// undo stack, one entry per applied move
+	private long[] moveStack = new long[64];
+	private int[] remainingStack = new int[64];
+	private long[] keyStack = new long[64];
+	// cached winner for each depth, WINNER_UNKNOWN if not yet computed
+	private byte[] winnerStack = new byte[65];
+	private int depth;
+
+	private SearchState(GameSetup setup, Piece[] pieces, int[] locations, int[] tickets,
+	                    int[] log, int remaining, int round) {
+		this.setup = setup;
+		this.graph = setup.transportGraph();
+		this.pieces = pieces;
+		this.locations = locations;
+		this.tickets = tickets;
+		this.log = log;
+		this.remaining = remaining;
+		this.round = round;
+		this.occupied = NodeSet.create(graph.nodeBound());
+		for (int slot = 1; slot < pieces.length; slot++) NodeSet.add(occupied, locations[slot]);
+		this.zobristKey = BitboardGameStateFactory.zobristKey(pieces, locations, tickets,
+				remaining, round);
+	}
+
+	/**
+	 * Creates a search state at the start of a game, validated the same way as
+	 * {@link BitboardGameStateFactory#build(GameSetup, Player, ImmutableList)}
+	 *
+	 * @param setup the game setup
+	 * @param mrX MrX player
+	 * @param detectives detective players
+	 * @return a new search state
+	 */
+	@Nonnull public static SearchState of(GameSetup setup, Player mrX,
+	                                      ImmutableList<Player> detectives) {
+		return of(new BitboardGameStateFactory().build(setup, mrX, detectives));
+	}
+
+	/**
+	 * @param state the state to copy
+	 * @return a new search state at the given state
+	 */
+	@Nonnull public static SearchState of(@Nonnull BitboardGameState state) {
+		return fromBoard(state, state.mrXLocation());
+	}
+
+	/**
+	 * Reconstructs a search state from a board. Boards don't expose MrX's location, so it has
+	 * to be supplied; MrX's Ai can read it from the source of its available moves and detectives
+	 * have to guess it.
+	 *
+	 * @param board the board
+	 * @param mrXLocation MrX's location
+	 * @return a new search state matching the board
+	 */
+	@Nonnull public static SearchState fromBoard(@Nonnull Board board, int mrXLocation) {
+		Piece[] pieces = board.getPlayers().stream()
+				.sorted(ScotlandYard.PIECE_VALUE_ORDER)
+				.toArray(Piece[]::new);
+		if (pieces.length == 0 || !pieces[0].isMrX())
+			throw new IllegalArgumentException("Board has no MrX");
+		int[] locations = new int[pieces.length];
+		int[] tickets = new int[pieces.length * TICKETS];
+		for (int slot = 0; slot < pieces.length; slot++) {
+			locations[slot] = slot == 0 ? mrXLocation :
+					board.getDetectiveLocation((Piece.Detective) pieces[slot]).orElseThrow();
+			Board.TicketBoard ticketBoard = board.getPlayerTickets(pieces[slot]).orElseThrow();
+			for (Ticket t : BitboardGameStateFactory.ALL_TICKETS)
+				tickets[slot * TICKETS + t.ordinal()] = ticketBoard.getCount(t);
+		}
+		ImmutableList<LogEntry> travelLog = board.getMrXTravelLog();
+		int[] log = new int[board.getSetup().moves.size()];
+		for (int i = 0; i < travelLog.size(); i++) {
+			LogEntry entry = travelLog.get(i);
+			log[i] = BitboardGameStateFactory.logEntry(board.getSetup(), entry.ticket().ordinal(),
+					entry.location().orElse(-1), i);
+		}
+		int remaining = 0;
+		for (Move move : board.getAvailableMoves())
+			for (int slot = 0; slot < pieces.length; slot++)
+				if (pieces[slot] == move.commencedBy()) remaining |= 1 << slot;
+		return new SearchState(board.getSetup(), pieces, locations, tickets, log,
+				remaining == 0 ? MRX_SLOT_BIT : remaining, travelLog.size());
+	}
+
+	/**
+	 * @return an independent copy of this state at the current position, with an empty undo
+	 * stack
+	 */
+	@Nonnull public SearchState copy() {
+		return new SearchState(setup, pieces, locations.clone(), tickets.clone(), log.clone(),
+				remaining, round);
+	}
+
+	/**
+	 * Moves MrX to another node, for searching one determinization of the detectives' view of the
+	 * game after another without building new states
+	 *
+	 * @param node the node
+	 * @throws IllegalStateException if there are moves to undo
+	 * @throws IllegalArgumentException if the node is not on the graph or a detective is on it
+	 */
+	public void placeMrX(int node) {
+		if (depth != 0) throw new IllegalStateException("MrX can only be placed at the root");
+		if (!graph.hasEdges(node) || node > PackedMove.MAX_NODE || NodeSet.contains(occupied, node))
+			throw new IllegalArgumentException("Bad node for MrX: " + node);
+		int piece = PackedMove.pieceIndex(pieces[0]);
+		zobristKey ^= Zobrist.location(piece, locations[0]) ^ Zobrist.location(piece, node);
+		locations[0] = node;
+		winnerStack[0] = WINNER_UNKNOWN;
+	}
+
+	/**
+	 * @return an immutable game state at the current position
+	 */
+	@Nonnull public BitboardGameState snapshot() {
+		return new BitboardGameState(setup, graph, pieces, locations.clone(), tickets.clone(),
+				occupied.clone(), remaining, round, log.clone(), zobristKey);
+	}
+
+	//-------------------- Accessors --------------------//
+
+	@Nonnull public GameSetup setup() { return setup; }
+
+	/**
+	 * @return the number of player slots, MrX included
+	 */
+	public int slots() { return pieces.length; }
+
+	@Nonnull public Piece piece(int slot) { return pieces[slot]; }
+
+	/**
+	 * @param piece the piece
+	 * @return the slot of the given piece, or -1 if the piece is not in the game
+	 */
+	public int slotOf(Piece piece) {
+		for (int slot = 0; slot < pieces.length; slot++) if (pieces[slot] == piece) return slot;
+		return -1;
+	}
+
+	public int location(int slot) { return locations[slot]; }
+
+	public int mrXLocation() { return locations[0]; }
+
+	public int tickets(int slot, Ticket ticket) { return tickets[slot * TICKETS + ticket.ordinal()]; }
+
+	/**
+	 * @return the transports the player in the slot has tickets for, see
+	 * {@link DistanceTable#transportsFor(int[], int)}
+	 */
+	public int transports(int slot) { return DistanceTable.transportsFor(tickets, slot * TICKETS); }
+
+	/**
+	 * @return bitmask of slots that can still move this round, bit 0 being MrX
+	 */
+	public int remaining() { return remaining; }
+
+	/**
+	 * @return whether it is MrX's turn
+	 */
+	public boolean isMrXTurn() { return (remaining & MRX_SLOT_BIT) != 0; }
+
+	/**
+	 * @return the number of entries in MrX's travel log
+	 */
+	public int round() { return round; }
+
+	/**
+	 * @return the {@link Zobrist} key of the current position, same as
+	 * {@link BitboardGameState#zobristKey()}
+	 */
+	public long zobristKey() { return zobristKey; }
+
+	/**
+	 * @return the number of moves applied and not yet undone
+	 */
+	public int depth() { return depth; }
+
+	/**
+	 * @param node the node
+	 * @return whether a detective is at the node
+	 */
+	public boolean isOccupied(int node) { return NodeSet.contains(occupied, node); }
+
+	/**
+	 * @return {@link #ONGOING}, {@link #MRX_WINS} or {@link #DETECTIVES_WIN}
+	 */
+	public int outcome() {
+		byte winner = winnerStack[depth];
+		if (winner == WINNER_UNKNOWN) {
+			winner = BitboardGameStateFactory.winner(setup, graph, pieces.length, locations,
+					tickets, occupied, remaining, round);
+			winnerStack[depth] = winner;
+		}
+		switch (winner) {
+			case WINNER_MRX:
+				return MRX_WINS;
+			case WINNER_DETECTIVES:
+				return DETECTIVES_WIN;
+			default:
+				return ONGOING;
+		}
+	}
+
+	public boolean isGameOver() { return outcome() != ONGOING; }
+
+	/**
+	 * @return the winner of this game; empty if the game has no winners yet
+	 */
+	@Nonnull public ImmutableSet<Piece> winner() {
+		outcome();
+		return BitboardGameStateFactory.winnerPieces(winnerStack[depth], pieces);
+	}
+
+	//-------------------- Make/unmake --------------------//
+
+	/**
+	 * Writes the available moves into the buffer as {@link PackedMove}s, nothing is written if
+	 * the game is over
+	 *
+	 * @param out the buffer to append moves to
+	 */
+	public void availableMoves(@Nonnull MoveBuffer out) {
+		if (isGameOver()) return;
+		int roundsLeft = setup.moves.size() - round;
+		for (int slot = 0; slot < pieces.length; slot++) {
+			if ((remaining & (1 << slot)) == 0) continue;
+			MoveGenerator.moves(graph, PackedMove.pieceIndex(pieces[slot]), locations[slot],
+					tickets, slot * TICKETS, occupied, roundsLeft, out);
+		}
+	}
+
+	/**
+	 * @param move the packed move
+	 * @return whether the move is one of the available moves
+	 */
+	public boolean isLegal(long move) {
+		return !isGameOver() && BitboardGameStateFactory.isLegal(setup, graph, pieces,
+				locations, tickets, occupied, remaining, round, move);
+	}
+
+	/**
+	 * Applies a move, checking it first
+	 *
+	 * @param move the move
+	 * @throws IllegalArgumentException if the move is not an available move
+	 */
+	public void apply(@Nonnull Move move) {
+		long packed = PackedMove.of(Objects.requireNonNull(move));
+		if (!isLegal(packed)) throw new IllegalArgumentException("Illegal move: " + move);
+		apply(packed);
+	}
+
+	/**
+	 * Applies a move in place. For speed the move is not checked; it must be one written by
+	 * {@link #availableMoves(MoveBuffer)} for the current position (see {@link #isLegal(long)}).
+	 *
+	 * @param move the packed move
+	 */
+	public void apply(long move) {
+		if (depth == moveStack.length) {
+			moveStack = Arrays.copyOf(moveStack, depth * 2);
+			remainingStack = Arrays.copyOf(remainingStack, depth * 2);
+			keyStack = Arrays.copyOf(keyStack, depth * 2);
+			winnerStack = Arrays.copyOf(winnerStack, depth * 2 + 1);
+		}
+		moveStack[depth] = move;
+		remainingStack[depth] = remaining;
+		keyStack[depth] = zobristKey;
+		depth++;
+		long key = zobristKey ^ BitboardGameStateFactory.moveKey(pieces, tickets, move)
+				^ BitboardGameStateFactory.remainingKey(pieces, remaining) ^ Zobrist.round(round);
+		winnerStack[depth] = WINNER_UNKNOWN;
+
+		int slot = BitboardGameStateFactory.slotOf(pieces, move);
+		int base = slot * TICKETS;
+		int ticket1 = PackedMove.ticket1(move);
+		tickets[base + ticket1]--;
+		locations[slot] = PackedMove.destination(move);
+
+		if (slot == 0) {
+			log[round] = BitboardGameStateFactory.logEntry(setup, ticket1,
+					PackedMove.destination1(move), round);
+			round++;
+			if (PackedMove.isDouble(move)) {
+				int ticket2 = PackedMove.ticket2(move);
+				tickets[ticket2]--;
+				tickets[DOUBLE]--;
+				log[round] = BitboardGameStateFactory.logEntry(setup, ticket2,
+						PackedMove.destination2(move), round);
+				round++;
+			}
+			// a new round begins, every detective that can move may move
+			remaining = BitboardGameStateFactory.movableDetectives(graph, pieces.length, -1,
+					locations, tickets, occupied);
+		} else {
+			// detectives give their used tickets to MrX
+			tickets[ticket1]++;
+			NodeSet.remove(occupied, PackedMove.source(move));
+			NodeSet.add(occupied, locations[slot]);
+			remaining = BitboardGameStateFactory.movableDetectives(graph, pieces.length,
+					remaining & ~(1 << slot), locations, tickets, occupied);
+		}
+		if (remaining == 0) remaining = MRX_SLOT_BIT;
+		zobristKey = key ^ BitboardGameStateFactory.remainingKey(pieces, remaining)
+				^ Zobrist.round(round);
+	}
+
+	/**
+	 * Reverts the last applied move
+	 *
+	 * @throws IllegalStateException if there is no move to undo
+	 */
+	public void undo() {
+		if (depth == 0) throw new IllegalStateException("Nothing to undo");
+		depth--;
+		long move = moveStack[depth];
+		remaining = remainingStack[depth];
+		zobristKey = keyStack[depth];
+
+		int slot = BitboardGameStateFactory.slotOf(pieces, move);
+		int base = slot * TICKETS;
+		int ticket1 = PackedMove.ticket1(move);
+		tickets[base + ticket1]++;
+		if (slot == 0) {
+			round--;
+			if (PackedMove.isDouble(move)) {
+				tickets[PackedMove.ticket2(move)]++;
+				tickets[DOUBLE]++;
+				round--;
+			}
+		} else {
+			tickets[ticket1]--;
+			NodeSet.remove(occupied, locations[slot]);
+			NodeSet.add(occupied, PackedMove.source(move));
+		}
+		locations[slot] = PackedMove.source(move);
+	}
+
+	/**
+	 * @return the moves applied and not yet undone, oldest first
+	 */
+	@Nonnull public long[] history() { return Arrays.copyOf(moveStack, depth); }
+
+	@Override public String toString() {
+		StringBuilder builder = new StringBuilder("SearchState{round=").append(round)
+				.append(", depth=").append(depth);
+		for (int slot = 0; slot < pieces.length; slot++) {
+			builder.append(", ").append(pieces[slot]).append('@').append(locations[slot]);
+			if ((remaining & (1 << slot)) != 0) builder.append('*');
+		}
+		return builder.append('}').toString();
+	}
+
+}
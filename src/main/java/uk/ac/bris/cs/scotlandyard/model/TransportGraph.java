@@ -0,0 +1,164 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+/**
+ * A compiled, primitive-indexed view of the ScotlandYard game graph in compressed sparse row
+ * form. Nodes are indexed directly by their station number; the neighbours of node {@code n} are
+ * the edges in the half-open range {@code [start(n), end(n))}.
+ * <br>
+ * Each edge carries a bitmask of {@link Transport}s, bit {@code t.ordinal()} being set when the
+ * transport is available on that route. Use {@link GameSetup#transportGraph()} to obtain the
+ * (cached) instance for a setup rather than compiling a new one.
+ */
+public final class TransportGraph {
+
+	private static final Transport[] TRANSPORTS = Transport.values();
+
+	/**
+	 * Ticket bitmask (bit {@code ticket.ordinal()}) for every possible transport bitmask
+	 */
+	private static final byte[] TICKETS_FOR_TRANSPORTS = new byte[1 << TRANSPORTS.length];
+
+	static {
+		for (int mask = 0; mask < TICKETS_FOR_TRANSPORTS.length; mask++) {
+			int tickets = 0;
+			for (Transport t : TRANSPORTS)
+				if ((mask & (1 << t.ordinal())) != 0) tickets |= 1 << t.requiredTicket().ordinal();
+			TICKETS_FOR_TRANSPORTS[mask] = (byte) tickets;
+		}
+	}
+
+	private final int[] offsets;
+	private final int[] neighbours;
+	private final byte[] transports;
+	private final int nodeCount;
+
+	private TransportGraph(int[] offsets, int[] neighbours, byte[] transports, int nodeCount) {
+		this.offsets = offsets;
+		this.neighbours = neighbours;
+		this.transports = transports;
+		this.nodeCount = nodeCount;
+	}
+
+	/**
+	 * Compiles the given graph; neighbours of each node are stored in ascending order.
+	 *
+	 * @param graph the game graph
+	 * @return the compiled graph
+	 * @throws IllegalArgumentException if the graph contains negative nodes
+	 */
+	@Nonnull public static TransportGraph compile(
+			@Nonnull ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph) {
+		int bound = 0;
+		for (int node : graph.nodes()) {
+			if (node < 0) throw new IllegalArgumentException("Negative node: " + node);
+			bound = Math.max(bound, node + 1);
+		}
+		int[] offsets = new int[bound + 1];
+		for (int node : graph.nodes()) offsets[node + 1] = graph.degree(node);
+		for (int i = 0; i < bound; i++) offsets[i + 1] += offsets[i];
+
+		int[] neighbours = new int[offsets[bound]];
+		byte[] transports = new byte[offsets[bound]];
+		for (int node : graph.nodes()) {
+			int[] adjacent = graph.adjacentNodes(node).stream().mapToInt(Integer::intValue)
+					.sorted().toArray();
+			int edge = offsets[node];
+			for (int destination : adjacent) {
+				int mask = 0;
+				for (Transport t : graph.edgeValueOrDefault(node, destination, ImmutableSet.of()))
+					mask |= 1 << t.ordinal();
+				neighbours[edge] = destination;
+				transports[edge] = (byte) mask;
+				edge++;
+			}
+		}
+		return new TransportGraph(offsets, neighbours, transports, graph.nodes().size());
+	}
+
+	/**
+	 * @return one more than the largest node in the graph; all nodes are in {@code [0, bound)}
+	 */
+	public int nodeBound() { return offsets.length - 1; }
+
+	/**
+	 * @return the number of nodes in the graph
+	 */
+	public int nodeCount() { return nodeCount; }
+
+	/**
+	 * @return the number of directed edges (twice the number of routes in the undirected graph)
+	 */
+	public int edgeCount() { return neighbours.length; }
+
+	/**
+	 * @param node the node
+	 * @return whether the node has at least one route
+	 */
+	public boolean hasEdges(int node) { return node >= 0 && node < nodeBound() && degree(node) != 0; }
+
+	/**
+	 * @param node the node, must be in {@code [0, nodeBound())}
+	 * @return the index of the first edge leaving the node
+	 */
+	public int start(int node) { return offsets[node]; }
+
+	/**
+	 * @param node the node, must be in {@code [0, nodeBound())}
+	 * @return one past the index of the last edge leaving the node
+	 */
+	public int end(int node) { return offsets[node + 1]; }
+
+	/**
+	 * @param node the node, must be in {@code [0, nodeBound())}
+	 * @return the number of neighbours of the node
+	 */
+	public int degree(int node) { return offsets[node + 1] - offsets[node]; }
+
+	/**
+	 * @param edge the edge index
+	 * @return the node at the other end of the edge
+	 */
+	public int neighbour(int edge) { return neighbours[edge]; }
+
+	/**
+	 * @param edge the edge index
+	 * @return the {@link Transport} bitmask of the edge
+	 */
+	public int transports(int edge) { return transports[edge]; }
+
+	/**
+	 * @param edge the edge index
+	 * @return the {@link Ticket} bitmask of tickets that can be used to travel along the edge
+	 * (not including {@link Ticket#SECRET} unless the edge is a ferry route)
+	 */
+	public int tickets(int edge) { return TICKETS_FOR_TRANSPORTS[transports[edge]]; }
+
+	/**
+	 * @param source the source node
+	 * @param destination the destination node
+	 * @return the edge index between the two nodes, or -1 if they are not adjacent
+	 */
+	public int edge(int source, int destination) {
+		if (source < 0 || source >= nodeBound()) return -1;
+		int index = Arrays.binarySearch(neighbours, offsets[source], offsets[source + 1],
+				destination);
+		return index < 0 ? -1 : index;
+	}
+
+	/**
+	 * @param transports a {@link Transport} bitmask
+	 * @return the {@link Ticket} bitmask required for the given transports
+	 */
+	public static int ticketsFor(int transports) { return TICKETS_FOR_TRANSPORTS[transports]; }
+
+}
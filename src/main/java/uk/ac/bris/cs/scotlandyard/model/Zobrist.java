@@ -0,0 +1,100 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * Zobrist keys for game states. A position's key is the XOR of one pseudo-random 64-bit key
+ * per feature:
+ * <ul>
+ *     <li>the location of each piece</li>
+ *     <li>the count of each ticket held by each piece</li>
+ *     <li>each piece in the remaining set</li>
+ *     <li>the round, i.e. the size of MrX's travel log</li>
+ * </ul>
+ * so a move updates the key by XOR-ing out the features it changes and XOR-ing in the new ones.
+ * <br>
+ * Instead of a random table sized for every node and ticket count the feature keys are derived
+ * by hashing the feature, which behaves like an unbounded table. Pieces are identified by their
+ * index in {@link ScotlandYard#ALL_PIECES}, see {@link PackedMove#pieceIndex(Piece)}. The
+ * contents of the travel log are not part of the key.
+ */
+public final class Zobrist {
+
+	private Zobrist() {}
+
+	private static final long SEED = 0x5C07_1A2D_FA2D_2020L;
+	private static final long GOLDEN = 0x9E37_79B9_7F4A_7C15L;
+	private static final int LOCATION = 1;
+	private static final int TICKET = 2;
+	private static final int REMAINING = 3;
+	private static final int ROUND = 4;
+	private static final int VALUE_MASK = 0xFF_FFFF;
+	private static final int TICKETS = Ticket.values().length;
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58_476D_1CE4_E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D0_49BB_1331_11EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private static long key(int kind, int piece, int a, int b) {
+		return mix(SEED + ((long) kind << 56
+				| (long) piece << 48
+				| (long) (a & VALUE_MASK) << 24
+				| (b & VALUE_MASK)) * GOLDEN);
+	}
+
+	/**
+	 * @param piece the piece index
+	 * @param node the node
+	 * @return the key of the piece being at the node
+	 */
+	public static long location(int piece, int node) { return key(LOCATION, piece, node, 0); }
+
+	/**
+	 * @param piece the piece index
+	 * @param ticket the ticket ordinal
+	 * @param count the number of tickets held
+	 * @return the key of the piece holding count tickets
+	 */
+	public static long tickets(int piece, int ticket, int count) {
+		return key(TICKET, piece, ticket, count);
+	}
+
+	/**
+	 * @param piece the piece index
+	 * @param ticket the ticket ordinal
+	 * @param from the number of tickets held before
+	 * @param to the number of tickets held after
+	 * @return the key to XOR in when the count changes
+	 */
+	public static long ticketsChanged(int piece, int ticket, int from, int to) {
+		return from == to ? 0 : tickets(piece, ticket, from) ^ tickets(piece, ticket, to);
+	}
+
+	/**
+	 * @param piece the piece index
+	 * @return the key of the piece being in the remaining set
+	 */
+	public static long remaining(int piece) { return key(REMAINING, piece, 0, 0); }
+
+	/**
+	 * @param round the number of entries in MrX's travel log
+	 * @return the key of the round
+	 */
+	public static long round(int round) { return key(ROUND, 0, round, 0); }
+
+	/**
+	 * @param piece the piece index
+	 * @param location the location of the piece
+	 * @param tickets ticket counts indexed by {@link Ticket#ordinal()} from off
+	 * @param off the offset of the piece's counts
+	 * @return the key of the location and every ticket count of a piece
+	 */
+	public static long player(int piece, int location, int[] tickets, int off) {
+		long key = location(piece, location);
+		for (int t = 0; t < TICKETS; t++) key ^= tickets(piece, t, tickets[off + t]);
+		return key;
+	}
+
+}
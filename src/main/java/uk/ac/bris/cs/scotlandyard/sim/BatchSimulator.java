@@ -0,0 +1,89 @@
+package uk.ac.bris.cs.scotlandyard.sim;
+
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+
+/**
+ * Plays many headless games in parallel with a {@link GameRunner}.
+ * <br>
+ * Every game gets fresh Ai instances from the suppliers, so Ais that keep state between moves
+ * never see two games at once. Game {@code i} is seeded with {@code seed + i}, the results
+ * therefore only depend on the seed and not the number of threads for deterministic Ais.
+ */
+public final class BatchSimulator {
+
+	private final GameRunner runner;
+	private final Supplier<? extends Ai> mrXAi;
+	private final Supplier<? extends Ai> detectivesAi;
+
+	/**
+	 * @param runner plays each game
+	 * @param mrXAi creates the Ai for MrX, called once per game
+	 * @param detectivesAi creates the Ai for the detectives, called once per game
+	 */
+	public BatchSimulator(@Nonnull GameRunner runner,
+	                      @Nonnull Supplier<? extends Ai> mrXAi,
+	                      @Nonnull Supplier<? extends Ai> detectivesAi) {
+		this.runner = Objects.requireNonNull(runner);
+		this.mrXAi = Objects.requireNonNull(mrXAi);
+		this.detectivesAi = Objects.requireNonNull(detectivesAi);
+	}
+
+	/**
+	 * @param games the number of games
+	 * @param seed the seed of the first game
+	 * @param threads the number of games played at once
+	 * @param listener called with every result as games finish, one at a time
+	 * @return the totals of all the games
+	 * @throws InterruptedException if interrupted while waiting, the remaining games are cancelled
+	 */
+	@Nonnull public SimulationReport run(int games, int seed, int threads,
+	                                     @Nullable Consumer<GameResult> listener)
+			throws InterruptedException {
+		if (games < 0) throw new IllegalArgumentException("Bad game count: " + games);
+		if (threads < 1) throw new IllegalArgumentException("Bad thread count: " + threads);
+		var report = new SimulationReport();
+		long start = System.nanoTime();
+		var pool = Executors.newFixedThreadPool(threads);
+		var futures = new ArrayList<Future<Void>>(games);
+		try {
+			for (int i = 0; i < games; i++) {
+				int gameSeed = seed + i;
+				futures.add(pool.submit(() -> {
+					var result = runner.play(gameSeed, mrXAi.get(), detectivesAi.get());
+					synchronized (report) {
+						report.add(result);
+						if (listener != null) listener.accept(result);
+					}
+					return null;
+				}));
+			}
+			for (Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Game failed", e.getCause());
+				}
+			}
+		} finally {
+			// cancels the games not yet played, and interrupts those in progress
+			futures.forEach(future -> future.cancel(true));
+			pool.shutdownNow();
+		}
+		synchronized (report) {
+			report.wallNanos(System.nanoTime() - start);
+			return report;
+		}
+	}
+
+}
@@ -0,0 +1,146 @@
+package uk.ac.bris.cs.scotlandyard.sim;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Elo ratings of players from pairwise results, updated as results stream in.
+ * <br>
+ * Ratings are the maximum likelihood Bradley-Terry fit of all results so far, which unlike
+ * sequential Elo updates does not depend on the order games finish in. Every pair starts with a
+ * virtual draw so a player that never lost still gets a finite rating. Ratings average
+ * {@link #MEAN}; errors are the half width of the 95% confidence interval. Not thread safe.
+ */
+public final class EloRatings {
+
+	/**
+	 * The mean of all ratings
+	 */
+	public static final double MEAN = 1500;
+
+	private static final double ELO_PER_NAT = 400 / Math.log(10);
+	private static final double PRIOR = 0.5;
+	private static final int MAX_ITERATIONS = 1000;
+	private static final double TOLERANCE = 1e-9;
+
+	private final ImmutableList<String> names;
+	private final int[][] wins;
+	private final double[] strength;
+	private boolean stale;
+
+	/**
+	 * @param names the names of the players, indices used in {@link #record(int, int)}
+	 */
+	public EloRatings(@Nonnull List<String> names) {
+		this.names = ImmutableList.copyOf(names);
+		this.wins = new int[names.size()][names.size()];
+		this.strength = new double[names.size()];
+		Arrays.fill(strength, 1);
+	}
+
+	public int size() { return names.size(); }
+
+	@Nonnull public String name(int player) { return names.get(player); }
+
+	/**
+	 * @param winner the index of the winner
+	 * @param loser the index of the loser, must differ from the winner
+	 */
+	public void record(int winner, int loser) {
+		if (winner == loser) throw new IllegalArgumentException("Player cannot play itself");
+		wins[winner][loser]++;
+		stale = true;
+	}
+
+	/**
+	 * @return the number of games between the players
+	 */
+	public int games(int player, int opponent) {
+		return wins[player][opponent] + wins[opponent][player];
+	}
+
+	public int games(int player) {
+		return IntStream.range(0, size()).map(j -> j == player ? 0 : games(player, j)).sum();
+	}
+
+	public int wins(int player) { return IntStream.of(wins[player]).sum(); }
+
+	public double rating(int player) {
+		fit();
+		return MEAN + ELO_PER_NAT * Math.log(strength[player]);
+	}
+
+	/**
+	 * @return the half width of the 95% confidence interval of the rating
+	 */
+	public double error(int player) {
+		fit();
+		double information = 0;
+		for (int j = 0; j < size(); j++) {
+			if (j == player) continue;
+			double p = strength[player] / (strength[player] + strength[j]);
+			information += (games(player, j) + 2 * PRIOR) * p * (1 - p);
+		}
+		return information == 0 ? Double.POSITIVE_INFINITY :
+				1.96 * ELO_PER_NAT / Math.sqrt(information);
+	}
+
+	/**
+	 * @return the player indices, highest rated first
+	 */
+	@Nonnull public ImmutableList<Integer> ranking() {
+		fit();
+		return IntStream.range(0, size()).boxed()
+				.sorted(Comparator.comparingDouble((Integer i) -> strength[i]).reversed())
+				.collect(ImmutableList.toImmutableList());
+	}
+
+	// minorization-maximization (Hunter 2004), warm started from the previous fit
+	private void fit() {
+		if (!stale) return;
+		stale = false;
+		int n = size();
+		double[] next = new double[n];
+		for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+			double change = 0;
+			for (int i = 0; i < n; i++) {
+				double score = 0, denominator = 0;
+				for (int j = 0; j < n; j++) {
+					if (j == i) continue;
+					score += wins[i][j] + PRIOR;
+					denominator += (games(i, j) + 2 * PRIOR) / (strength[i] + strength[j]);
+				}
+				next[i] = denominator == 0 ? 1 : score / denominator;
+			}
+			double logMean = 0;
+			for (int i = 0; i < n; i++) logMean += Math.log(next[i]) / n;
+			for (int i = 0; i < n; i++) {
+				double normalised = next[i] / Math.exp(logMean);
+				change = Math.max(change, Math.abs(normalised - strength[i]) / strength[i]);
+				strength[i] = normalised;
+			}
+			if (change < TOLERANCE) break;
+		}
+	}
+
+	@Override public String toString() {
+		var builder = new StringBuilder(String.format("%-4s %-24s %7s %7s %6s %6s",
+				"rank", "name", "elo", "+/-", "games", "score"));
+		var ranking = ranking();
+		for (int rank = 0; rank < ranking.size(); rank++) {
+			int i = ranking.get(rank);
+			int games = games(i);
+			builder.append(String.format("%n%-4d %-24s %7.0f %7.0f %6d %5.1f%%", rank + 1,
+					name(i), rating(i), error(i), games,
+					games == 0 ? 0 : 100.0 * wins(i) / games));
+		}
+		return builder.toString();
+	}
+
+}
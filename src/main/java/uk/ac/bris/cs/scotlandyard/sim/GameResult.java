@@ -0,0 +1,99 @@
+package uk.ac.bris.cs.scotlandyard.sim;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+
+/**
+ * The outcome of a single headless game, see {@link GameRunner}
+ */
+public final class GameResult {
+
+	private final int seed;
+	private final String mrXAi;
+	private final String detectivesAi;
+	private final ImmutableSet<Piece> winner;
+	private final int rounds;
+	private final int overruns;
+	private final TimingStats mrXTimings;
+	private final TimingStats detectiveTimings;
+	@Nullable private final String forfeit;
+
+	GameResult(int seed, String mrXAi, String detectivesAi, ImmutableSet<Piece> winner,
+	           int rounds, int overruns, TimingStats mrXTimings, TimingStats detectiveTimings,
+	           @Nullable String forfeit) {
+		this.seed = seed;
+		this.mrXAi = Objects.requireNonNull(mrXAi);
+		this.detectivesAi = Objects.requireNonNull(detectivesAi);
+		this.winner = Objects.requireNonNull(winner);
+		this.rounds = rounds;
+		this.overruns = overruns;
+		this.mrXTimings = Objects.requireNonNull(mrXTimings);
+		this.detectiveTimings = Objects.requireNonNull(detectiveTimings);
+		this.forfeit = forfeit;
+	}
+
+	/**
+	 * @return the seed the start locations were generated from
+	 */
+	public int seed() { return seed; }
+
+	/**
+	 * @return the name of the Ai that played MrX
+	 */
+	@Nonnull public String mrXAi() { return mrXAi; }
+
+	/**
+	 * @return the name of the Ai that played the detectives
+	 */
+	@Nonnull public String detectivesAi() { return detectivesAi; }
+
+	@Nonnull public ImmutableSet<Piece> winner() { return winner; }
+
+	public boolean mrXWon() { return winner.stream().anyMatch(Piece::isMrX); }
+
+	/**
+	 * @return the number of rounds MrX played
+	 */
+	public int rounds() { return rounds; }
+
+	/**
+	 * @return the number of moves that took longer than the timeout
+	 */
+	public int overruns() { return overruns; }
+
+	/**
+	 * @return how long the MrX Ai took for each move
+	 */
+	@Nonnull public TimingStats mrXTimings() { return mrXTimings; }
+
+	/**
+	 * @return how long the detectives Ai took for each move
+	 */
+	@Nonnull public TimingStats detectiveTimings() { return detectiveTimings; }
+
+	/**
+	 * @return why the losing side forfeited the game, if it did; an Ai forfeits when it throws or
+	 * picks an illegal move
+	 */
+	@Nonnull public Optional<String> forfeit() { return Optional.ofNullable(forfeit); }
+
+	@Override public String toString() {
+		return "GameResult{" +
+				"seed=" + seed +
+				", mrXAi=" + mrXAi +
+				", detectivesAi=" + detectivesAi +
+				", winner=" + winner +
+				", rounds=" + rounds +
+				", overruns=" + overruns +
+				(forfeit == null ? "" : ", forfeit=" + forfeit) +
+				'}';
+	}
+
+}
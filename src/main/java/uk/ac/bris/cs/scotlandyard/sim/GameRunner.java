@@ -0,0 +1,172 @@
+package uk.ac.bris.cs.scotlandyard.sim;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import io.atlassian.fugue.Pair;
+
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.ai.AiSupervisor;
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+import uk.ac.bris.cs.scotlandyard.model.AnytimeAi;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MyGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.generateDetectiveLocations;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.generateMrXLocation;
+
+/**
+ * Plays a game between two {@link Ai}s on the calling thread, without a UI. Supervised Ais are
+ * called on threads of their own instead, see {@link AiSupervisor}.
+ * <br>
+ * The Ais are driven the same way as the UI does: one Ai plays all the detectives and every
+ * {@link Ai#pickMove(uk.ac.bris.cs.scotlandyard.model.Board, Pair)} gets the current
+ * {@link GameState} and the whole timeout.
+ */
+public final class GameRunner {
+
+	private final GameSetup setup;
+	private final int detectiveCount;
+	private final Pair<Long, TimeUnit> timeout;
+	private final boolean supervised;
+
+	/**
+	 * @param setup the game setup
+	 * @param detectiveCount the number of detectives, in [1, 5]
+	 * @param timeout the time each Ai is given per move
+	 */
+	public GameRunner(@Nonnull GameSetup setup, int detectiveCount,
+	                  @Nonnull Pair<Long, TimeUnit> timeout) {
+		this(setup, detectiveCount, timeout, false);
+	}
+
+	/**
+	 * @param setup the game setup
+	 * @param detectiveCount the number of detectives, in [1, 5]
+	 * @param timeout the time each Ai is given per move
+	 * @param supervised whether the Ais run under an {@link AiSupervisor}, which plays a fallback
+	 * move for them when they overrun instead of waiting
+	 */
+	public GameRunner(@Nonnull GameSetup setup, int detectiveCount,
+	                  @Nonnull Pair<Long, TimeUnit> timeout, boolean supervised) {
+		if (detectiveCount < 1 || detectiveCount > ScotlandYard.DETECTIVES.size())
+			throw new IllegalArgumentException("Bad detective count: " + detectiveCount);
+		if (timeout.left() <= 0) throw new IllegalArgumentException("Bad timeout: " + timeout);
+		this.setup = Objects.requireNonNull(setup);
+		this.detectiveCount = detectiveCount;
+		this.timeout = timeout;
+		this.supervised = supervised;
+	}
+
+	/**
+	 * @param seed the seed for the start locations
+	 * @return MrX at a location picked with {@link ScotlandYard#generateMrXLocation(int)}
+	 */
+	@Nonnull public static Player mrX(int seed) {
+		return new Player(Piece.MrX.MRX, defaultMrXTickets(), generateMrXLocation(seed));
+	}
+
+	/**
+	 * @param seed the seed for the start locations
+	 * @param count the number of detectives
+	 * @return detectives at locations picked with
+	 * {@link ScotlandYard#generateDetectiveLocations(int, int)}
+	 */
+	@Nonnull public static ImmutableList<Player> detectives(int seed, int count) {
+		var pieces = ScotlandYard.DETECTIVES.asList();
+		var locations = generateDetectiveLocations(seed, count);
+		var builder = ImmutableList.<Player>builder();
+		for (int i = 0; i < count; i++)
+			builder.add(new Player(pieces.get(i), defaultDetectiveTickets(), locations.get(i)));
+		return builder.build();
+	}
+
+	/**
+	 * Plays a game to the end, calling {@link Ai#onStart()} and {@link Ai#onTerminate()} on both
+	 * Ais. An Ai that throws or picks an illegal move forfeits the game. When supervised, a move
+	 * the Ai didn't finish in time counts as an overrun, unless it is an {@link AnytimeAi} that
+	 * published a move.
+	 *
+	 * @param seed the seed for the start locations
+	 * @param mrXAi the Ai for MrX
+	 * @param detectivesAi the Ai for the detectives, may be the same instance as mrXAi
+	 * @return the result of the game
+	 */
+	@Nonnull public GameResult play(int seed, @Nonnull Ai mrXAi, @Nonnull Ai detectivesAi) {
+		var supervisor = supervised ? new AiSupervisor() : null;
+		var detectives = detectives(seed, detectiveCount);
+		GameState state = new MyGameStateFactory().build(setup, mrX(seed), detectives);
+		var mrXTimings = new TimingStats();
+		var detectiveTimings = new TimingStats();
+		long limit = timeout.right().toNanos(timeout.left());
+		int overruns = 0;
+		String forfeit = null;
+		ImmutableSet<Piece> winner = ImmutableSet.of();
+		mrXAi.onStart();
+		if (detectivesAi != mrXAi) detectivesAi.onStart();
+		try {
+			while ((winner = state.getWinner()).isEmpty()) {
+				var moves = state.getAvailableMoves();
+				boolean mrXTurn = moves.iterator().next().commencedBy().isMrX();
+				Ai ai = mrXTurn ? mrXAi : detectivesAi;
+				Move move;
+				long start = System.nanoTime();
+				boolean overran = false;
+				Throwable thrown = null;
+				try {
+					if (supervisor == null) move = ai.pickMove(state, timeout);
+					else {
+						var decision = supervisor.decide(ai, state, timeout);
+						move = decision.move();
+						thrown = decision.error();
+						overran = decision.overran(ai);
+					}
+				} catch (RuntimeException e) {
+					move = null;
+					thrown = e;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new CancellationException("Interrupted while " + ai.name() + " moved");
+				}
+				if (thrown != null) {
+					forfeit = ai.name() + " threw " + thrown;
+					winner = winners(!mrXTurn, detectives);
+					break;
+				}
+				long elapsed = System.nanoTime() - start;
+				(mrXTurn ? mrXTimings : detectiveTimings).record(elapsed);
+				if (overran || elapsed > limit) overruns++;
+				if (move == null || !moves.contains(move)) {
+					forfeit = ai.name() + " picked an illegal move " + move;
+					winner = winners(!mrXTurn, detectives);
+					break;
+				}
+				state = state.advance(move);
+			}
+		} finally {
+			if (supervisor != null) supervisor.close();
+			mrXAi.onTerminate();
+			if (detectivesAi != mrXAi) detectivesAi.onTerminate();
+		}
+		return new GameResult(seed, mrXAi.name(), detectivesAi.name(), winner,
+				state.getMrXTravelLog().size(), overruns, mrXTimings, detectiveTimings, forfeit);
+	}
+
+	private static ImmutableSet<Piece> winners(boolean mrX, ImmutableList<Player> detectives) {
+		if (mrX) return ImmutableSet.of(Piece.MrX.MRX);
+		return detectives.stream().map(Player::piece).collect(ImmutableSet.toImmutableSet());
+	}
+
+}
@@ -0,0 +1,95 @@
+package uk.ac.bris.cs.scotlandyard.sim;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Totals over a batch of games, see {@link BatchSimulator}. Not thread safe.
+ */
+public final class SimulationReport {
+
+	private String mrXAi = "?";
+	private String detectivesAi = "?";
+	private final TimingStats mrXTimings = new TimingStats();
+	private final TimingStats detectiveTimings = new TimingStats();
+	private int games;
+	private int mrXWins;
+	private int forfeits;
+	private long rounds;
+	private long overruns;
+	private long wallNanos;
+
+	void add(GameResult result) {
+		if (games++ == 0) {
+			mrXAi = result.mrXAi();
+			detectivesAi = result.detectivesAi();
+		}
+		if (result.mrXWon()) mrXWins++;
+		if (result.forfeit().isPresent()) forfeits++;
+		rounds += result.rounds();
+		overruns += result.overruns();
+		mrXTimings.merge(result.mrXTimings());
+		detectiveTimings.merge(result.detectiveTimings());
+	}
+
+	void wallNanos(long nanos) { wallNanos = nanos; }
+
+	@Nonnull public String mrXAi() { return mrXAi; }
+
+	@Nonnull public String detectivesAi() { return detectivesAi; }
+
+	public int games() { return games; }
+
+	public int mrXWins() { return mrXWins; }
+
+	public int detectiveWins() { return games - mrXWins; }
+
+	/**
+	 * @return the number of games lost by an Ai throwing or picking an illegal move
+	 */
+	public int forfeits() { return forfeits; }
+
+	/**
+	 * @return the number of moves that took longer than the timeout
+	 */
+	public long overruns() { return overruns; }
+
+	public double mrXWinRate() { return games == 0 ? 0 : mrXWins / (double) games; }
+
+	/**
+	 * @return the half width of the 95% confidence interval of {@link #mrXWinRate()}, using the
+	 * normal approximation
+	 */
+	public double mrXWinRateError() {
+		if (games == 0) return 0;
+		double p = mrXWinRate();
+		return 1.96 * Math.sqrt(p * (1 - p) / games);
+	}
+
+	public double meanRounds() { return games == 0 ? 0 : rounds / (double) games; }
+
+	@Nonnull public TimingStats mrXTimings() { return mrXTimings; }
+
+	@Nonnull public TimingStats detectiveTimings() { return detectiveTimings; }
+
+	/**
+	 * @return the wall clock time the batch took
+	 */
+	public long wallNanos() { return wallNanos; }
+
+	@Override public String toString() {
+		return String.format("%s (MrX) vs %s (detectives), %d games in %.1fs%n" +
+						"  MrX wins:        %d (%.1f%% +/- %.1f%%)%n" +
+						"  detective wins:  %d%n" +
+						"  forfeits:        %d%n" +
+						"  mean rounds:     %.2f%n" +
+						"  overruns:        %d%n" +
+						"  MrX moves:       %s%n" +
+						"  detective moves: %s",
+				mrXAi, detectivesAi, games, wallNanos / (double) TimeUnit.SECONDS.toNanos(1),
+				mrXWins, 100 * mrXWinRate(), 100 * mrXWinRateError(),
+				detectiveWins(), forfeits, meanRounds(), overruns, mrXTimings, detectiveTimings);
+	}
+
+}
@@ -0,0 +1,94 @@
+package uk.ac.bris.cs.scotlandyard.sim;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A mergeable histogram of durations, precise to within 1/8 (12.5%) of the value.
+ * <br>
+ * Each power of two is split into 8 linear sub-buckets so memory stays fixed no matter how many
+ * samples are recorded. Not thread safe, merge per-thread instances instead.
+ */
+public final class TimingStats {
+
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+	private final long[] buckets = new long[BUCKETS];
+	private long count;
+	private long totalNanos;
+	private long maxNanos;
+
+	static int bucket(long nanos) {
+		if (nanos < SUB_BUCKETS) return (int) nanos;
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+		int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		long sub = bucket % SUB_BUCKETS;
+		return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+	}
+
+	/**
+	 * @param nanos the duration to record, negative durations count as 0
+	 */
+	public void record(long nanos) {
+		nanos = Math.max(0, nanos);
+		buckets[bucket(nanos)]++;
+		count++;
+		totalNanos += nanos;
+		maxNanos = Math.max(maxNanos, nanos);
+	}
+
+	/**
+	 * @param other the stats to add to this one, unchanged
+	 */
+	public void merge(@Nonnull TimingStats other) {
+		for (int i = 0; i < BUCKETS; i++) buckets[i] += other.buckets[i];
+		count += other.count;
+		totalNanos += other.totalNanos;
+		maxNanos = Math.max(maxNanos, other.maxNanos);
+	}
+
+	public long count() { return count; }
+
+	public long totalNanos() { return totalNanos; }
+
+	public long maxNanos() { return maxNanos; }
+
+	public long meanNanos() { return count == 0 ? 0 : totalNanos / count; }
+
+	/**
+	 * @param quantile the quantile, in [0, 1]
+	 * @return an upper bound of the duration at the quantile, 0 if nothing was recorded
+	 */
+	public long quantileNanos(double quantile) {
+		if (quantile < 0 || quantile > 1)
+			throw new IllegalArgumentException("Bad quantile: " + quantile);
+		if (count == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(quantile * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += buckets[i];
+			if (seen >= rank) return Math.min(upperBound(i), maxNanos);
+		}
+		return maxNanos;
+	}
+
+	@Override public String toString() {
+		return String.format("n=%d mean=%.2fms p50=%.2fms p99=%.2fms max=%.2fms", count,
+				millis(meanNanos()), millis(quantileNanos(0.5)), millis(quantileNanos(0.99)),
+				millis(maxNanos));
+	}
+
+	private static double millis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+}
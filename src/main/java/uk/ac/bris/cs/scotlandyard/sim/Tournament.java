@@ -0,0 +1,195 @@
+package uk.ac.bris.cs.scotlandyard.sim;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+
+/**
+ * A round robin tournament: every entrant plays MrX against every other entrant as the
+ * detectives.
+ * <br>
+ * Game {@code k} of every pairing is seeded with {@code seed + k}, so both entrants of a pair play
+ * each start position once from either side. Games are started round by round, in order, the
+ * standings are therefore balanced, up to the games in progress, at any point the tournament is
+ * stopped.
+ * <br>
+ * Finished games can be appended to a checkpoint file, one tab separated
+ * {@code mrX detectives seed winner} line per game. Running again with the same file skips the
+ * games already played and rates them along with the new ones.
+ */
+public final class Tournament {
+
+	/**
+	 * A player of the tournament
+	 */
+	public static final class Entrant {
+		private final String name;
+		private final Supplier<? extends Ai> ai;
+
+		/**
+		 * @param name the unique name of the entrant, used in the checkpoint
+		 * @param ai creates the Ai, called once per game
+		 */
+		public Entrant(@Nonnull String name, @Nonnull Supplier<? extends Ai> ai) {
+			if (name.isEmpty() || name.contains("\t") || name.contains("\n"))
+				throw new IllegalArgumentException("Bad entrant name: " + name);
+			this.name = name;
+			this.ai = Objects.requireNonNull(ai);
+		}
+
+		@Nonnull public String name() { return name; }
+	}
+
+	private static final String MRX_WON = "MrX";
+	private static final String DETECTIVES_WON = "Detectives";
+
+	private final GameRunner runner;
+	private final ImmutableList<Entrant> entrants;
+
+	/**
+	 * @param runner plays each game
+	 * @param entrants at least two entrants with unique names
+	 */
+	public Tournament(@Nonnull GameRunner runner, @Nonnull List<Entrant> entrants) {
+		this.runner = Objects.requireNonNull(runner);
+		this.entrants = ImmutableList.copyOf(entrants);
+		if (this.entrants.size() < 2)
+			throw new IllegalArgumentException("Need at least two entrants");
+		if (this.entrants.stream().map(Entrant::name).distinct().count() != this.entrants.size())
+			throw new IllegalArgumentException("Entrant names are not unique");
+	}
+
+	/**
+	 * @param gamesPerPairing the number of games of each ordered pair of entrants
+	 * @param seed the seed of the first game of every pairing
+	 * @param threads the number of games played at once
+	 * @param checkpoint the file to resume from and append finished games to, or null
+	 * @param listener called with every result and the updated standings, one at a time
+	 * @return the standings
+	 * @throws IOException if the checkpoint cannot be read or written
+	 * @throws InterruptedException if interrupted while waiting, the remaining games are cancelled
+	 */
+	@Nonnull public TournamentReport run(
+			int gamesPerPairing, int seed, int threads, @Nullable Path checkpoint,
+			@Nullable BiConsumer<GameResult, TournamentReport> listener)
+			throws IOException, InterruptedException {
+		if (gamesPerPairing < 0)
+			throw new IllegalArgumentException("Bad game count: " + gamesPerPairing);
+		if (threads < 1) throw new IllegalArgumentException("Bad thread count: " + threads);
+		var report = new TournamentReport(entrants.stream()
+				.map(Entrant::name)
+				.collect(ImmutableList.toImmutableList()));
+		var played = new HashSet<List<Integer>>();
+		boolean partialLine = false;
+		if (checkpoint != null && Files.exists(checkpoint))
+			partialLine = resume(checkpoint, report, played);
+
+		var tasks = new ArrayList<Callable<Void>>();
+		try (var writer = checkpoint == null ? null : Files.newBufferedWriter(checkpoint,
+				StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+			if (writer != null && partialLine) writer.newLine();
+			for (int game = 0; game < gamesPerPairing; game++) {
+				for (int mrX = 0; mrX < entrants.size(); mrX++) {
+					for (int detectives = 0; detectives < entrants.size(); detectives++) {
+						int gameSeed = seed + game;
+						if (mrX == detectives) continue;
+						if (played.contains(List.of(mrX, detectives, gameSeed))) continue;
+						tasks.add(task(mrX, detectives, gameSeed, report, writer, listener));
+					}
+				}
+			}
+			// a FIFO queue starts the games in the order of their rounds
+			var pool = Executors.newFixedThreadPool(threads);
+			var futures = new ArrayList<Future<Void>>(tasks.size());
+			try {
+				for (Callable<Void> task : tasks) futures.add(pool.submit(task));
+				for (Future<Void> future : futures) {
+					try {
+						future.get();
+					} catch (ExecutionException e) {
+						throw new IllegalStateException("Game failed", e.getCause());
+					}
+				}
+			} finally {
+				// cancels the games not yet played, and interrupts those in progress
+				futures.forEach(future -> future.cancel(true));
+				pool.shutdownNow();
+			}
+		}
+		synchronized (report) {
+			return report;
+		}
+	}
+
+	private Callable<Void> task(int mrX, int detectives, int seed, TournamentReport report,
+	                            @Nullable BufferedWriter writer,
+	                            @Nullable BiConsumer<GameResult, TournamentReport> listener) {
+		return () -> {
+			var result = runner.play(seed,
+					entrants.get(mrX).ai.get(), entrants.get(detectives).ai.get());
+			synchronized (report) {
+				report.add(mrX, detectives, result.mrXWon());
+				if (writer != null) {
+					writer.write(String.join("\t", entrants.get(mrX).name,
+							entrants.get(detectives).name, String.valueOf(seed),
+							result.mrXWon() ? MRX_WON : DETECTIVES_WON));
+					writer.newLine();
+					writer.flush();
+				}
+				if (listener != null) listener.accept(result, report);
+			}
+			return null;
+		};
+	}
+
+	// returns whether the last line was cut short and is missing its line break
+	private boolean resume(Path checkpoint, TournamentReport report, Set<List<Integer>> played)
+			throws IOException {
+		Map<String, Integer> indices = new HashMap<>();
+		for (int i = 0; i < entrants.size(); i++) indices.put(entrants.get(i).name, i);
+		int resumed = 0;
+		String content = Files.readString(checkpoint, StandardCharsets.UTF_8);
+		for (String line : content.lines().toList()) {
+			// skip lines cut short by a crash and games of entrants not in this tournament
+			String[] fields = line.split("\t");
+			if (fields.length != 4) continue;
+			Integer mrX = indices.get(fields[0]);
+			Integer detectives = indices.get(fields[1]);
+			if (mrX == null || detectives == null || mrX.equals(detectives)) continue;
+			if (!fields[3].equals(MRX_WON) && !fields[3].equals(DETECTIVES_WON)) continue;
+			int seed;
+			try {
+				seed = Integer.parseInt(fields[2]);
+			} catch (NumberFormatException e) { continue; }
+			if (!played.add(List.of(mrX, detectives, seed))) continue;
+			report.add(mrX, detectives, fields[3].equals(MRX_WON));
+			resumed++;
+		}
+		report.resumed(resumed);
+		return !content.isEmpty() && !content.endsWith("\n");
+	}
+
+}
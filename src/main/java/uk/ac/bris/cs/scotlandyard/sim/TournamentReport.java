@@ -0,0 +1,76 @@
+package uk.ac.bris.cs.scotlandyard.sim;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Standings of a {@link Tournament}, updated as games finish. Not thread safe.
+ */
+public final class TournamentReport {
+
+	private final EloRatings ratings;
+	private final int[][] mrXWins;
+	private final int[][] games;
+	private int total;
+	private int resumed;
+
+	TournamentReport(List<String> names) {
+		this.ratings = new EloRatings(names);
+		this.mrXWins = new int[names.size()][names.size()];
+		this.games = new int[names.size()][names.size()];
+	}
+
+	void add(int mrX, int detectives, boolean mrXWon) {
+		games[mrX][detectives]++;
+		total++;
+		if (mrXWon) {
+			mrXWins[mrX][detectives]++;
+			ratings.record(mrX, detectives);
+		} else ratings.record(detectives, mrX);
+	}
+
+	void resumed(int count) { resumed = count; }
+
+	/**
+	 * @return the ratings of the entrants, by index in the tournament
+	 */
+	@Nonnull public EloRatings ratings() { return ratings; }
+
+	/**
+	 * @return the number of games played, including the resumed ones
+	 */
+	public int games() { return total; }
+
+	/**
+	 * @return the number of games with the first entrant as MrX against the second
+	 */
+	public int games(int mrX, int detectives) { return games[mrX][detectives]; }
+
+	/**
+	 * @return the number of those games MrX won
+	 */
+	public int mrXWins(int mrX, int detectives) { return mrXWins[mrX][detectives]; }
+
+	/**
+	 * @return the number of games read back from the checkpoint
+	 */
+	public int resumed() { return resumed; }
+
+	@Override public String toString() {
+		var builder = new StringBuilder(ratings.toString());
+		builder.append(String.format("%n%nMrX win rate (rows MrX, columns detectives)%n%-24s",
+				""));
+		int n = ratings.size();
+		for (int j = 0; j < n; j++) builder.append(String.format(" %8.8s", ratings.name(j)));
+		for (int i = 0; i < n; i++) {
+			builder.append(String.format("%n%-24.24s", ratings.name(i)));
+			for (int j = 0; j < n; j++) {
+				builder.append(games[i][j] == 0 ? String.format(" %8s", "-") :
+						String.format(" %7.1f%%", 100.0 * mrXWins[i][j] / games[i][j]));
+			}
+		}
+		return builder.toString();
+	}
+
+}
@@ -9,6 +9,9 @@ import net.kurobako.gesturefx.GesturePane;
 import net.kurobako.gesturefx.GesturePane.FitMode;
 import net.kurobako.gesturefx.GesturePane.ScrollBarPolicy;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -50,6 +53,10 @@ import uk.ac.bris.cs.fxkit.Controller;
 import uk.ac.bris.cs.fxkit.interpolator.DecelerateInterpolator;
 import uk.ac.bris.cs.scotlandyard.ResourceManager;
 import uk.ac.bris.cs.scotlandyard.ResourceManager.ImageResource;
+import uk.ac.bris.cs.scotlandyard.ai.AiSupervisor;
+import uk.ac.bris.cs.scotlandyard.ai.AiSupervisor.Decision;
+import uk.ac.bris.cs.scotlandyard.ai.AiSupervisor.Pondering;
+import uk.ac.bris.cs.scotlandyard.ai.AiTelemetry;
 import uk.ac.bris.cs.scotlandyard.model.Ai;
 import uk.ac.bris.cs.scotlandyard.model.Board;
 import uk.ac.bris.cs.scotlandyard.model.Model;
@@ -59,6 +66,7 @@ import uk.ac.bris.cs.scotlandyard.model.Move.FunctionalVisitor;
 import uk.ac.bris.cs.scotlandyard.model.Move.SingleMove;
 import uk.ac.bris.cs.scotlandyard.model.Move.Visitor;
 import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.PonderingAi;
 import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
 import uk.ac.bris.cs.scotlandyard.ui.GameControl;
 import uk.ac.bris.cs.scotlandyard.ui.Utils;
@@ -150,14 +158,18 @@ class MapController implements Controller, GameControl {
 	Consumer<ImmutableSet<Piece>> timeout;
 
 	Option<ExecutorService> aiExecutor = none();
+	Option<AiSupervisor> aiSupervisor = none();
+	Option<Pondering> pondering = none();
 	Option<Ai> mrXAi = none();
 	Option<Ai> detectiveAi = none();
+	final AiTelemetry telemetry = new AiTelemetry(AiTelemetry.DEFAULT_CAPACITY);
 
 	@Override public void onGameAttach(
 			Model model, ModelProperty config, Consumer<ImmutableSet<Piece>> timeout) {
 		this.model = requireNonNull(model);
 		this.config = requireNonNull(config);
 		this.timeout = requireNonNull(timeout);
+		telemetry.clear();
 		unlock();
 		counters.clear();
 		counterPane.getChildren().clear();
@@ -188,8 +200,11 @@ class MapController implements Controller, GameControl {
 			detectiveAi = config.getDetectivesAi();
 			mrXAi.forEach(Ai::onStart);
 			detectiveAi.forEach(Ai::onStart);
-			return Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+			aiSupervisor = some(new AiSupervisor(telemetry));
+			// waits on the supervisor, the Ais themselves run on the supervisor's threads
+			return Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
 					.setNameFormat("ai-thread-%d")
+					.setDaemon(true)
 					.setUncaughtExceptionHandler((t, e) -> Utils.handleFatalException(new RuntimeException("An ai instance crashed on thread " + t.getName(), e)))
 					.build());
 		}));
@@ -203,8 +218,33 @@ class MapController implements Controller, GameControl {
 			mrXAi.forEach(Ai::onTerminate);
 			detectiveAi.forEach(Ai::onTerminate);
 			aiExecutor.forEach(x -> runInContainment(x::shutdownNow));
+			aiSupervisor.forEach(AiSupervisor::close);
+			pondering = none();
 			return Unit.VALUE;
 		});
+		aiSupervisor.filter(x -> x.running() > 0).forEach(x -> System.err.println(
+				x.running() + " Ai thread(s) ignored cancellation and are still running"));
+		exportTelemetry();
+	}
+
+	// with -Dscotlandyard.telemetry=<directory>, every game's Ai timings are written there
+	private void exportTelemetry() {
+		var directory = System.getProperty("scotlandyard.telemetry");
+		if (directory == null || telemetry.recorded() == 0) return;
+		var name = "ai-telemetry-" + System.currentTimeMillis();
+		var csv = Paths.get(directory, name + ".csv");
+		try {
+			Files.createDirectories(csv.getParent());
+			try (var out = Files.newBufferedWriter(csv)) {
+				telemetry.writeCsv(out);
+			}
+			try (var out = Files.newBufferedWriter(Paths.get(directory, name + ".json"))) {
+				telemetry.writeJson(out);
+			}
+			System.err.println("Ai telemetry written to " + csv.toAbsolutePath());
+		} catch (IOException e) {
+			System.err.println("Unable to write Ai telemetry: " + e);
+		}
 	}
 
 	private static <T> T runInContainment(Callable<T> r) {
@@ -222,32 +262,30 @@ class MapController implements Controller, GameControl {
 		//var terminate = new AtomicBoolean(false);
 		var moves = board.getCurrentBoard().getAvailableMoves();
 		drawMoveHighlights(moves);
+		var supervisor = aiSupervisor.get();
 		aiExecutor.forEach(x -> x.submit(() -> {
+			final Decision decision;
 			try {
-				final var move = ai.pickMove(board.getCurrentBoard(), new Pair<>(config.timeoutProperty().get().getSeconds(), TimeUnit.SECONDS));
-				if (!moves.contains(move)) {
+				decision = supervisor.decide(ai, board.getCurrentBoard(), new Pair<>(config.timeoutProperty().get().getSeconds(), TimeUnit.SECONDS));
+			} catch (InterruptedException e) {
+				return; // the game was detached
+			}
+			switch (decision.outcome()) {
+				case ILLEGAL_MOVE:
 					Utils.handleFatalException(
-							new Exception("Ai(" + ai.name() + ") selected an invalid move, got: " + move + ", was expecting one of " + moves));
-				} else {
-					Platform.runLater(() -> selectAndMove(board, move));
-				}
-			} catch (Exception e) {
-				Utils.handleFatalException(new Exception("Ai(" + ai.name() + ") " +
-						"threw an exception while picking a move", e));
+							new Exception("Ai(" + ai.name() + ") selected an invalid move, got: " + decision.move() + ", was expecting one of " + moves));
+					break;
+				case THREW:
+					Utils.handleFatalException(new Exception("Ai(" + ai.name() + ") " +
+							"threw an exception while picking a move", decision.error()));
+					break;
+				default:
+					if (decision.overran(ai))
+						System.err.println("Ai(" + ai.name() + ") ran out of time, played " + decision);
+					Platform.runLater(() -> selectAndMove(board, decision.move()));
 			}
 		}, aiExecutor));
-		return () -> handleAITimeOut(ai);
-	}
-
-	private void handleAITimeOut(Ai ai) {
-		aiExecutor.forEach(x -> {
-			try {
-				x.awaitTermination(1l, TimeUnit.SECONDS);
-			} catch (InterruptedException e) {
-				Utils.handleFatalException(
-						new Exception("Ai(" + ai.name() + ") was interrupted during the bail-out grace period.", e));
-			}
-		});
+		return supervisor::cancel;
 	}
 
 	Runnable requestHuman(ImmutableSet<Move> moves, Consumer<Move> moveCallback) {
@@ -299,6 +337,7 @@ class MapController implements Controller, GameControl {
 			terminateAction = requestHuman(
 					board.getCurrentBoard().getAvailableMoves(), m -> selectAndMove(model, m));
 		}
+		if (!mrX) requestPonder(board);
 
 		notifications.show("notify_timeout",
 				new NotificationBuilder(
@@ -317,7 +356,21 @@ class MapController implements Controller, GameControl {
 
 	}
 
+	// MrX's Ai thinks while the detectives move, unless it is also the one moving them
+	private void requestPonder(Model board) {
+		if (mrXAi.isEmpty() || !(mrXAi.get() instanceof PonderingAi)) return;
+		if (detectiveAi.exists(ai -> ai == mrXAi.get())) return;
+		pondering = aiSupervisor.map(x -> x.ponder((PonderingAi) mrXAi.get(), board.getCurrentBoard()));
+	}
+
+	// stopped on the ai thread, ahead of the next Ai request
+	private void stopPondering(Move move) {
+		pondering.forEach(p -> aiExecutor.forEach(x -> x.submit(() -> p.stop(move))));
+		pondering = none();
+	}
+
 	void selectAndMove(Model model, Move m) {
+		stopPondering(m);
 		notifications.dismissAll();
 		clearMoveHints();
 		var counter = counters.get(m.commencedBy());
@@ -0,0 +1,33 @@
+package uk.ac.bris.cs.scotlandyard;
+
+import org.junit.Test;
+
+import uk.ac.bris.cs.scotlandyard.ai.AlphaBetaAi;
+import uk.ac.bris.cs.scotlandyard.ai.MctsAi;
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+import uk.ac.bris.cs.scotlandyard.model.AnytimeAi;
+import uk.ac.bris.cs.scotlandyard.model.PonderingAi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests that the Ais on the classpath are found by {@link ResourceManager#scanAis()} and by name
+ */
+public class ResourceManagerTest {
+
+	@Test public void testScanSkipsInterfacesExtendingAi() {
+		var ais = ResourceManager.scanAis();
+		assertThat(ais).hasAtLeastOneElementOfType(AlphaBetaAi.class)
+				.hasAtLeastOneElementOfType(MctsAi.class)
+				.allSatisfy(ai -> assertThat(ai.getClass().isInterface()).isFalse());
+		assertThat(ais).extracting(Ai::getClass)
+				.doesNotContain(AnytimeAi.class, PonderingAi.class);
+		assertThat(ais).anySatisfy(ai -> assertThat(ai).isInstanceOf(PonderingAi.class));
+	}
+
+	@Test public void testAisAreFoundByName() {
+		assertThat(Simulator.aiSupplier("MCTS", 1).get()).isInstanceOf(MctsAi.class);
+		assertThat(Simulator.aiSupplier("Alpha-Beta", 1).get()).isInstanceOf(AlphaBetaAi.class);
+	}
+
+}
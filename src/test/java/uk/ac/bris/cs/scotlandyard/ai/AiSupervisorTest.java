@@ -0,0 +1,256 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.io.Resources;
+
+import io.atlassian.fugue.Pair;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.ai.AiSupervisor.Decision;
+import uk.ac.bris.cs.scotlandyard.ai.AiSupervisor.Outcome;
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+import uk.ac.bris.cs.scotlandyard.model.AnytimeAi;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveSink;
+import uk.ac.bris.cs.scotlandyard.model.MyGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.sim.GameRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24MOVES;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests the deadline, cancellation and fallbacks of {@link AiSupervisor}
+ */
+public class AiSupervisorTest {
+
+	private static final Pair<Long, TimeUnit> TIMEOUT = Pair.pair(1L, TimeUnit.SECONDS);
+	private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private static GameSetup setup;
+	private static GameState state;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(
+				Resources.getResource("graph.txt"), StandardCharsets.UTF_8)), STANDARD24MOVES);
+		state = new MyGameStateFactory().build(setup,
+				new Player(Piece.MrX.MRX, defaultMrXTickets(), 106),
+				MrXTrackerTest.detectives(1, 5));
+	}
+
+	private interface Picker {
+		Move pick(Board board) throws Exception;
+	}
+
+	private static Ai ai(Picker picker) {
+		return new Ai() {
+			@Nonnull @Override public String name() { return "Test"; }
+
+			@Nonnull @Override
+			public Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair) {
+				try {
+					return picker.pick(board);
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+	}
+
+	private static Decision decide(AiSupervisor supervisor, Ai ai) throws InterruptedException {
+		Decision decision = supervisor.decide(ai, state, TIMEOUT);
+		assertThat(decision.elapsedNanos()).isLessThan(TIMEOUT_NANOS);
+		return decision;
+	}
+
+	@Test public void testMoveInTimeIsPicked() throws Exception {
+		var telemetry = new AiTelemetry(4);
+		try (var supervisor = new AiSupervisor(telemetry)) {
+			Move last = state.getAvailableMoves().asList().get(3);
+			Decision decision = decide(supervisor, ai(board -> last));
+			assertThat(decision.outcome()).isEqualTo(Outcome.PICKED);
+			assertThat(decision.move()).isEqualTo(last);
+		}
+		assertThat(telemetry.samples()).singleElement().satisfies(sample -> {
+			assertThat(sample.mrX()).isTrue();
+			assertThat(sample.outcome()).isEqualTo(AiTelemetry.Outcome.OK);
+		});
+	}
+
+	@Test public void testIllegalAndThrowingAisAreReported() throws Exception {
+		try (var supervisor = new AiSupervisor()) {
+			Move detectiveMove = state.advance(state.getAvailableMoves().iterator().next())
+					.getAvailableMoves().iterator().next();
+			Decision illegal = decide(supervisor, ai(board -> detectiveMove));
+			assertThat(illegal.outcome()).isEqualTo(Outcome.ILLEGAL_MOVE);
+			assertThat(illegal.outcome().playable()).isFalse();
+			assertThat(illegal.move()).isEqualTo(detectiveMove);
+
+			Decision threw = decide(supervisor, ai(board -> {
+				throw new UnsupportedOperationException("boom");
+			}));
+			assertThat(threw.outcome()).isEqualTo(Outcome.THREW);
+			assertThat(threw.error()).isInstanceOf(UnsupportedOperationException.class);
+		}
+	}
+
+	@Test public void testCooperativeAiGivesItsBestSoFar() throws Exception {
+		try (var supervisor = new AiSupervisor()) {
+			Move best = state.getAvailableMoves().asList().get(7);
+			Ai ai = ai(board -> {
+				var call = AiSupervisor.current();
+				call.publish(best);
+				while (!call.cancelled()) Thread.onSpinWait();
+				return board.getAvailableMoves().iterator().next();
+			});
+			Decision decision = decide(supervisor, ai);
+			assertThat(decision.outcome()).isEqualTo(Outcome.BEST_SO_FAR);
+			assertThat(decision.overran(ai)).isTrue();
+			assertThat(decision.move()).isEqualTo(best);
+			assertThat(decision.elapsedNanos())
+					.isGreaterThan(TIMEOUT_NANOS - AiSupport.margin(TIMEOUT_NANOS));
+		}
+	}
+
+	@Test public void testAnytimeAiSearchesToTheDeadline() throws Exception {
+		var moves = state.getAvailableMoves().asList();
+		AnytimeAi ai = new AnytimeAi() {
+			@Nonnull @Override public String name() { return "Anytime"; }
+
+			@Nonnull @Override
+			public Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair) {
+				throw new AssertionError("Not called when supervised");
+			}
+
+			@Nonnull @Override public Move pickMove(@Nonnull Board board,
+			                                        Pair<Long, TimeUnit> timeoutPair,
+			                                        @Nonnull MoveSink sink) {
+				for (int i = 0; !sink.cancelled(); i = (i + 1) % moves.size()) {
+					sink.publish(moves.get(i));
+					try {
+						Thread.sleep(1);
+					} catch (InterruptedException e) {
+						break;
+					}
+				}
+				return moves.get(0);
+			}
+		};
+		try (var supervisor = new AiSupervisor()) {
+			Decision decision = decide(supervisor, ai);
+			assertThat(decision.outcome()).isEqualTo(Outcome.BEST_SO_FAR);
+			assertThat(decision.overran(ai)).isFalse();
+			assertThat(moves).contains(decision.move());
+			assertThat(decision.elapsedNanos())
+					.isGreaterThan(TIMEOUT_NANOS - AiSupport.margin(TIMEOUT_NANOS));
+		}
+	}
+
+	@Test public void testRunawayAiFallsBackAndIsCounted() throws Exception {
+		var release = new CountDownLatch(1);
+		var supervisor = new AiSupervisor();
+		Ai ai = ai(board -> {
+			// ignores both the interrupt and the flag
+			while (true) {
+				try {
+					if (release.await(1, TimeUnit.SECONDS)) return null;
+				} catch (InterruptedException ignored) {}
+			}
+		});
+		Decision decision = decide(supervisor, ai);
+		assertThat(decision.outcome()).isEqualTo(Outcome.FALLBACK);
+		assertThat(decision.overran(ai)).isTrue();
+		assertThat(decision.outcome().playable()).isTrue();
+		assertThat(decision.move()).isEqualTo(AiSupervisor.fallbackMove(state));
+		assertThat(supervisor.running()).isEqualTo(1);
+		release.countDown();
+		for (int i = 0; i < 100 && supervisor.running() > 0; i++) Thread.sleep(10);
+		assertThat(supervisor.running()).isZero();
+		supervisor.close();
+	}
+
+	@Test public void testRunawayAiIsNotCalledAgainUntilItReturns() throws Exception {
+		var release = new CountDownLatch(1);
+		var calls = new AtomicInteger();
+		Move picked = state.getAvailableMoves().asList().get(3);
+		Ai ai = ai(board -> {
+			if (calls.incrementAndGet() > 1) return picked;
+			// ignores both the interrupt and the flag
+			while (true) {
+				try {
+					if (release.await(1, TimeUnit.SECONDS)) return null;
+				} catch (InterruptedException ignored) {}
+			}
+		});
+		try (var supervisor = new AiSupervisor()) {
+			assertThat(decide(supervisor, ai).outcome()).isEqualTo(Outcome.FALLBACK);
+			long start = System.nanoTime();
+			Decision refused = decide(supervisor, ai);
+			assertThat(System.nanoTime() - start).isLessThan(TIMEOUT_NANOS / 10);
+			assertThat(refused.outcome()).isEqualTo(Outcome.FALLBACK);
+			assertThat(refused.overran(ai)).isTrue();
+			assertThat(calls).hasValue(1);
+			assertThat(supervisor.running()).isEqualTo(1);
+			release.countDown();
+			for (int i = 0; i < 100 && supervisor.running() > 0; i++) Thread.sleep(10);
+			Decision decision = decide(supervisor, ai);
+			assertThat(decision.outcome()).isEqualTo(Outcome.PICKED);
+			assertThat(decision.move()).isEqualTo(picked);
+		}
+	}
+
+	@Test public void testMovesPublishedOutsideACallAreIgnored() {
+		var call = AiSupervisor.current();
+		call.publish(state.getAvailableMoves().iterator().next());
+		assertThat(call.cancelled()).isFalse();
+		assertThat(call.best()).isNull();
+	}
+
+	@Test public void testMrXsTurnIsNeverPondered() {
+		try (var supervisor = new AiSupervisor()) {
+			assertThatThrownBy(() -> supervisor.ponder(new AlphaBetaAi(), state))
+					.isInstanceOf(IllegalArgumentException.class);
+		}
+	}
+
+	@Test public void testFallbackMoveSpendsTheCheapestTickets() {
+		Move move = AiSupervisor.fallbackMove(state);
+		assertThat(move).isInstanceOf(Move.SingleMove.class);
+		assertThat(move.tickets()).doesNotContain(Ticket.SECRET);
+	}
+
+	@Test public void testSupervisedRunnerFinishesGamesOfRunawayAis() {
+		var runaway = ai(board -> {
+			Thread.sleep(Long.MAX_VALUE);
+			return null;
+		});
+		var runner = new GameRunner(setup, 2, Pair.pair(50L, TimeUnit.MILLISECONDS), true);
+		var result = runner.play(3, runaway, ai(AiSupervisor::fallbackMove));
+		assertThat(result.forfeit()).isEmpty();
+		assertThat(result.winner()).isNotEmpty();
+		// every MrX move was a fallback, the detectives' were picked in time
+		assertThat(result.overruns()).isPositive().isEqualTo(result.mrXTimings().count());
+		assertThat(result.detectiveTimings().maxNanos())
+				.isLessThan(TimeUnit.MILLISECONDS.toNanos(50));
+	}
+
+}
@@ -0,0 +1,89 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import uk.ac.bris.cs.scotlandyard.ai.AiTelemetry.Outcome;
+import uk.ac.bris.cs.scotlandyard.ai.AiTelemetry.Sample;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests the probe, ring buffer and exports of {@link AiTelemetry}
+ */
+public class AiTelemetryTest {
+
+	private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(1);
+
+	private static Sample sample(String ai, int round) {
+		return new Sample(0, ai, true, round, 100, 50, 64, TIMEOUT, Outcome.OK);
+	}
+
+	@Test public void testProbeMeasuresTheCall() {
+		var probe = AiTelemetry.start();
+		long sum = 0;
+		var garbage = new long[1 << 16][];
+		for (int i = 0; i < garbage.length; i++) sum += (garbage[i] = new long[4]).length;
+		var sample = probe.stop("busy", false, 3, TIMEOUT, Outcome.OK);
+		assertThat(sum).isEqualTo(4L << 16);
+		assertThat(sample.wallNanos()).isPositive();
+		assertThat(sample.cpuNanos()).isLessThanOrEqualTo(sample.wallNanos() + 1_000_000);
+		assertThat(sample.allocatedBytes()).isGreaterThan(32L << 16);
+		assertThat(sample.remainingNanos()).isEqualTo(TIMEOUT - sample.wallNanos());
+		assertThat(sample.timeoutUsed()).isBetween(0d, 1d);
+		assertThat(sample.round()).isEqualTo(3);
+		assertThat(sample.mrX()).isFalse();
+	}
+
+	@Test public void testProbeStoppedOnAnotherThreadThrows() throws Exception {
+		var probe = AiTelemetry.start();
+		Throwable[] thrown = {null};
+		var thread = new Thread(() -> {
+			try {
+				probe.stop("elsewhere", true, 0, TIMEOUT, Outcome.OK);
+			} catch (Throwable e) {
+				thrown[0] = e;
+			}
+		});
+		thread.start();
+		thread.join();
+		assertThat(thrown[0]).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test public void testRingBufferKeepsTheMostRecent() {
+		var telemetry = new AiTelemetry(4);
+		for (int i = 0; i < 10; i++) telemetry.record(sample("ai", i));
+		assertThat(telemetry.recorded()).isEqualTo(10);
+		assertThat(telemetry.samples()).extracting(Sample::round).containsExactly(6, 7, 8, 9);
+		telemetry.clear();
+		assertThat(telemetry.samples()).isEmpty();
+		assertThatThrownBy(() -> new AiTelemetry(0)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test public void testExportsEscapeNames() throws Exception {
+		var telemetry = new AiTelemetry(8);
+		var csv = new StringBuilder();
+		telemetry.writeCsv(csv);
+		assertThat(csv.toString()).isEqualTo("startedAtMillis,ai,side,round,wallNanos,cpuNanos," +
+				"allocatedBytes,timeoutNanos,remainingNanos,outcome\n");
+		var json = new StringBuilder();
+		telemetry.writeJson(json);
+		assertThat(json.toString()).isEqualTo("[]\n");
+
+		telemetry.record(sample("Say \"hi\", then\nleave", 2));
+		csv.setLength(0);
+		telemetry.writeCsv(csv);
+		assertThat(csv.toString().split("\n", 2)[1]).isEqualTo(
+				"0,\"Say \"\"hi\"\", then\nleave\",MrX,2,100,50,64,1000000000,999999900,OK\n");
+		json.setLength(0);
+		telemetry.writeJson(json);
+		assertThat(json.toString()).isEqualTo("[\n  {\"startedAtMillis\": 0, " +
+				"\"ai\": \"Say \\\"hi\\\", then\\nleave\", \"side\": \"MrX\", \"round\": 2, " +
+				"\"wallNanos\": 100, \"cpuNanos\": 50, \"allocatedBytes\": 64, " +
+				"\"timeoutNanos\": 1000000000, \"remainingNanos\": 999999900, " +
+				"\"outcome\": \"OK\"}\n]\n");
+	}
+
+}
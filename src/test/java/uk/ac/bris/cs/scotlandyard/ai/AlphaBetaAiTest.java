@@ -0,0 +1,157 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Resources;
+
+import io.atlassian.fugue.Pair;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.ai.TranspositionTable.Replacement;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveBuffer;
+import uk.ac.bris.cs.scotlandyard.model.MoveSink;
+import uk.ac.bris.cs.scotlandyard.model.MyGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24MOVES;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests {@link AlphaBetaSearch} finds forced results and {@link AlphaBetaAi} reports progress
+ */
+public class AlphaBetaAiTest {
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(
+				Resources.getResource("graph.txt"), StandardCharsets.UTF_8)), STANDARD24MOVES);
+	}
+
+	@Test public void testDetectiveCapturesAdjacentMrX() {
+		// MrX at 128 is one underground stop from RED at 185
+		SearchState state = SearchState.of(setup,
+				new Player(Piece.MrX.MRX, defaultMrXTickets(), 128),
+				ImmutableList.of(new Player(Piece.Detective.RED, defaultDetectiveTickets(), 185)));
+		var buffer = new MoveBuffer();
+		state.availableMoves(buffer);
+		// MrX moves to a node next to RED
+		for (int i = 0; i < buffer.size(); i++) {
+			state.apply(buffer.get(i));
+			if (state.location(1) != state.mrXLocation() && setup.transportGraph()
+					.edge(state.location(1), state.mrXLocation()) >= 0) break;
+			state.undo();
+		}
+		var search = new AlphaBetaSearch(new TranspositionTable(1 << 20, Replacement.DEPTH));
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+		SearchReport report = search.search(state, deadline, SearchMetrics.NONE, "test");
+		assertThat(report.score()).isLessThanOrEqualTo(-Evaluation.WIN_THRESHOLD);
+		assertThat(report.bestMove()).isNotZero();
+		state.apply(report.bestMove());
+		assertThat(state.outcome()).isEqualTo(SearchState.DETECTIVES_WIN);
+	}
+
+	@Test public void testReportsEveryDepth() {
+		var reports = new ArrayList<SearchReport>();
+		AlphaBetaAi ai = new AlphaBetaAi(reports::add);
+		ai.onStart();
+		GameState state = new MyGameStateFactory().build(setup,
+				new Player(Piece.MrX.MRX, defaultMrXTickets(), 106),
+				MrXTrackerTest.detectives(2, 5));
+		Move move = ai.pickMove(state, Pair.pair(300L, TimeUnit.MILLISECONDS));
+		assertThat(state.getAvailableMoves()).contains(move);
+		assertThat(reports).isNotEmpty();
+		for (int i = 0; i < reports.size(); i++) {
+			assertThat(reports.get(i).depth()).isEqualTo(i + 1);
+			assertThat(reports.get(i).nodesPerSecond()).isPositive();
+		}
+		ai.onTerminate();
+	}
+
+	@Test public void testPondersOnThePredictedReply() throws Exception {
+		var reports = new ArrayList<SearchReport>();
+		AlphaBetaAi ai = new AlphaBetaAi(reports::add);
+		ai.onStart();
+		GameState state = new MyGameStateFactory().build(setup,
+				new Player(Piece.MrX.MRX, defaultMrXTickets(), 106),
+				MrXTrackerTest.detectives(2, 5));
+		assertThat(ai.predict(state)).isNull();
+		GameState detectivesTurn = state.advance(
+				ai.pickMove(state, Pair.pair(300L, TimeUnit.MILLISECONDS)));
+		Move predicted = ai.predict(detectivesTurn);
+		assertThat(detectivesTurn.getAvailableMoves()).contains(predicted);
+
+		try (var supervisor = new AiSupervisor()) {
+			var pondering = supervisor.ponder(ai, detectivesTurn);
+			Thread.sleep(100);
+			assertThat(pondering.predicted()).isEqualTo(predicted);
+			assertThat(pondering.stop(predicted)).isTrue();
+			assertThat(supervisor.running()).isZero();
+			// pondering never reports, nor does it hold up the next move
+			int searched = reports.size();
+			Move reply = detectivesTurn.getAvailableMoves().stream()
+					.filter(move -> !move.equals(predicted))
+					.findFirst().orElseThrow();
+			assertThat(supervisor.ponder(ai, detectivesTurn).stop(reply)).isFalse();
+			assertThat(reports).hasSize(searched);
+		}
+		ai.onTerminate();
+	}
+
+	@Test public void testStopsOnceTheSinkIsCancelledWithoutAnInterrupt() {
+		AlphaBetaAi ai = new AlphaBetaAi();
+		ai.onStart();
+		GameState state = new MyGameStateFactory().build(setup,
+				new Player(Piece.MrX.MRX, defaultMrXTickets(), 106),
+				MrXTrackerTest.detectives(2, 5));
+		long cancelAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+		MoveSink sink = new MoveSink() {
+			@Override public void publish(@Nonnull Move move) {}
+
+			@Override public boolean cancelled() { return System.nanoTime() >= cancelAt; }
+		};
+		long start = System.nanoTime();
+		Move move = ai.pickMove(state, Pair.pair(10L, TimeUnit.SECONDS), sink);
+		assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(2));
+		assertThat(state.getAvailableMoves()).contains(move);
+		ai.onTerminate();
+	}
+
+	@Test public void testMoveTakesOverAPonderThatIsNeverInterrupted() throws Exception {
+		AlphaBetaAi ai = new AlphaBetaAi();
+		ai.onStart();
+		GameState state = new MyGameStateFactory().build(setup,
+				new Player(Piece.MrX.MRX, defaultMrXTickets(), 106),
+				MrXTrackerTest.detectives(2, 5));
+		GameState detectivesTurn = state.advance(
+				ai.pickMove(state, Pair.pair(300L, TimeUnit.MILLISECONDS)));
+		Move reply = detectivesTurn.getAvailableMoves().iterator().next();
+		var ponder = new Thread(() -> ai.ponder(detectivesTurn, reply));
+		ponder.start();
+		Thread.sleep(100);
+		GameState next = detectivesTurn.advance(reply);
+		long start = System.nanoTime();
+		ai.pickMove(next, Pair.pair(300L, TimeUnit.MILLISECONDS));
+		assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(1));
+		ponder.join(1000);
+		assertThat(ponder.isAlive()).isFalse();
+		ai.onTerminate();
+	}
+
+}
@@ -0,0 +1,83 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.NodeSet;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24MOVES;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests the determinizations and MrX's merged moves of {@link InformationSetSearch}
+ */
+public class InformationSetSearchTest {
+
+	private static final int TAXI = Ticket.TAXI.ordinal();
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(
+				Resources.getResource("graph.txt"), StandardCharsets.UTF_8)), STANDARD24MOVES);
+	}
+
+	@Test public void testObservationHidesDestinationsOutsideRevealRounds() {
+		long a = PackedMove.single(PackedMove.MRX, 1, TAXI, 8);
+		long b = PackedMove.single(PackedMove.MRX, 1, TAXI, 9);
+		// round 0 is hidden, round 2 is a reveal round
+		assertThat(InformationSetSearch.observation(setup, 0, a))
+				.isEqualTo(InformationSetSearch.observation(setup, 0, b));
+		assertThat(InformationSetSearch.observation(setup, 2, a))
+				.isNotEqualTo(InformationSetSearch.observation(setup, 2, b));
+		long x2 = PackedMove.doubleMove(PackedMove.MRX, 1, TAXI, 8, TAXI, 18);
+		assertThat(InformationSetSearch.observation(setup, 0, x2))
+				.isNotEqualTo(InformationSetSearch.observation(setup, 0, a));
+	}
+
+	@Test public void testPlacingMrXMatchesAFreshState() {
+		var detectives = ImmutableList.of(
+				new Player(Piece.Detective.RED, defaultDetectiveTickets(), 185));
+		SearchState state = SearchState.of(setup,
+				new Player(Piece.MrX.MRX, defaultMrXTickets(), 128), detectives);
+		state.placeMrX(1);
+		assertThat(state.zobristKey()).isEqualTo(SearchState.of(setup,
+				new Player(Piece.MrX.MRX, defaultMrXTickets(), 1), detectives).zobristKey());
+	}
+
+	@Test public void testDetectiveCatchesTheOnlyCandidate() {
+		SearchState start = SearchState.of(setup,
+				new Player(Piece.MrX.MRX, defaultMrXTickets(), 187),
+				ImmutableList.of(new Player(Piece.Detective.RED, defaultDetectiveTickets(), 185),
+						new Player(Piece.Detective.BLUE, defaultDetectiveTickets(), 1)));
+		start.apply(PackedMove.single(PackedMove.MRX, 187, TAXI, 198));
+		// the detectives' turn, MrX can only be at 128 which is one underground stop from RED
+		SearchState root = SearchState.of(start.snapshot());
+		long[] candidates = NodeSet.create(setup.transportGraph().nodeBound());
+		NodeSet.add(candidates, 128);
+		var search = new InformationSetSearch(Math.sqrt(2));
+		var result = search.search(root, candidates,
+				System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300), null, 0, 1);
+		assertThat(result.iterations()).isPositive();
+		long best = result.bestMove();
+		assertThat(PackedMove.destination(best)).isEqualTo(128);
+		assertThat(result.visits(best)).isPositive();
+	}
+
+}
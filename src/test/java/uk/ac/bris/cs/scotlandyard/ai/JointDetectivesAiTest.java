@@ -0,0 +1,101 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.io.Resources;
+
+import io.atlassian.fugue.Pair;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MyGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.NodeSet;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24MOVES;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests that {@link JointDetectivesAi} plans a round once and that {@link JointMovePlanner}
+ * keeps the detectives apart
+ */
+public class JointDetectivesAiTest {
+
+	private static final Pair<Long, TimeUnit> TIMEOUT = Pair.pair(1L, TimeUnit.SECONDS);
+
+	private static GameSetup setup;
+	private static GameState detectivesTurn;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(
+				Resources.getResource("graph.txt"), StandardCharsets.UTF_8)), STANDARD24MOVES);
+		GameState state = new MyGameStateFactory().build(setup,
+				new Player(Piece.MrX.MRX, defaultMrXTickets(), 106),
+				MrXTrackerTest.detectives(1, 5));
+		detectivesTurn = state.advance(state.getAvailableMoves().iterator().next());
+	}
+
+	@Test public void testPlansEachRoundOnce() {
+		var ai = new JointDetectivesAi(new AlphaBetaAi(), 2);
+		ai.onStart();
+		try {
+			GameState state = detectivesTurn;
+			var destinations = new HashSet<Integer>();
+			int moved = 0;
+			while (!AiSupport.isMrXTurn(state) && state.getWinner().isEmpty()) {
+				long start = System.nanoTime();
+				Move move = ai.pickMove(state, TIMEOUT);
+				assertThat(System.nanoTime() - start)
+						.isLessThan(TIMEOUT.right().toNanos(TIMEOUT.left()));
+				assertThat(state.getAvailableMoves()).contains(move);
+				assertThat(destinations.add(PackedMove.destination(PackedMove.of(move)))).isTrue();
+				state = state.advance(move);
+				moved++;
+			}
+			assertThat(moved).isEqualTo(5);
+			assertThat(ai.plans()).isOne();
+		} finally {
+			ai.onTerminate();
+		}
+	}
+
+	@Test public void testPlanCatchesAKnownMrX() {
+		var pool = new ForkJoinPool(2);
+		try {
+			// MrX can only be where one detective can reach
+			int target = detectivesTurn.getAvailableMoves().asList().get(3).accept(
+					new Move.FunctionalVisitor<>(m -> m.destination, m -> m.destination2));
+			long[] candidates = NodeSet.create(setup.transportGraph().nodeBound());
+			NodeSet.add(candidates, target);
+			SearchState root = SearchState.fromBoard(detectivesTurn, target);
+			var plan = new JointMovePlanner(pool).plan(root, candidates,
+					System.nanoTime() + TimeUnit.SECONDS.toNanos(5), new SplittableRandom(1));
+			assertThat(plan.complete()).isTrue();
+			assertThat(plan.moves()).hasSize(5);
+			assertThat(plan.evaluated()).isPositive();
+			var destinations = new HashSet<Integer>();
+			for (long move : plan.moves()) {
+				assertThat(root.isLegal(move)).isTrue();
+				assertThat(destinations.add(PackedMove.destination(move))).isTrue();
+			}
+			assertThat(destinations).contains(target);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+}
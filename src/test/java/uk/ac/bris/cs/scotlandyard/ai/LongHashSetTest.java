@@ -0,0 +1,31 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests {@link LongHashSet} deduplicates keys and forgets them when cleared
+ */
+public class LongHashSetTest {
+
+	@Test public void testAddsEveryKeyOnce() {
+		var set = new LongHashSet();
+		set.clear(1000);
+		for (long key = 1; key <= 1000; key++) assertThat(set.add(key << 40)).isTrue();
+		for (long key = 1; key <= 1000; key++) assertThat(set.add(key << 40)).isFalse();
+	}
+
+	@Test public void testClearForgetsTheKeysWhateverTheSize() {
+		var set = new LongHashSet();
+		set.clear(500);
+		for (long key = 1; key <= 500; key++) set.add(key);
+		set.clear(3);
+		assertThat(set.add(1)).isTrue();
+		assertThat(set.add(Long.MIN_VALUE)).isTrue();
+		assertThat(set.add(1)).isFalse();
+		set.clear(500);
+		for (long key = 1; key <= 500; key++) assertThat(set.add(key)).isTrue();
+	}
+
+}
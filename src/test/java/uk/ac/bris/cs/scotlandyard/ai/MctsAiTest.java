@@ -0,0 +1,200 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Resources;
+
+import io.atlassian.fugue.Pair;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.ResourceManager;
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveSink;
+import uk.ac.bris.cs.scotlandyard.model.MyGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24MOVES;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests that {@link MctsAi} picks available moves within the timeout for both sides
+ */
+public class MctsAiTest {
+
+	private static final Pair<Long, TimeUnit> TIMEOUT = Pair.pair(500L, TimeUnit.MILLISECONDS);
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(
+				Resources.getResource("graph.txt"), StandardCharsets.UTF_8)), STANDARD24MOVES);
+	}
+
+	private static Move timedPick(MctsAi ai, Board board) {
+		long start = System.nanoTime();
+		Move move = ai.pickMove(board, TIMEOUT);
+		assertThat(System.nanoTime() - start).isLessThan(TIMEOUT.right().toNanos(TIMEOUT.left()));
+		assertThat(board.getAvailableMoves()).contains(move);
+		return move;
+	}
+
+	@Test public void testThreadsAreGivenByTheSimulator() {
+		// as built by Simulator.aiSupplier, which picks the constructor taking the threads
+		var simulated = (MctsAi) ResourceManager.instantiateAi(ai(MctsAi.class), 1);
+		assertThat(simulated.threads()).isEqualTo(1);
+		assertThat(new MctsAi().threads()).isEqualTo(AiSupport.DEFAULT_THREADS);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Class<Ai> ai(Class<? extends Ai> type) { return (Class<Ai>) type; }
+
+	@Test public void testPicksAvailableMovesInTime() {
+		MctsAi ai = new MctsAi(4, MonteCarloTreeSearch.EXPLORATION, true);
+		ai.onStart();
+		try {
+			GameState state = new MyGameStateFactory().build(setup,
+					new Player(Piece.MrX.MRX, defaultMrXTickets(), 106),
+					MrXTrackerTest.detectives(1, 5));
+			for (int i = 0; i < 3 && state.getWinner().isEmpty(); i++)
+				state = state.advance(timedPick(ai, state));
+		} finally {
+			ai.onTerminate();
+		}
+	}
+
+	@Test public void testPublishesMovesUntilCancelled() {
+		MctsAi ai = new MctsAi(2, MonteCarloTreeSearch.EXPLORATION, true);
+		try {
+			GameState state = new MyGameStateFactory().build(setup,
+					new Player(Piece.MrX.MRX, defaultMrXTickets(), 106),
+					MrXTrackerTest.detectives(1, 5));
+			var published = new ArrayList<Move>();
+			long cancelAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+			MoveSink sink = new MoveSink() {
+				@Override public void publish(@Nonnull Move move) { published.add(move); }
+
+				@Override public boolean cancelled() { return System.nanoTime() >= cancelAt; }
+			};
+			// interrupted like a supervisor would, long before the 10s timeout
+			var caller = Thread.currentThread();
+			var interrupter = new Thread(() -> {
+				while (!sink.cancelled()) Thread.onSpinWait();
+				caller.interrupt();
+			});
+			interrupter.start();
+			long start = System.nanoTime();
+			Move move = ai.pickMove(state, Pair.pair(10L, TimeUnit.SECONDS), sink);
+			Thread.interrupted();
+			assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(2));
+			assertThat(published).isNotEmpty();
+			assertThat(state.getAvailableMoves()).containsAll(published).contains(move);
+		} finally {
+			ai.onTerminate();
+		}
+	}
+
+	// cancelled after 200ms without an interrupt, long before the 10s timeout
+	private static Move pickUntilCancelled(MctsAi ai, Board board) {
+		long cancelAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+		MoveSink sink = new MoveSink() {
+			@Override public void publish(@Nonnull Move move) {}
+
+			@Override public boolean cancelled() { return System.nanoTime() >= cancelAt; }
+		};
+		long start = System.nanoTime();
+		Move move = ai.pickMove(board, Pair.pair(10L, TimeUnit.SECONDS), sink);
+		assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(2));
+		assertThat(board.getAvailableMoves()).contains(move);
+		return move;
+	}
+
+	@Test public void testStopsOnceTheSinkIsCancelledWithoutAnInterrupt() {
+		MctsAi ai = new MctsAi(2, MonteCarloTreeSearch.EXPLORATION, true);
+		try {
+			GameState state = new MyGameStateFactory().build(setup,
+					new Player(Piece.MrX.MRX, defaultMrXTickets(), 106),
+					MrXTrackerTest.detectives(1, 5));
+			// MrX with the tree search, then the detectives with the information set search
+			state = state.advance(pickUntilCancelled(ai, state));
+			pickUntilCancelled(ai, state);
+		} finally {
+			ai.onTerminate();
+		}
+	}
+
+	private static MonteCarloTreeSearch.Node mostVisited(MonteCarloTreeSearch.Node node) {
+		MonteCarloTreeSearch.Node best = null;
+		for (var child : node.children())
+			if (best == null || child.visits() > best.visits()) best = child;
+		return best;
+	}
+
+	@Test public void testTreeIsReRootedAfterTheDetectivesReply() {
+		GameState state = new MyGameStateFactory().build(setup,
+				new Player(Piece.MrX.MRX, defaultMrXTickets(), 106),
+				MrXTrackerTest.detectives(1, 2));
+		var search = new MonteCarloTreeSearch(MonteCarloTreeSearch.EXPLORATION);
+		SearchState root = SearchState.fromBoard(state, 106);
+		var first = search.search(root, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300),
+				null, 0, 1);
+		assertThat(first.reused()).isZero();
+		// however slow the machine, enough playouts to have visited the replies to MrX's move
+		while (first.root().visits() < 5000)
+			first = search.search(root, first.root(),
+					System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100), null, 0, 1, null);
+
+		// MrX plays his best move, the detectives their most searched replies
+		var expected = mostVisited(first.root());
+		state = state.advance(PackedMove.toMove(expected.move()));
+		while (!AiSupport.isMrXTurn(state)) {
+			expected = mostVisited(expected);
+			state = state.advance(PackedMove.toMove(expected.move()));
+		}
+		SearchState next = SearchState.fromBoard(state, AiSupport.mrXLocation(state));
+		assertThat(MonteCarloTreeSearch.reroot(first.root(), root, next)).isSameAs(expected);
+
+		var second = search.search(next, expected,
+				System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50), null, 0, 2, null);
+		assertThat(second.reused()).isPositive().isEqualTo(expected.visits()
+				- (int) second.iterations());
+		// a position the tree never reached is not found
+		SearchState other = SearchState.fromBoard(state.advance(
+				state.getAvailableMoves().iterator().next()), 1);
+		assertThat(MonteCarloTreeSearch.reroot(first.root(), root, other)).isNull();
+	}
+
+	@Test public void testMrXAvoidsCapture() {
+		// MrX at 128 next to RED at 185 (underground), every other way out is free
+		MctsAi ai = new MctsAi(2, MonteCarloTreeSearch.EXPLORATION, false);
+		try {
+			GameState state = new MyGameStateFactory().build(setup,
+					new Player(Piece.MrX.MRX, defaultMrXTickets(), 128),
+					ImmutableList.of(new Player(Piece.Detective.RED, defaultDetectiveTickets(), 185)));
+			Move move = timedPick(ai, state);
+			int destination = move.accept(new Move.FunctionalVisitor<>(
+					m -> m.destination, m -> m.destination2));
+			assertThat(setup.transportGraph().edge(185, destination)).isEqualTo(-1);
+		} finally {
+			ai.onTerminate();
+		}
+	}
+
+}
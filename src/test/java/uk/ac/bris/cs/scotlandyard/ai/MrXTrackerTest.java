@@ -0,0 +1,85 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import uk.ac.bris.cs.scotlandyard.model.BitboardGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.BitboardGameStateFactory.BitboardGameState;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.MoveBuffer;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24MOVES;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.generateDetectiveLocations;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.generateMrXLocation;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests that {@link MrXTracker} never loses MrX and narrows down to him on reveals
+ */
+public class MrXTrackerTest {
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(
+				Resources.getResource("graph.txt"), StandardCharsets.UTF_8)), STANDARD24MOVES);
+	}
+
+	static ImmutableList<Player> detectives(int seed, int count) {
+		var locations = generateDetectiveLocations(seed, count);
+		var builder = ImmutableList.<Player>builder();
+		for (int i = 0; i < count; i++)
+			builder.add(new Player(ScotlandYard.DETECTIVES.asList().get(i),
+					defaultDetectiveTickets(), locations.get(i)));
+		return builder.build();
+	}
+
+	@Test public void testCandidatesAlwaysContainMrX() {
+		var buffer = new MoveBuffer();
+		for (int seed = 0; seed < 20; seed++) {
+			var random = new Random(seed);
+			var mrX = new Player(Piece.MrX.MRX, defaultMrXTickets(), generateMrXLocation(seed));
+			BitboardGameState state = new BitboardGameStateFactory().build(setup, mrX,
+					detectives(seed, 5));
+			MrXTracker tracker = MrXTracker.of(setup);
+			while (!state.isGameOver()) {
+				tracker.update(state);
+				assertThat(tracker.contains(state.mrXLocation())).isTrue();
+				assertThat(tracker.consumed()).isEqualTo(state.round());
+				if (state.round() > 0 && state.getMrXTravelLog().get(state.round() - 1)
+						.location().isPresent())
+					assertThat(tracker.size()).isEqualTo(1);
+				buffer.clear();
+				state.availableMoves(buffer);
+				state = state.advance(buffer.get(random.nextInt(buffer.size())));
+			}
+		}
+	}
+
+	@Test public void testHiddenMoveFollowsTicket() {
+		MrXTracker tracker = MrXTracker.of(setup, ImmutableList.of(1));
+		tracker.move(ScotlandYard.Ticket.UNDERGROUND.ordinal(), null);
+		assertThat(tracker.toSet()).containsExactlyInAnyOrder(46);
+		tracker.reset();
+		tracker.move(ScotlandYard.Ticket.TAXI.ordinal(), null);
+		assertThat(tracker.toSet()).containsExactlyInAnyOrder(8, 9);
+		MrXTracker copy = tracker.copy();
+		copy.reveal(100);
+		assertThat(tracker.toSet()).containsExactlyInAnyOrder(8, 9);
+		assertThat(copy.toSet()).containsExactly(100);
+	}
+
+}
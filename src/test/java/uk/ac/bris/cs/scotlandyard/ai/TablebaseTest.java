@@ -0,0 +1,160 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Resources;
+
+import io.atlassian.fugue.Pair;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MyGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+import uk.ac.bris.cs.scotlandyard.model.TransportGraph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests {@link Tablebase} against a direct search of the same relaxed game, and that
+ * {@link TablebaseAi} plays the moves it proves safe
+ */
+public class TablebaseTest {
+
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+
+	private static GameSetup setup;
+	private static TransportGraph graph;
+	private static Tablebase oneDetective;
+
+	@BeforeClass public static void setUp() throws IOException {
+		// two rounds, the second revealing MrX
+		setup = new GameSetup(readGraph(Resources.toString(
+				Resources.getResource("graph.txt"), StandardCharsets.UTF_8)),
+				ImmutableList.of(false, true));
+		graph = setup.transportGraph();
+		oneDetective = Tablebase.compute(graph, 1, 3);
+	}
+
+	private static boolean land(int edge) {
+		return (graph.transports(edge) & ~(1 << Transport.FERRY.ordinal())) != 0;
+	}
+
+	// MrX has just moved to mrX, the detectives reply one by one, staying put or moving over land
+	private static boolean safe(int rounds, int mrX, int[] detectives, int detective) {
+		if (detective == detectives.length) {
+			for (int location : detectives) if (location == mrX) return false;
+			if (rounds == 1) return true;
+			for (int edge = graph.start(mrX); edge < graph.end(mrX); edge++) {
+				int to = graph.neighbour(edge);
+				if (land(edge) && Arrays.stream(detectives).noneMatch(d -> d == to)
+						&& safe(rounds - 1, to, detectives, 0))
+					return true;
+			}
+			return false;
+		}
+		int[] next = detectives.clone();
+		if (!safe(rounds, mrX, next, detective + 1)) return false;
+		int from = detectives[detective];
+		for (int edge = graph.start(from); edge < graph.end(from); edge++) {
+			if (!land(edge)) continue;
+			next[detective] = graph.neighbour(edge);
+			if (!safe(rounds, mrX, next, detective + 1)) return false;
+		}
+		return true;
+	}
+
+	private static void assertMatchesSearch(Tablebase table, int detectives, int rounds,
+	                                        int samples) {
+		var random = new Random(detectives * 31 + rounds);
+		int safe = 0;
+		for (int i = 0; i < samples; i++) {
+			int mrX = 1 + random.nextInt(graph.nodeBound() - 1);
+			int[] locations = new int[detectives];
+			for (int d = 0; d < detectives; d++)
+				locations[d] = 1 + random.nextInt(graph.nodeBound() - 1);
+			boolean expected = safe(rounds, mrX, locations, 0);
+			assertThat(table.isSafe(rounds, mrX, locations))
+					.as("%d rounds, MrX at %d, detectives at %s", rounds, mrX,
+							Arrays.toString(locations))
+					.isEqualTo(expected);
+			if (expected) safe++;
+		}
+		// both outcomes were sampled
+		assertThat(safe).isBetween(1, samples - 1);
+	}
+
+	@Test public void testOneDetectiveMatchesSearch() {
+		for (int rounds = 1; rounds <= 3; rounds++)
+			assertMatchesSearch(oneDetective, 1, rounds, 500);
+	}
+
+	@Test public void testTwoDetectivesMatchSearch() {
+		var table = Tablebase.compute(graph, 2, 2);
+		assertMatchesSearch(table, 2, 1, 200);
+		assertMatchesSearch(table, 2, 2, 200);
+	}
+
+	@Test public void testWrittenTableIsMapped() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("tablebase.bin");
+		oneDetective.writeTo(file);
+		var mapped = Tablebase.open(file, graph);
+		assertThat(mapped.detectives()).isOne();
+		assertThat(mapped.rounds()).isEqualTo(3);
+		for (int rounds = 1; rounds <= 3; rounds++)
+			for (int mrX = 1; mrX < graph.nodeBound(); mrX += 7)
+				for (int detective = 1; detective < graph.nodeBound(); detective += 5)
+					assertThat(mapped.isSafe(rounds, mrX, new int[]{detective}))
+							.isEqualTo(oneDetective.isSafe(rounds, mrX, new int[]{detective}));
+		assertThat(mapped.covers(4, 1)).isFalse();
+		assertThat(mapped.covers(3, 2)).isFalse();
+
+		Path truncated = folder.getRoot().toPath().resolve("truncated.bin");
+		Files.write(truncated, Arrays.copyOf(Files.readAllBytes(file), 1000));
+		assertThatThrownBy(() -> Tablebase.open(truncated, graph)).isInstanceOf(IOException.class);
+	}
+
+	@Test public void testAiPlaysAProvenSafeMove() {
+		// the detective is too far from MrX to catch him in the two rounds left
+		GameState state = new MyGameStateFactory().build(setup,
+				new Player(Piece.MrX.MRX, defaultMrXTickets(), 106),
+				ImmutableList.of(new Player(Piece.Detective.RED, defaultDetectiveTickets(), 1)));
+		var ai = new TablebaseAi(new Ai() {
+			@Nonnull @Override public String name() { return "Unused"; }
+
+			@Nonnull @Override
+			public Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair) {
+				throw new AssertionError("The table covers the position");
+			}
+		}, oneDetective);
+		Move move = ai.pickMove(state, Pair.pair(1L, TimeUnit.SECONDS));
+		assertThat(ai.probed()).isOne();
+		assertThat(state.getAvailableMoves()).contains(move);
+		assertThat(move).isInstanceOf(Move.SingleMove.class);
+		var single = (Move.SingleMove) move;
+		assertThat(oneDetective.isSafe(2, single.destination, new int[]{1})).isTrue();
+	}
+
+}
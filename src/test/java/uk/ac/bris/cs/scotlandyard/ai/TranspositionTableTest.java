@@ -0,0 +1,87 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import uk.ac.bris.cs.scotlandyard.ai.TranspositionTable.Entry;
+import uk.ac.bris.cs.scotlandyard.ai.TranspositionTable.Replacement;
+import uk.ac.bris.cs.scotlandyard.model.PackedMove;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests the packing, replacement and thread safety of {@link TranspositionTable}
+ */
+public class TranspositionTableTest {
+
+	private static final long MOVE = PackedMove.single(PackedMove.MRX, 1, 0, 8);
+
+	@Test public void testStoreThenProbe() {
+		var table = new TranspositionTable(1 << 16, Replacement.DEPTH);
+		assertThat(table.capacity()).isEqualTo(2048);
+		var entry = new Entry();
+		assertThat(table.probe(42, entry)).isFalse();
+		table.store(42, 7, TranspositionTable.LOWER, -1234, MOVE);
+		assertThat(table.probe(42, entry)).isTrue();
+		assertThat(entry.move()).isEqualTo(MOVE);
+		assertThat(entry.depth()).isEqualTo(7);
+		assertThat(entry.bound()).isEqualTo(TranspositionTable.LOWER);
+		assertThat(entry.score()).isEqualTo(-1234);
+		// a result without a move keeps the stored move
+		table.store(42, 8, TranspositionTable.EXACT, 5, 0);
+		assertThat(table.probe(42, entry)).isTrue();
+		assertThat(entry.move()).isEqualTo(MOVE);
+		assertThat(entry.score()).isEqualTo(5);
+	}
+
+	@Test public void testReplacementPolicies() {
+		// one bucket, every key collides
+		var depth = new TranspositionTable(1, Replacement.DEPTH);
+		var always = new TranspositionTable(1, Replacement.ALWAYS);
+		var aged = new TranspositionTable(1, Replacement.AGED);
+		var entry = new Entry();
+		for (var table : new TranspositionTable[]{depth, always, aged}) {
+			table.store(1, 10, TranspositionTable.EXACT, 1, MOVE);
+			table.store(2, 9, TranspositionTable.EXACT, 2, MOVE);
+		}
+		aged.newSearch();
+		for (var table : new TranspositionTable[]{depth, always, aged})
+			table.store(3, 1, TranspositionTable.EXACT, 3, MOVE);
+		assertThat(depth.probe(3, entry)).isFalse();
+		assertThat(depth.probe(2, entry)).isTrue();
+		assertThat(always.probe(3, entry)).isTrue();
+		assertThat(always.probe(2, entry)).isFalse();
+		assertThat(always.probe(1, entry)).isTrue();
+		assertThat(aged.probe(3, entry)).isTrue();
+		assertThat(aged.probe(1, entry)).isTrue();
+	}
+
+	@Test public void testConcurrentAccessNeverReturnsTornEntries() throws InterruptedException {
+		var table = new TranspositionTable(1 << 10, Replacement.ALWAYS);
+		var errors = new AtomicInteger();
+		var threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			int seed = t;
+			threads.add(new Thread(() -> {
+				var random = new SplittableRandom(seed);
+				var entry = new Entry();
+				for (int i = 0; i < 200_000; i++) {
+					long key = random.nextLong(64);
+					// every field is derived from the key so any mix of two writes is detectable
+					if (random.nextBoolean()) table.store(key, (int) key, TranspositionTable.EXACT,
+							(int) key * 3, MOVE + key);
+					else if (table.probe(key, entry) && (entry.depth() != key
+							|| entry.score() != key * 3 || entry.move() != MOVE + key))
+						errors.incrementAndGet();
+				}
+			}));
+		}
+		for (Thread thread : threads) thread.start();
+		for (Thread thread : threads) thread.join();
+		assertThat(errors.get()).isZero();
+	}
+
+}
@@ -3,6 +3,20 @@ package uk.ac.bris.cs.scotlandyard.model;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import uk.ac.bris.cs.scotlandyard.ResourceManagerTest;
+import uk.ac.bris.cs.scotlandyard.ai.AiSupervisorTest;
+import uk.ac.bris.cs.scotlandyard.ai.AiTelemetryTest;
+import uk.ac.bris.cs.scotlandyard.ai.AlphaBetaAiTest;
+import uk.ac.bris.cs.scotlandyard.ai.InformationSetSearchTest;
+import uk.ac.bris.cs.scotlandyard.ai.JointDetectivesAiTest;
+import uk.ac.bris.cs.scotlandyard.ai.LongHashSetTest;
+import uk.ac.bris.cs.scotlandyard.ai.MctsAiTest;
+import uk.ac.bris.cs.scotlandyard.ai.MrXTrackerTest;
+import uk.ac.bris.cs.scotlandyard.ai.TablebaseTest;
+import uk.ac.bris.cs.scotlandyard.ai.TranspositionTableTest;
+import uk.ac.bris.cs.scotlandyard.sim.BatchSimulatorTest;
+import uk.ac.bris.cs.scotlandyard.sim.TournamentTest;
+
 /**
  * Includes all test for the actual game model
  */
@@ -15,6 +29,25 @@ import org.junit.runners.Suite;
 		GameStateDetectivesAvailableMovesTest.class,
 		GameStateMrXAvailableMovesTest.class,
 		GameStatePlayoutTest.class,
+		TransportGraphTest.class,
+		DistanceTableTest.class,
+		MoveGeneratorTest.class,
+		BitboardGameStateTest.class,
+		SearchStateTest.class,
+		EngineMetricsTest.class,
+		TranspositionTableTest.class,
+		MrXTrackerTest.class,
+		MctsAiTest.class,
+		AlphaBetaAiTest.class,
+		InformationSetSearchTest.class,
+		LongHashSetTest.class,
+		AiTelemetryTest.class,
+		AiSupervisorTest.class,
+		JointDetectivesAiTest.class,
+		TablebaseTest.class,
+		BatchSimulatorTest.class,
+		TournamentTest.class,
+		ResourceManagerTest.class,
 		ModelObserverTest.class
 })
 public class AllTest {}
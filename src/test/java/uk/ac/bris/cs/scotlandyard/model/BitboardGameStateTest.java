@@ -0,0 +1,120 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import uk.ac.bris.cs.scotlandyard.model.BitboardGameStateFactory.BitboardGameState;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24MOVES;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.generateDetectiveLocations;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.generateMrXLocation;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests the primitive parts of {@link BitboardGameStateFactory}; the {@link GameState} behaviour
+ * is covered by the parameterised tests
+ */
+public class BitboardGameStateTest {
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(
+				Resources.getResource("graph.txt"), StandardCharsets.UTF_8)), STANDARD24MOVES);
+	}
+
+	static ImmutableList<Player> detectives(int seed, int count) {
+		var locations = generateDetectiveLocations(seed, count);
+		var builder = ImmutableList.<Player>builder();
+		for (int i = 0; i < count; i++)
+			builder.add(new Player(ScotlandYard.DETECTIVES.asList().get(i),
+					defaultDetectiveTickets(), locations.get(i)));
+		return builder.build();
+	}
+
+	@Test public void testRandomPlayoutsAreConsistent() {
+		var buffer = new MoveBuffer();
+		for (int seed = 0; seed < 20; seed++) {
+			var random = new Random(seed);
+			var mrX = new Player(Piece.MrX.MRX, defaultMrXTickets(), generateMrXLocation(seed));
+			BitboardGameState state = new BitboardGameStateFactory().build(setup, mrX,
+					detectives(seed, 2 + seed % 4));
+			while (!state.isGameOver()) {
+				assertThat(state.getWinner()).isEmpty();
+				buffer.clear();
+				state.availableMoves(buffer);
+				assertThat(buffer.toMoves()).isEqualTo(state.getAvailableMoves()).isNotEmpty();
+				state = state.advance(buffer.get(random.nextInt(buffer.size())));
+				assertThat(state.round()).isLessThanOrEqualTo(STANDARD24MOVES.size());
+			}
+			assertThat(state.getWinner()).isNotEmpty();
+			assertThat(state.getAvailableMoves()).isEmpty();
+		}
+	}
+
+	@Test public void testRandomPlayoutsMatchMyGameState() {
+		for (int seed = 0; seed < 20; seed++) {
+			var random = new Random(seed);
+			var mrX = new Player(Piece.MrX.MRX, defaultMrXTickets(), generateMrXLocation(seed));
+			var detectives = detectives(seed, 2 + seed % 4);
+			HashedGameState expected = new MyGameStateFactory().build(setup, mrX, detectives);
+			HashedGameState actual = new BitboardGameStateFactory().build(setup, mrX, detectives);
+			while (true) {
+				assertThat(actual.zobristKey()).isEqualTo(expected.zobristKey());
+				assertThat(actual.getWinner()).isEqualTo(expected.getWinner());
+				assertThat(actual.getMrXTravelLog()).isEqualTo(expected.getMrXTravelLog());
+				assertThat(actual.getAvailableMoves()).isEqualTo(expected.getAvailableMoves());
+				if (!expected.getWinner().isEmpty()) break;
+				var moves = expected.getAvailableMoves().asList();
+				var move = moves.get(random.nextInt(moves.size()));
+				expected = expected.advance(move);
+				actual = actual.advance(move);
+			}
+		}
+	}
+
+	@Test public void testTranspositionsHaveTheSameKey() {
+		var mrX = new Player(Piece.MrX.MRX, defaultMrXTickets(), 106);
+		var detectives = detectives(2, 2);
+		BitboardGameState state = new BitboardGameStateFactory().build(setup, mrX, detectives);
+		var buffer = new MoveBuffer();
+		state.availableMoves(buffer);
+		state = state.advance(buffer.get(0));
+		buffer.clear();
+		state.availableMoves(buffer);
+		long red = buffer.get(0);
+		long green = buffer.get(buffer.size() - 1);
+		assertThat(PackedMove.piece(red)).isNotEqualTo(PackedMove.piece(green));
+		assertThat(PackedMove.destination(red)).isNotEqualTo(PackedMove.destination(green));
+		BitboardGameState redFirst = state.advance(red);
+		BitboardGameState greenFirst = state.advance(green);
+		assertThat(redFirst.zobristKey())
+				.isNotEqualTo(greenFirst.zobristKey())
+				.isNotEqualTo(state.zobristKey());
+		assertThat(redFirst.advance(green).zobristKey())
+				.isEqualTo(greenFirst.advance(red).zobristKey());
+	}
+
+	@Test public void testPackedMovesMatchAvailableMoves() {
+		var mrX = new Player(Piece.MrX.MRX, defaultMrXTickets(), 106);
+		BitboardGameState state = new BitboardGameStateFactory().build(setup, mrX,
+				detectives(1, 5));
+		var buffer = new MoveBuffer();
+		state.availableMoves(buffer);
+		assertThat(buffer.toMoves()).isEqualTo(state.getAvailableMoves());
+		for (int i = 0; i < buffer.size(); i++) assertThat(state.isLegal(buffer.get(i))).isTrue();
+		assertThat(state.mrXLocation()).isEqualTo(106);
+	}
+
+}
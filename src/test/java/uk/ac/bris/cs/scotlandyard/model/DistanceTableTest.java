@@ -0,0 +1,66 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests the fewest moves {@link DistanceTable} finds for each set of transports
+ */
+public class DistanceTableTest {
+
+	private static final int TAXI = 1 << Transport.TAXI.ordinal();
+	private static final int BUS = 1 << Transport.BUS.ordinal();
+
+	private static int[] tickets(int taxi, int bus, int underground, int x2, int secret) {
+		return new int[]{taxi, bus, underground, x2, secret};
+	}
+
+	@Test public void testSmallGraph() {
+		DistanceTable table = DistanceTable.compute(TransportGraph.compile(ScotlandYard.readGraph(
+				String.join("\n",
+						"4 4",
+						"1", "2", "3", "4",
+						"1 2 Taxi",
+						"2 3 Taxi",
+						"1 3 Bus",
+						"3 4 Ferry"))));
+		assertThat(table.distance(1, 1, TAXI)).isZero();
+		assertThat(table.distance(1, 3, TAXI)).isEqualTo(2);
+		assertThat(table.distance(1, 3, TAXI | BUS)).isEqualTo(1);
+		assertThat(table.distance(1, 4, TAXI | BUS)).isEqualTo(DistanceTable.UNREACHABLE);
+		assertThat(table.distance(1, 4)).isEqualTo(2);
+		assertThat(table.distance(1, 4, tickets(1, 1, 0, 0, 0), 0))
+				.isEqualTo(DistanceTable.UNREACHABLE);
+		assertThat(table.budgetedDistance(1, 4, tickets(0, 1, 0, 0, 1), 0, 10)).isEqualTo(2);
+		// one secret ticket can't pay for the bus and the ferry
+		assertThat(table.budgetedDistance(1, 4, tickets(0, 0, 0, 0, 1), 0, 10))
+				.isEqualTo(DistanceTable.UNREACHABLE);
+		// with one taxi ticket the only route to 3 is the bus
+		assertThat(table.budgetedDistance(1, 3, tickets(1, 1, 0, 0, 0), 0, 10)).isEqualTo(1);
+		assertThat(table.budgetedDistance(1, 3, tickets(2, 0, 0, 0, 0), 0, 10)).isEqualTo(2);
+		assertThat(table.budgetedDistance(1, 3, tickets(1, 0, 0, 0, 0), 0, 10))
+				.isEqualTo(DistanceTable.UNREACHABLE);
+	}
+
+	@Test public void testStandardGraphIsSymmetric() throws IOException {
+		DistanceTable table = DistanceTable.compute(
+				TransportGraph.compile(ScotlandYard.standardGraph()));
+		for (int a = 1; a <= 199; a++)
+			for (int b = 1; b <= 199; b++) {
+				assertThat(table.distance(a, b)).isEqualTo(table.distance(b, a))
+						.isLessThanOrEqualTo(table.distance(a, b, TAXI));
+				assertThat(table.distance(a, b, TAXI)).isNotEqualTo(DistanceTable.UNREACHABLE);
+			}
+		int[] detective = ScotlandYard.defaultDetectiveTickets().entrySet().stream()
+				.collect(() -> new int[5], (t, e) -> t[e.getKey().ordinal()] = e.getValue(),
+						(x, y) -> {});
+		assertThat(table.budgetedDistance(1, 199, detective, 0, 20))
+				.isEqualTo(table.distance(1, 199, detective, 0));
+	}
+
+}
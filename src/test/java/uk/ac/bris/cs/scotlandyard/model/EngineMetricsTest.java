@@ -0,0 +1,79 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import uk.ac.bris.cs.scotlandyard.model.EngineMetrics.Histogram;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.BUS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.SECRET;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+
+/**
+ * Tests the engine metrics; the hooks in {@link MyGameStateFactory} are only live with
+ * {@code -Dscotlandyard.metrics=true}, so the recording methods are called directly
+ */
+public class EngineMetricsTest {
+
+	@Before public void setUp() { EngineMetrics.reset(); }
+
+	@Test public void testMovesAreCountedByType() {
+		var moves = new MoveBuffer();
+		moves.add(PackedMove.single(PackedMove.MRX, 1, TAXI.ordinal(), 8));
+		moves.add(PackedMove.single(PackedMove.MRX, 1, SECRET.ordinal(), 8));
+		moves.add(PackedMove.doubleMove(PackedMove.MRX, 1, SECRET.ordinal(), 8,
+				SECRET.ordinal(), 18));
+		moves.add(PackedMove.doubleMove(PackedMove.MRX, 1, TAXI.ordinal(), 8, BUS.ordinal(), 1));
+		EngineMetrics.movesGenerated(moves);
+		EngineMetrics.stateConstructed();
+		var snapshot = EngineMetrics.snapshot();
+		assertThat(snapshot).containsEntry("singleMoves", 2L)
+				.containsEntry("doubleMoves", 2L)
+				.containsEntry("secretMoves", 3L)
+				.containsEntry("statesConstructed", 1L);
+		EngineMetrics.reset();
+		assertThat(EngineMetrics.snapshot().values()).containsOnly(0L);
+	}
+
+	@Test public void testTimersRecordLatencies() {
+		for (int i = 1; i <= 100; i++) EngineMetrics.advanced(i * 1000L);
+		EngineMetrics.winnerChecked(500);
+		var bean = EngineMetrics.bean();
+		assertThat(bean.getAdvanceCount()).isEqualTo(100);
+		assertThat(bean.getAdvanceMeanNanos()).isEqualTo(50_500);
+		assertThat(bean.getAdvanceMaxNanos()).isEqualTo(100_000);
+		assertThat(bean.getAdvanceP50Nanos()).isBetween(50_000L, 50_000L * 5 / 4);
+		assertThat(bean.getAdvanceP99Nanos()).isBetween(99_000L, 99_000L * 5 / 4);
+		assertThat(bean.getWinnerChecks()).isEqualTo(1);
+		assertThat(bean.getWinnerCheckMeanNanos()).isEqualTo(500);
+	}
+
+	@Test public void testHistogramBucketsCoverTheirValues() {
+		for (long nanos = 0; nanos < 1 << 20; nanos += 13) {
+			assertThat(Histogram.upperBound(Histogram.bucket(nanos)))
+					.isGreaterThanOrEqualTo(nanos)
+					.isLessThanOrEqualTo(Math.max(nanos * 5 / 4, 3));
+		}
+		assertThat(Histogram.bucket(Long.MAX_VALUE)).isLessThan((64 - 2 + 1) * 4);
+	}
+
+	@Test public void testBeanIsAValidMXBean() throws Exception {
+		var server = ManagementFactory.getPlatformMBeanServer();
+		var name = new ObjectName(EngineMetrics.OBJECT_NAME + ",name=test");
+		server.registerMBean(EngineMetrics.bean(), name);
+		try {
+			EngineMetrics.stateConstructed();
+			assertThat(server.getAttribute(name, "StatesConstructed")).isEqualTo(1L);
+			server.invoke(name, "reset", new Object[0], new String[0]);
+			assertThat(server.getAttribute(name, "StatesConstructed")).isEqualTo(0L);
+		} finally {
+			server.unregisterMBean(name);
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.BUS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.SECRET;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests the packed move representation and the allocation-free generator
+ */
+public class MoveGeneratorTest {
+
+	private static TransportGraph graph;
+
+	@BeforeClass public static void setUp() throws IOException {
+		graph = TransportGraph.compile(readGraph(Resources.toString(
+				Resources.getResource("graph.txt"), StandardCharsets.UTF_8)));
+	}
+
+	private static int[] tickets(int taxi, int bus, int underground, int x2, int secret) {
+		return new int[]{taxi, bus, underground, x2, secret};
+	}
+
+	@Test public void testPackedMoveRoundTrip() {
+		var single = new Move.SingleMove(BLUE, 128, Ticket.UNDERGROUND, 185);
+		var x2 = new Move.DoubleMove(MRX, 199, SECRET, 194, TAXI, 192);
+		assertThat(PackedMove.toMove(PackedMove.of(single))).isEqualTo(single);
+		assertThat(PackedMove.toMove(PackedMove.of(x2))).isEqualTo(x2);
+		assertThat(PackedMove.isDouble(PackedMove.of(x2))).isTrue();
+		assertThat(PackedMove.destination(PackedMove.of(x2))).isEqualTo(192);
+		assertThat(PackedMove.piece(PackedMove.of(single)))
+				.isEqualTo(PackedMove.pieceIndex(BLUE));
+	}
+
+	@Test public void testSingleMovesSkipOccupiedNodes() {
+		long[] occupied = NodeSet.create(graph.nodeBound());
+		NodeSet.add(occupied, 116);
+		var buffer = new MoveBuffer();
+		MoveGenerator.singleMoves(graph, PackedMove.MRX, 104, tickets(4, 3, 3, 0, 5), 0,
+				occupied, buffer);
+		assertThat(buffer.toMoves()).containsExactlyInAnyOrder(
+				new Move.SingleMove(MRX, 104, TAXI, 86),
+				new Move.SingleMove(MRX, 104, SECRET, 86));
+	}
+
+	@Test public void testDoubleMovesNeedTwoOfTheSameTicket() {
+		long[] occupied = NodeSet.create(graph.nodeBound());
+		var buffer = new MoveBuffer();
+		MoveGenerator.doubleMoves(graph, PackedMove.MRX, 104, tickets(1, 1, 0, 1, 0), 0,
+				occupied, buffer);
+		assertThat(buffer.toMoves()).allSatisfy(m -> {
+			var move = (Move.DoubleMove) m;
+			assertThat(move.ticket1).isNotEqualTo(move.ticket2);
+		});
+		assertThat(buffer.toMoves()).contains(new Move.DoubleMove(MRX, 104, TAXI, 86, BUS, 52));
+	}
+
+	@Test public void testBufferIsReusable() {
+		long[] occupied = NodeSet.create(graph.nodeBound());
+		var buffer = new MoveBuffer(1);
+		MoveGenerator.moves(graph, PackedMove.MRX, 1, tickets(4, 3, 3, 2, 5), 0,
+				occupied, 24, buffer);
+		int size = buffer.size();
+		assertThat(size).isGreaterThan(1);
+		buffer.clear();
+		MoveGenerator.moves(graph, PackedMove.MRX, 1, tickets(4, 3, 3, 2, 5), 0,
+				occupied, 24, buffer);
+		assertThat(buffer.size()).isEqualTo(size);
+		assertThat(MoveGenerator.canMove(graph, 1, tickets(4, 3, 3, 2, 5), 0, occupied)).isTrue();
+		assertThat(MoveGenerator.canMove(graph, 1, tickets(0, 0, 0, 2, 0), 0, occupied)).isFalse();
+	}
+
+}
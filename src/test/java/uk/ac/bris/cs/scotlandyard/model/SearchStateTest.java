@@ -0,0 +1,88 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import uk.ac.bris.cs.scotlandyard.model.BitboardGameStateFactory.BitboardGameState;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24MOVES;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.generateMrXLocation;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests that make/unmake on {@link SearchState} agrees with {@link BitboardGameState#advance}
+ */
+public class SearchStateTest {
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(
+				Resources.getResource("graph.txt"), StandardCharsets.UTF_8)), STANDARD24MOVES);
+	}
+
+	private static void assertSameState(SearchState search, BitboardGameState state) {
+		BitboardGameState snapshot = search.snapshot();
+		assertThat(snapshot.getAvailableMoves()).isEqualTo(state.getAvailableMoves());
+		assertThat(snapshot.getWinner()).isEqualTo(state.getWinner());
+		assertThat(snapshot.getMrXTravelLog()).isEqualTo(state.getMrXTravelLog());
+		assertThat(search.winner()).isEqualTo(state.getWinner());
+		assertThat(search.zobristKey()).isEqualTo(state.zobristKey())
+				.isEqualTo(snapshot.zobristKey());
+		for (int slot = 0; slot < state.slots(); slot++) {
+			assertThat(search.location(slot)).isEqualTo(state.location(slot));
+			for (ScotlandYard.Ticket ticket : ScotlandYard.Ticket.values())
+				assertThat(search.tickets(slot, ticket)).isEqualTo(state.tickets(slot, ticket));
+		}
+	}
+
+	@Test public void testApplyAndUndoMatchAdvance() {
+		var buffer = new MoveBuffer();
+		for (int seed = 0; seed < 20; seed++) {
+			var random = new Random(seed);
+			var mrX = new Player(Piece.MrX.MRX, defaultMrXTickets(), generateMrXLocation(seed));
+			var detectives = BitboardGameStateTest.detectives(seed, 1 + seed % 5);
+			BitboardGameState state = new BitboardGameStateFactory().build(setup, mrX, detectives);
+			BitboardGameState initial = state;
+			SearchState search = SearchState.of(setup, mrX, detectives);
+			while (!state.isGameOver()) {
+				buffer.clear();
+				search.availableMoves(buffer);
+				long move = buffer.get(random.nextInt(buffer.size()));
+				assertThat(search.isLegal(move)).isTrue();
+				search.apply(move);
+				state = state.advance(move);
+				assertSameState(search, state);
+			}
+			assertThat(search.isGameOver()).isTrue();
+			while (search.depth() > 0) search.undo();
+			assertSameState(search, initial);
+		}
+	}
+
+	@Test public void testFromBoardMatchesBoard() {
+		var mrX = new Player(Piece.MrX.MRX, defaultMrXTickets(), 106);
+		BitboardGameState state = new BitboardGameStateFactory().build(setup, mrX,
+				BitboardGameStateTest.detectives(3, 4));
+		var buffer = new MoveBuffer();
+		state.availableMoves(buffer);
+		state = state.advance(buffer.get(0));
+		SearchState search = SearchState.fromBoard(state, state.mrXLocation());
+		assertSameState(search, state);
+		assertThat(search.remaining()).isEqualTo(state.remaining());
+	}
+
+	@Test(expected = IllegalStateException.class) public void testUndoAtRootShouldThrow() {
+		SearchState.of(setup, new Player(Piece.MrX.MRX, defaultMrXTickets(), 106),
+				BitboardGameStateTest.detectives(1, 2)).undo();
+	}
+
+}
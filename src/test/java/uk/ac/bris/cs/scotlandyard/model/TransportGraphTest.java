@@ -0,0 +1,61 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests {@link TransportGraph} compiles a graph into the same routes as its source
+ */
+public class TransportGraphTest {
+
+	@Test public void testSmallGraph() {
+		TransportGraph graph = TransportGraph.compile(ScotlandYard.readGraph(String.join("\n",
+				"3 3",
+				"1", "2", "3",
+				"1 2 Ferry",
+				"1 2 Bus",
+				"3 1 Taxi")));
+		assertThat(graph.nodeBound()).isEqualTo(4);
+		assertThat(graph.nodeCount()).isEqualTo(3);
+		assertThat(graph.edgeCount()).isEqualTo(4);
+		assertThat(graph.degree(0)).isZero();
+		assertThat(graph.degree(1)).isEqualTo(2);
+		assertThat(graph.neighbour(graph.start(1))).isEqualTo(2);
+		assertThat(graph.neighbour(graph.start(1) + 1)).isEqualTo(3);
+		assertThat(graph.transports(graph.edge(2, 1)))
+				.isEqualTo((1 << Transport.BUS.ordinal()) | (1 << Transport.FERRY.ordinal()));
+		assertThat(graph.tickets(graph.edge(1, 2)))
+				.isEqualTo((1 << Ticket.BUS.ordinal()) | (1 << Ticket.SECRET.ordinal()));
+		assertThat(graph.edge(2, 3)).isEqualTo(-1);
+	}
+
+	@Test public void testStandardGraphMatchesSource() throws IOException {
+		ImmutableValueGraph<Integer, ImmutableSet<Transport>> source = ScotlandYard.standardGraph();
+		TransportGraph graph = TransportGraph.compile(source);
+		assertThat(graph.edgeCount()).isEqualTo(source.edges().size() * 2);
+		for (int node : source.nodes()) {
+			assertThat(graph.degree(node)).isEqualTo(source.degree(node));
+			for (int edge = graph.start(node); edge < graph.end(node); edge++) {
+				int mask = 0;
+				for (Transport t : source.edgeValueOrDefault(node, graph.neighbour(edge),
+						ImmutableSet.of()))
+					mask |= 1 << t.ordinal();
+				assertThat(graph.transports(edge)).isEqualTo(mask);
+			}
+		}
+	}
+
+	@Test(expected = Exception.class) public void testNegativeNodeShouldThrow() {
+		TransportGraph.compile(ScotlandYard.readGraph(String.join("\n", "1 0", "-1")));
+	}
+
+}
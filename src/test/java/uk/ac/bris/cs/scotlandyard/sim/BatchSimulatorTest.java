@@ -0,0 +1,123 @@
+package uk.ac.bris.cs.scotlandyard.sim;
+
+import io.atlassian.fugue.Pair;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24MOVES;
+
+/**
+ * Tests the headless game runner and the parallel batch simulator
+ */
+public class BatchSimulatorTest {
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(ScotlandYard.standardGraph(), STANDARD24MOVES);
+	}
+
+	/**
+	 * Deterministically picks the first move in string order
+	 */
+	static class LowestMoveAi implements Ai {
+		@Nonnull @Override public String name() { return "Lowest"; }
+
+		@Nonnull @Override public Move pickMove(@Nonnull Board board,
+		                                        Pair<Long, TimeUnit> timeoutPair) {
+			return board.getAvailableMoves().stream()
+					.min(Comparator.comparing(Move::toString))
+					.orElseThrow();
+		}
+	}
+
+	private static GameRunner runner(int detectives) {
+		return new GameRunner(setup, detectives, new Pair<>(1L, TimeUnit.SECONDS));
+	}
+
+	@Test public void testGamesFinishWithAWinner() {
+		var result = runner(5).play(7, new LowestMoveAi(), new LowestMoveAi());
+		assertThat(result.winner()).isNotEmpty();
+		assertThat(result.forfeit()).isEmpty();
+		assertThat(result.rounds()).isBetween(1, STANDARD24MOVES.size());
+		assertThat(result.mrXTimings().count()).isGreaterThanOrEqualTo(result.rounds() - 2);
+		assertThat(result.detectiveTimings().count()).isPositive();
+		assertThat(result.mrXAi()).isEqualTo("Lowest");
+	}
+
+	@Test public void testThrowingAiForfeits() {
+		var throwing = new LowestMoveAi() {
+			@Nonnull @Override public Move pickMove(@Nonnull Board board,
+			                                        Pair<Long, TimeUnit> timeoutPair) {
+				throw new IllegalStateException("boom");
+			}
+		};
+		var result = runner(3).play(0, throwing, new LowestMoveAi());
+		assertThat(result.mrXWon()).isFalse();
+		assertThat(result.winner()).hasSize(3);
+		assertThat(result.forfeit()).hasValueSatisfying(s -> assertThat(s).contains("boom"));
+	}
+
+	@Test public void testIllegalMoveForfeits() {
+		var illegal = new LowestMoveAi() {
+			@Nonnull @Override public Move pickMove(@Nonnull Board board,
+			                                        Pair<Long, TimeUnit> timeoutPair) {
+				return new Move.SingleMove(ScotlandYard.DETECTIVES.asList().get(0), 1,
+						ScotlandYard.Ticket.TAXI, 8);
+			}
+		};
+		var result = runner(2).play(0, new LowestMoveAi(), illegal);
+		assertThat(result.mrXWon()).isTrue();
+		assertThat(result.forfeit()).isNotEmpty();
+	}
+
+	@Test public void testResultsDoNotDependOnThreadCount() throws InterruptedException {
+		var simulator = new BatchSimulator(runner(4), LowestMoveAi::new, LowestMoveAi::new);
+		var results = new ArrayList<GameResult>();
+		var serial = simulator.run(24, 100, 1, results::add);
+		var parallel = simulator.run(24, 100, 4, null);
+		assertThat(results).hasSize(24);
+		assertThat(serial.games()).isEqualTo(parallel.games()).isEqualTo(24);
+		assertThat(serial.mrXWins()).isEqualTo(parallel.mrXWins());
+		assertThat(serial.meanRounds()).isEqualTo(parallel.meanRounds());
+		assertThat(serial.mrXWins() + serial.detectiveWins()).isEqualTo(24);
+		assertThat(serial.forfeits()).isZero();
+		assertThat(serial.mrXTimings().count())
+				.isEqualTo(results.stream().mapToLong(r -> r.mrXTimings().count()).sum());
+		assertThat(serial.toString()).contains("Lowest (MrX) vs Lowest (detectives)");
+	}
+
+	@Test public void testTimingQuantiles() {
+		var stats = new TimingStats();
+		for (int i = 1; i <= 1000; i++) stats.record(TimeUnit.MICROSECONDS.toNanos(i));
+		assertThat(stats.count()).isEqualTo(1000);
+		assertThat(stats.maxNanos()).isEqualTo(TimeUnit.MICROSECONDS.toNanos(1000));
+		assertThat(stats.quantileNanos(0.5))
+				.isBetween(TimeUnit.MICROSECONDS.toNanos(500), TimeUnit.MICROSECONDS.toNanos(563));
+		assertThat(stats.quantileNanos(1)).isEqualTo(stats.maxNanos());
+		var other = new TimingStats();
+		other.record(TimeUnit.SECONDS.toNanos(1));
+		stats.merge(other);
+		assertThat(stats.count()).isEqualTo(1001);
+		assertThat(stats.maxNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+		for (long nanos = 0; nanos < 1 << 20; nanos += 37)
+			assertThat(TimingStats.upperBound(TimingStats.bucket(nanos)))
+					.isGreaterThanOrEqualTo(nanos);
+	}
+
+}
@@ -0,0 +1,161 @@
+package uk.ac.bris.cs.scotlandyard.sim;
+
+import io.atlassian.fugue.Pair;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.sim.BatchSimulatorTest.LowestMoveAi;
+import uk.ac.bris.cs.scotlandyard.sim.Tournament.Entrant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24MOVES;
+
+/**
+ * Tests the round robin tournament, its checkpoints and the Elo ratings
+ */
+public class TournamentTest {
+
+	private static GameSetup setup;
+
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(ScotlandYard.standardGraph(), STANDARD24MOVES);
+	}
+
+	static class HighestMoveAi extends LowestMoveAi {
+		@Nonnull @Override public String name() { return "Highest"; }
+
+		@Nonnull @Override public Move pickMove(@Nonnull Board board,
+		                                        Pair<Long, TimeUnit> timeoutPair) {
+			return board.getAvailableMoves().stream()
+					.max(Comparator.comparing(Move::toString))
+					.orElseThrow();
+		}
+	}
+
+	private static Tournament tournament() {
+		return new Tournament(new GameRunner(setup, 3, new Pair<>(1L, TimeUnit.SECONDS)), List.of(
+				new Entrant("lowest", LowestMoveAi::new),
+				new Entrant("highest", HighestMoveAi::new),
+				new Entrant("lowest-2", LowestMoveAi::new)));
+	}
+
+	@Test public void testEveryOrderedPairingIsPlayed() throws Exception {
+		var listened = new AtomicInteger();
+		var report = tournament().run(2, 0, 2, null, (result, standings) -> {
+			assertThat(standings.games()).isEqualTo(listened.incrementAndGet());
+		});
+		assertThat(report.games()).isEqualTo(2 * 3 * 2).isEqualTo(listened.get());
+		for (int i = 0; i < 3; i++)
+			for (int j = 0; j < 3; j++)
+				assertThat(report.games(i, j)).isEqualTo(i == j ? 0 : 2);
+		assertThat(report.ratings().games(0)).isEqualTo(8);
+		assertThat(report.toString()).contains("lowest", "highest", "lowest-2");
+	}
+
+	@Test public void testCheckpointResumes() throws Exception {
+		var checkpoint = folder.getRoot().toPath().resolve("tournament.tsv");
+		var first = tournament().run(2, 5, 2, checkpoint, null);
+		assertThat(Files.readAllLines(checkpoint)).hasSize(12);
+
+		// a crash mid-write leaves a partial line behind
+		Files.writeString(checkpoint, "lowest\thigh", StandardCharsets.UTF_8,
+				StandardOpenOption.APPEND);
+		var played = new AtomicInteger();
+		var second = tournament().run(3, 5, 2, checkpoint, (r, s) -> played.incrementAndGet());
+		assertThat(second.resumed()).isEqualTo(12);
+		assertThat(played.get()).isEqualTo(6);
+		assertThat(second.games()).isEqualTo(18);
+		assertThat(Files.readAllLines(checkpoint)).hasSize(12 + 1 + 6);
+
+		// the games are deterministic, so the resumed results agree with a fresh run
+		var fresh = tournament().run(3, 5, 1, null, null);
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				assertThat(second.mrXWins(i, j)).isEqualTo(fresh.mrXWins(i, j));
+				if (i != j) assertThat(first.mrXWins(i, j)).isLessThanOrEqualTo(fresh.mrXWins(i, j));
+			}
+		}
+	}
+
+	@Test public void testGamesStartRoundByRound() throws Exception {
+		var seeds = new ArrayList<Integer>();
+		tournament().run(3, 7, 1, null, (result, standings) -> seeds.add(result.seed()));
+		assertThat(seeds).hasSize(3 * 3 * 2).isSorted();
+	}
+
+	@Test public void testInterruptCancelsTheRemainingGames() throws Exception {
+		var started = new AtomicInteger();
+		var tournament = new Tournament(new GameRunner(setup, 3,
+				new Pair<>(1L, TimeUnit.SECONDS)), List.of(
+				new Entrant("stuck", () -> new LowestMoveAi() {
+					@Nonnull @Override public Move pickMove(@Nonnull Board board,
+					                                        Pair<Long, TimeUnit> timeoutPair) {
+						started.incrementAndGet();
+						try {
+							Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						throw new IllegalStateException("Interrupted");
+					}
+				}),
+				new Entrant("lowest", LowestMoveAi::new)));
+		var thrown = new AtomicReference<Throwable>();
+		var caller = new Thread(() -> {
+			try {
+				tournament.run(5, 0, 1, null, null);
+			} catch (Throwable e) {
+				thrown.set(e);
+			}
+		});
+		caller.start();
+		while (started.get() == 0) Thread.sleep(10);
+		caller.interrupt();
+		caller.join(TimeUnit.SECONDS.toMillis(2));
+		assertThat(caller.isAlive()).isFalse();
+		assertThat(thrown.get()).isInstanceOf(InterruptedException.class);
+		Thread.sleep(100);
+		assertThat(started).hasValue(1);
+	}
+
+	@Test public void testRatingsOrderPlayersByStrength() {
+		var ratings = new EloRatings(List.of("weak", "middle", "strong"));
+		for (int i = 0; i < 30; i++) {
+			ratings.record(2, 0);
+			ratings.record(i % 3 == 0 ? 0 : 1, i % 3 == 0 ? 1 : 0);
+			ratings.record(i % 4 == 0 ? 1 : 2, i % 4 == 0 ? 2 : 1);
+		}
+		assertThat(ratings.ranking()).containsExactly(2, 1, 0);
+		assertThat(ratings.rating(0) + ratings.rating(1) + ratings.rating(2))
+				.isCloseTo(3 * EloRatings.MEAN, within(1e-6));
+		// never lost to the weakest, but the virtual draw keeps the rating finite
+		assertThat(ratings.rating(2)).isFinite().isGreaterThan(ratings.rating(1) + 50);
+		assertThat(ratings.error(2)).isPositive().isLessThan(400);
+		assertThat(ratings.games(2)).isEqualTo(60);
+		assertThat(ratings.wins(2)).isEqualTo(30 + 22);
+	}
+
+}